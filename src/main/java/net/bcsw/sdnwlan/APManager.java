@@ -15,8 +15,26 @@
  */
 package net.bcsw.sdnwlan;
 
+import net.bcsw.sdnwlan.cluster.WorkPartitioner;
 import net.bcsw.sdnwlan.config.AccessPointConfig;
 import net.bcsw.sdnwlan.config.SDNWLANConfig;
+import net.bcsw.sdnwlan.flows.Flow;
+import net.bcsw.sdnwlan.intent.FlowObjectivePipeline;
+import net.bcsw.sdnwlan.intent.IntentKeys;
+import net.bcsw.sdnwlan.intent.IntentOwner;
+import net.bcsw.sdnwlan.intent.IntentPipeline;
+import net.bcsw.sdnwlan.intent.IntentReconciler;
+import net.bcsw.sdnwlan.intent.IntentTracker;
+import net.bcsw.sdnwlan.journal.EventJournal;
+import net.bcsw.sdnwlan.journal.JournalState;
+import net.bcsw.sdnwlan.storage.HostStateWriter;
+import net.bcsw.sdnwlan.storage.LocalSnapshot;
+import net.bcsw.sdnwlan.storage.MobileHostState;
+import net.bcsw.sdnwlan.storage.SDNWLANStore;
+import net.bcsw.sdnwlan.storage.SDNWLANStoreDelegate;
+import net.bcsw.sdnwlan.storage.SDNWLANStoreEvent;
+import net.bcsw.sdnwlan.storage.Snapshot;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -27,9 +45,13 @@ import org.jboss.netty.util.TimerTask;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.MacAddress;
 import org.onlab.util.Timer;
+import org.onosproject.cluster.ClusterService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultHost;
 import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
 import org.onosproject.net.HostLocation;
 import org.onosproject.net.config.ConfigFactory;
 import org.onosproject.net.config.NetworkConfigEvent;
@@ -38,16 +60,24 @@ import org.onosproject.net.config.NetworkConfigRegistry;
 import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flowobjective.FlowObjectiveService;
 import org.onosproject.net.host.HostEvent;
 import org.onosproject.net.host.HostListener;
 import org.onosproject.net.host.HostService;
+import org.onosproject.net.intent.Intent;
 import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.provider.ProviderId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static org.onosproject.net.config.basics.SubjectFactories.APP_SUBJECT_FACTORY;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 /**
  * Skeletal BCSW sdnWLAN Host Mobility component.
@@ -77,6 +107,17 @@ public class APManager implements SDNWLANService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected IntentService intentService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected FlowObjectiveService flowObjectiveService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected SDNWLANStore store;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ClusterService clusterService;
+
+    private final SDNWLANStoreDelegate storeDelegate = new InternalStoreDelegate();
+
     private final InternalConfigListener cfgListener = new InternalConfigListener();
 
     private final Set<ConfigFactory> factories = ImmutableSet.of(
@@ -92,28 +133,60 @@ public class APManager implements SDNWLANService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected NetworkConfigRegistry cfgService;
 
-    static protected ApplicationId  appId;
-    private HostListener   hostListener;
-    private DeviceListener deviceListener;
-    protected Timeout      deletedHostTimeout;
+    static protected ApplicationId         appId;
+    static protected IntentPipeline        intentPipeline;
+    static protected IntentTracker         intentTracker;
+    static protected FlowObjectivePipeline objectivePipeline;
+    static protected IntentReconciler      reconciler;
+    private InternalHostListener hostListener;
+    private DeviceListener       deviceListener;
+    private WorkPartitioner      partitioner;
+    private LocalSnapshot        snapshot;
+    private HostStateWriter      hostWriter;
+
+    // Journal of the host and device events received, null unless enabled
+    private volatile EventJournal journal;
 
     // List of Access Points
     private Map<MacAddress, AccessPoint> accessPoints =  Maps.newConcurrentMap();
 
+    // Index of Access Points by their edge connect point(s).  Used to quickly resolve
+    // the location of a host event to the access point it is attached through.
+    private Map<ConnectPoint, AccessPoint> accessPointsByConnectPoint = Maps.newConcurrentMap();
+
+    // Longest-prefix-match index of the subnets served by each access point's default gateways.
+    // Used to find the home access point of a newly discovered host.
+    private IpSubnetTrie<AccessPoint> accessPointsBySubnet = new IpSubnetTrie<>();
+
+    // Registry of all known mobile hosts.  Each mobile host references its home and
+    // current access point so lookups do not require a walk of every access point.
+    private Map<MacAddress, MobileHost> mobileHosts = Maps.newConcurrentMap();
+
+    // Pending purge timers for hosts that were the subject of a HOST_REMOVED event
+    private Map<MacAddress, Timeout> purgeTimeouts = Maps.newConcurrentMap();
+
     // Set of default gateways being monitored.
     private Map<IpAddress, DefaultGateway> defaultGateways = Maps.newConcurrentMap();
 
+    // Mirror of the default gateway IP addresses above for fast 'is this a gateway' checks
+    private IpAddressSet defaultGatewayAddresses = new IpAddressSet();
+
     protected static int gatewayFlowPriority    = SDNWLANConfig.DEFAULT_GATEWAY_FLOW_PRIORITY;
     protected static int roamingUnicastPriority = SDNWLANConfig.DEFAULT_ROAMING_UNICAST_FLOW_PRIORITY;
     protected static int hostRemovedTimeout     = SDNWLANConfig.DEFAULT_REMOVED_HOST_TIMEOUT_SECONDS;
-    protected static int removeDelay            = SDNWLANConfig.DEFAULT_REMOVED_HOST_DELAY_GRANULARITY;
+
+    protected static boolean makeBeforeBreak        = SDNWLANConfig.DEFAULT_MAKE_BEFORE_BREAK;
+    protected static int     makeBeforeBreakTimeout = SDNWLANConfig.DEFAULT_MAKE_BEFORE_BREAK_TIMEOUT_MSEC;
+    protected static boolean aggregateNorthbound    = SDNWLANConfig.DEFAULT_AGGREGATE_NORTHBOUND;
+    protected static boolean useFlowObjectives      = false;
+    protected static boolean warmRestart            = SDNWLANConfig.DEFAULT_WARM_RESTART;
+    protected static int     warmRestartGrace       = SDNWLANConfig.DEFAULT_WARM_RESTART_GRACE_SECONDS;
+    protected static boolean homeApShortcut         = SDNWLANConfig.DEFAULT_HOME_AP_SHORTCUT;
+    protected static boolean roamingBroadcast       = SDNWLANConfig.DEFAULT_ROAMING_BROADCAST;
 
     // TODO: Useful stats would be nice.  Separate interface/class?
 
     // TODO: Should support a REST interface
-    // TODO: Should save information to persistent storage for restart purposes
-    // TODO: Should support a clustered environment for scalability
-    // TODO: For DefaultGateways, store last known location (MacAddress, Location, VIDs) for faster initial flow setup on restart
 
     /**
      * Activate the sdnWLAN Service
@@ -149,27 +222,100 @@ public class APManager implements SDNWLANService {
 
         log.info("Starting");
 
+        // All intent submissions are batched through the pipeline
+
+        intentPipeline = new IntentPipeline(intentService);
+        intentTracker  = new IntentTracker(appId, intentService);
+
+        objectivePipeline = new FlowObjectivePipeline(flowObjectiveService, intentTracker);
+
+        reconciler = new IntentReconciler(appId, intentService, intentPipeline, this::getIntentOwners);
+
+        reconciler.configure(SDNWLANConfig.DEFAULT_RECONCILE_INTERVAL_SECONDS);
+        intentService.addListener(reconciler);
+
+        intentService.addListener(intentTracker);
+
+        // Any intents still installed were left by a previous instance (warm restart).  Offer
+        // them for adoption so the access points and hosts rebuilt below claim them by key
+        // instead of re-submitting them.
+
+        List<Intent> existing = StreamSupport.stream(intentService.getIntents().spliterator(), false)
+                .filter(intent -> appId.equals(intent.appId()))
+                .filter(intent -> intentService.getIntentState(intent.key()) == IntentState.INSTALLED)
+                .collect(Collectors.toList());
+
+        intentPipeline.adopt(existing, intentTracker::adopted);
+
+        // In a cluster, the mobile hosts are divided between the instances by their home
+        // access point.  Each instance only handles the events of its own hosts and only
+        // sends the intents of its own hosts and access points to the intent service.
+
+        hostListener = new InternalHostListener();
+        partitioner  = new WorkPartitioner(clusterService, this::onRebalance);
+
+        partitioner.start();
+        intentPipeline.setKeyFilter(this::isLocalKey);
+
+        snapshot = new LocalSnapshot(LocalSnapshot.defaultFile(), this::takeSnapshot);
+        snapshot.configure(SDNWLANConfig.DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+
+        // Mobile host state is written to the store behind the host events, coalesced per host
+
+        hostWriter = new HostStateWriter(store);
+        hostWriter.configure(SDNWLANConfig.DEFAULT_HOST_STATE_FLUSH_INTERVAL_MSEC);
+
         // Handle application configuration
 
         cfgService.addListener(cfgListener);
         factories.forEach(cfgService::registerConfigFactory);
-        cfgListener.reconfigureNetwork(cfgService.getConfig(appId, SDNWLANConfig.class));
+        SDNWLANConfig cfg = cfgService.getConfig(appId, SDNWLANConfig.class);
+
+        cfgListener.reconfigureNetwork(cfg);
+
+        // 1. Restore the access points saved by a previous instance (or another member of
+        //    the cluster).  Any in the configuration file were handled above and take precedence.
+        //    When there is a configuration, a saved access point it does not have was deleted
+        //    while the application was down and is dropped from the store instead.
+
+        store.getAccessPoints().stream()
+                .filter(config -> !accessPoints.containsKey(config.getMacAddress()))
+                .forEach(config -> {
+                    if (cfg != null) {
+                        log.info("Access point {} is no longer configured, removing it from the store",
+                                 config.getMacAddress());
+                        store.removeAccessPoint(config);
+                    } else {
+                        onAddAccessPoint(new AccessPoint(config));
+                    }
+                });
+
+        store.setDelegate(storeDelegate);
+
+        // Restore the gateway locations and host state from the local snapshot so the default
+        // gateway flows go in now rather than once each gateway is rediscovered
+
+        restoreSnapshot(snapshot.load());
+
+        if (!existing.isEmpty()) {
+            log.info("Found {} installed intents, orphans withdrawn after {} seconds",
+                     existing.size(), warmRestartGrace);
+            reconciler.setGracePeriod(warmRestartGrace);
+        }
 
         // Create host and device listeners
 
-        hostListener   = new InternalHostListener();
         deviceListener = new InternalDeviceListener();
 
-        // 1. Restore data from persistent storage.  This useful for restoring
-        //    state after a restart/deactivation
-        // TODO implement this.  Make sure it works within a cluster environment
-
         // 2. Start listening for host and device events
 
         hostService.addListener(hostListener);
         deviceService.addListener(deviceListener);
 
-        deletedHostTimeout = Timer.getTimer().newTimeout(new PurgeHostTask(), removeDelay, TimeUnit.SECONDS);
+        // 4. Walk the hosts already known.  Default gateways first so the roaming flows of
+        //    mobile hosts can be built as they are found.
+
+        hostListener.onExistingHosts(hostService.getHosts());
 
         // 5.  We are now active
 
@@ -182,23 +328,65 @@ public class APManager implements SDNWLANService {
 
         // Cancel any running timers
 
-        deletedHostTimeout.cancel();
+        purgeTimeouts.values().forEach(Timeout::cancel);
+        purgeTimeouts.clear();
 
         // Remove listeners
 
+        partitioner.stop();
+        snapshot.stop();
+        store.unsetDelegate(storeDelegate);
         cfgService.removeListener(cfgListener);
         hostService.removeListener(hostListener);
         deviceService.removeListener(deviceListener);
 
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        // No more host changes can arrive, write out any still pending
+
+        hostWriter.stop();
+
         factories.forEach(cfgService::unregisterConfigFactory);
 
         // Stop monitoring any default gateways
 
         defaultGateways.keySet().forEach(ip -> hostService.stopMonitoringIp(ip));
 
-        // Drop all flows on all APs
+        // Stop tracking first.  Outstanding make-before-break waits are cancelled so they do
+        // not withdraw anything through the stopped reconciler and pipelines, or at all on a
+        // warm restart.  Flows still retiring are dropped with the rest below.
+
+        intentService.removeListener(intentTracker);
+        intentTracker.stop();
+
+        // Stop repairing intents before they are all dropped
+
+        intentService.removeListener(reconciler);
+        reconciler.stop();
+
+        // Drop all flows on all APs.  For a warm restart they are left in place for the
+        // next instance to adopt.
+
+        if (warmRestart) {
+            log.info("Warm restart enabled, leaving intents installed");
+        } else {
+            accessPoints.values().forEach(ap -> ap.onShutdown());
+        }
+
+        // Push out any remaining intent operations
+
+        intentPipeline.stop();
+        objectivePipeline.stop();
+
+        log.info("Intents installed: {}, adopted: {}, failed: {}, install latency avg/max: {}/{} mS",
+                 intentTracker.getInstalledCount(), intentTracker.getAdoptedCount(), intentTracker.getFailedCount(),
+                 intentTracker.getAverageInstallLatency(), intentTracker.getMaxInstallLatency());
 
-        accessPoints.values().forEach(ap -> ap.onShutdown());
+        log.info("Intent operations dispatched: {}, throttled flushes: {}, max queue depths: {}",
+                 intentPipeline.getDispatchedCount(), intentPipeline.getThrottledCount(),
+                 intentPipeline.getMaxQueueDepths());
 
         log.info("Stopped");
     }
@@ -223,6 +411,176 @@ public class APManager implements SDNWLANService {
         return Collections.unmodifiableMap(defaultGateways);
     }
 
+    /**
+     * Get a map of all known mobile hosts
+     *
+     * @return collection of mobile hosts
+     */
+    @Override
+    public Map<MacAddress, MobileHost> getMobileHosts() {
+        return Collections.unmodifiableMap(mobileHosts);
+    }
+
+    /**
+     * Get a mobile host by its MAC address
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host or null if not found
+     */
+    @Override
+    public MobileHost getMobileHost(MacAddress mac) {
+        return mobileHosts.get(mac);
+    }
+
+    /**
+     * Get the cluster-wide state of a mobile host.  Available on every instance, even
+     * one that has not processed any events for the host.
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host state or null if not found
+     */
+    @Override
+    public MobileHostState getMobileHostState(MacAddress mac) {
+        return hostWriter.get(mac);
+    }
+
+    /**
+     * Save the current state of a mobile host to the distributed store.  The write is
+     * coalesced with any other changes to the host within the flush interval.
+     *
+     * @param host Mobile host
+     */
+    private void saveHost(MobileHost host) {
+        hostWriter.put(host.getState());
+    }
+
+    /**
+     * Open, close or resize the event journal to match the configuration
+     *
+     * @param cfg Configuration
+     */
+    private synchronized void configureJournal(SDNWLANConfig cfg) {
+        long segmentSize = cfg.getJournalSegmentSize() * 1024L * 1024L;
+        int  segments    = cfg.getJournalSegments();
+
+        if ((journal != null) && (!cfg.getEventJournal() ||
+                (journal.getSegmentSize() != segmentSize) || (journal.getMaxSegments() != segments))) {
+            journal.close();
+            journal = null;
+        }
+        if ((journal == null) && cfg.getEventJournal()) {
+            try {
+                journal = new EventJournal(EventJournal.defaultDirectory(), segmentSize, segments,
+                                           this::takeJournalState);
+
+            } catch (IOException e) {
+                log.error("Unable to open event journal: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Capture the gateway locations and mobile host state for the local snapshot.  Only
+     * gateways whose MAC and location are both known are saved.
+     *
+     * @return snapshot of the current state
+     */
+    private Snapshot takeSnapshot() {
+        List<Snapshot.GatewayLocation> gateways = Lists.newArrayList();
+
+        defaultGateways.values().forEach(gw -> {
+            Host info = gw.getHostInfo();
+
+            if (!info.mac().equals(MacAddress.NONE) && !info.location().equals(HostLocation.NONE)) {
+                gateways.add(new Snapshot.GatewayLocation(gw.getGatewayConfig().getGatewayAndMask(),
+                                                          info.mac(), info.vlan(), info.location()));
+            }
+        });
+        List<MobileHostState> hosts = mobileHosts.values().stream()
+                .map(MobileHost::getState)
+                .collect(Collectors.toList());
+
+        return new Snapshot(System.currentTimeMillis(), gateways, hosts);
+    }
+
+    /**
+     * Capture the state written at the head of each journal segment: the snapshot state and
+     * the host table
+     *
+     * @return journal state
+     */
+    private JournalState takeJournalState() {
+        return new JournalState(takeSnapshot(), Lists.newArrayList(hostService.getHosts()));
+    }
+
+    /**
+     * Restore the state saved in the local snapshot.
+     *
+     * Gateways whose MAC is not yet known are given their last known location, which starts
+     * up the access points that use them.  If a gateway has since moved, the host service
+     * will report its new location and the flows are re-pointed.  Saved host state is only
+     * used where the distributed store has nothing newer.
+     *
+     * @param saved Snapshot or null if none
+     */
+    private void restoreSnapshot(Snapshot saved) {
+        if (saved == null) {
+            return;
+        }
+        saved.getGateways().forEach(location -> {
+            IpAddress      ipAddr  = location.getGateway().gatewayAddress();
+            DefaultGateway gateway = defaultGateways.get(ipAddr);
+
+            if ((gateway != null) && gateway.getMacAddress().equals(MacAddress.NONE) &&
+                    gateway.getGatewayConfig().getGatewayAndMask().equals(location.getGateway())) {
+
+                log.info("restoreSnapshot: gateway {}", location);
+
+                HostLocation hostLocation = new HostLocation(location.getLocation(), saved.getTime());
+
+                gateway.updateHost(new DefaultHost(ProviderId.NONE,
+                                                   HostId.hostId(location.getMacAddress(), location.getVlan()),
+                                                   location.getMacAddress(), location.getVlan(),
+                                                   hostLocation, ImmutableSet.of(ipAddr)));
+            }
+        });
+        saved.getHosts().stream()
+                .filter(state -> hostWriter.get(state.getMacAddress()) == null)
+                .forEach(hostWriter::put);
+    }
+
+    /**
+     * Get all access points and mobile hosts that own intents
+     *
+     * @return collection of intent owners
+     */
+    private Collection<IntentOwner> getIntentOwners() {
+        List<IntentOwner> owners = Lists.newArrayList(accessPoints.values());
+
+        owners.addAll(mobileHosts.values());
+        return owners;
+    }
+
+    /**
+     * Get a map of the flows submitted by the sdnWLAN and their lifecycle statistics
+     *
+     * @return map of flows by intent key
+     */
+    @Override
+    public Map<Key, Flow> getFlows() {
+        return intentTracker.getFlows();
+    }
+
+    /**
+     * Get the number of intent operations waiting in each priority lane
+     *
+     * @return queue depth by lane
+     */
+    @Override
+    public Map<IntentPipeline.Lane, Integer> getIntentQueueDepths() {
+        return intentPipeline.getQueueDepths();
+    }
+
     /**
      * Creates a sdnWLAN Access Point
      *
@@ -272,25 +630,12 @@ public class APManager implements SDNWLANService {
                     accessPoint.getMacAddress().toString());
             return;
         }
+        indexAccessPoint(accessPoint);
+
         // Set up a host monitor on the for the default gateway
 
         for (DefaultGateway gateway : accessPoint.getDefaultGateways().values()) {
-
-            IpAddress ipAddr  = gateway.getGatewayConfig().getGatewayAndMask().gatewayAddress();
-            boolean   addMonitor = false;
-
-            synchronized (defaultGateways) {
-                if (!defaultGateways.containsKey(ipAddr)) {
-                    addMonitor = true;
-                    defaultGateways.put(ipAddr, gateway);
-                }
-            }
-            gateway.addAccessPoint(accessPoint);
-
-            if (addMonitor) {
-                log.info("Starting host monitor for Default Gateway IP Address: {}", ipAddr);
-                hostService.startMonitoringIp(ipAddr);
-            }
+            monitorGateway(accessPoint, gateway);
         }
         // Perform startup procedures
 
@@ -307,11 +652,19 @@ public class APManager implements SDNWLANService {
     public void onRemoveAccessPoint(AccessPoint accessPoint) {
         log.info("Remove AccessPoint: {}", accessPoint.toString());
 
+        // Tear down its flows and forget it so the reconciler does not resubmit its intents
+
+        accessPoint.onShutdown();
+        accessPoints.remove(accessPoint.getMacAddress(), accessPoint);
+        reconciler.release(accessPoint);
+
+        unindexAccessPoint(accessPoint);
+
         // Clean up default gateways
 
         List<DefaultGateway> dropList = Lists.newArrayList();
 
-        defaultGateways.values().stream().filter(gw -> gw.getAccessPoints().contains(this)).forEach(gw -> {
+        defaultGateways.values().stream().filter(gw -> gw.getAccessPoints().contains(accessPoint)).forEach(gw -> {
             gw.removeAccessPoint(accessPoint);
             if (gw.getAccessPoints().isEmpty()) {
                 dropList.add(gw);
@@ -319,16 +672,196 @@ public class APManager implements SDNWLANService {
         });
         // TODO: look into concurrent map and see if we really ever need to syncronize our add/remove operations
         dropList.forEach(gw -> {
+            IpAddress ipAddr = gw.getGatewayConfig().getGatewayAndMask().gatewayAddress();
+
             synchronized (defaultGateways) {
-                defaultGateways.remove(gw);
+                defaultGateways.remove(ipAddr, gw);
+                defaultGatewayAddresses.remove(ipAddr);
             }
-            IpAddress ipAddr = gw.getGatewayConfig().getGatewayAndMask().gatewayAddress();
 
             log.info("Halting host monitor for Default Gateway IP Address: {}", ipAddr);
             hostService.stopMonitoringIp(ipAddr);
         });
     }
 
+    /**
+     * Start monitoring the default gateway of an access point
+     *
+     * @param accessPoint Access point
+     * @param gateway     One of its default gateways
+     */
+    private void monitorGateway(AccessPoint accessPoint, DefaultGateway gateway) {
+
+        IpAddress ipAddr     = gateway.getGatewayConfig().getGatewayAndMask().gatewayAddress();
+        boolean   addMonitor = false;
+
+        synchronized (defaultGateways) {
+            if (!defaultGateways.containsKey(ipAddr)) {
+                addMonitor = true;
+                defaultGateways.put(ipAddr, gateway);
+                defaultGatewayAddresses.add(ipAddr);
+            }
+        }
+        gateway.addAccessPoint(accessPoint);
+
+        if (addMonitor) {
+            log.info("Starting host monitor for Default Gateway IP Address: {}", ipAddr);
+            hostService.startMonitoringIp(ipAddr);
+        }
+        // The gateway may already be known, in which case no host event will tell us about it
+
+        hostService.getHostsByIp(ipAddr).forEach(gateway::updateHost);
+    }
+
+    /**
+     * Stop monitoring a default gateway of an access point if no other access point uses it
+     *
+     * @param accessPoint Access point
+     * @param gateway     Default gateway it no longer uses
+     */
+    private void releaseGateway(AccessPoint accessPoint, DefaultGateway gateway) {
+
+        IpAddress      ipAddr    = gateway.getGatewayConfig().getGatewayAndMask().gatewayAddress();
+        DefaultGateway monitored = defaultGateways.get(ipAddr);
+
+        gateway.removeAccessPoint(accessPoint);
+
+        if (monitored == null) {
+            return;
+        }
+        monitored.removeAccessPoint(accessPoint);
+
+        if (monitored.getAccessPoints().isEmpty()) {
+            synchronized (defaultGateways) {
+                defaultGateways.remove(ipAddr, monitored);
+                defaultGatewayAddresses.remove(ipAddr);
+            }
+            log.info("Halting host monitor for Default Gateway IP Address: {}", ipAddr);
+            hostService.stopMonitoringIp(ipAddr);
+        }
+    }
+
+    /**
+     * Apply a configuration change to an existing access point.  Only the flows affected
+     * by the change are added, replaced or withdrawn.
+     *
+     * @param accessPoint Access point
+     * @param newConfig   New configuration
+     */
+    private void onUpdateAccessPoint(AccessPoint accessPoint, AccessPointConfig newConfig) {
+
+        log.info("Update AccessPoint: {}", accessPoint.toString());
+
+        Map<IpGatewayAndMask, DefaultGateway> before = ImmutableMap.copyOf(accessPoint.getDefaultGateways());
+
+        // The connections and gateways of an access point may change so refresh its index
+        // entries around the update.
+
+        unindexAccessPoint(accessPoint);
+        accessPoint.updateConfig(newConfig);
+        indexAccessPoint(accessPoint);
+
+        Map<IpGatewayAndMask, DefaultGateway> after = accessPoint.getDefaultGateways();
+
+        before.forEach((cidr, gateway) -> {
+            DefaultGateway current = after.get(cidr);
+
+            if (current == null) {
+                releaseGateway(accessPoint, gateway);
+
+            } else if (current != gateway) {
+                // Replaced with a new configuration.  Keep monitoring it under the new object
+
+                defaultGateways.replace(cidr.gatewayAddress(), gateway, current);
+            }
+        });
+        after.forEach((cidr, gateway) -> {
+            if (!before.containsKey(cidr)) {
+                monitorGateway(accessPoint, gateway);
+            }
+        });
+        // Roaming hosts of this access point and those roaming through it
+
+        mobileHosts.values().stream()
+                .filter(host -> host.isRoaming() && (host.getHomeAccessPoints().contains(accessPoint) ||
+                                                     (host.getCurrentAccessPoint() == accessPoint)))
+                .forEach(host -> {
+                    host.refreshRoamingFlows();
+                    saveHost(host);
+                });
+    }
+
+    /**
+     * The aggregateNorthbound or roamingBroadcast setting has changed.  Rebuild the roaming
+     * flows of our hosts, so each registers its roaming point only if a shared flow still
+     * needs it, and then the shared flows of the access points from the points registered.
+     */
+    private void refreshSharedRoamingFlows() {
+
+        log.info("refreshSharedRoamingFlows: aggregateNorthbound: {}, roamingBroadcast: {}",
+                 aggregateNorthbound, roamingBroadcast);
+
+        mobileHosts.values().stream()
+                .filter(MobileHost::isRoaming)
+                .forEach(host -> {
+                    host.refreshRoamingFlows();
+                    saveHost(host);
+                });
+
+        accessPoints.values().forEach(AccessPoint::refreshRoamingPointFlows);
+    }
+
+    /**
+     * Add the connect points and gateway subnets of an access point to the lookup indexes
+     *
+     * @param accessPoint Access point to index
+     */
+    private void indexAccessPoint(AccessPoint accessPoint) {
+
+        accessPoint.getDefaultGateways().keySet().forEach(cidr ->
+                accessPointsBySubnet.add(cidr.getIpPrefix(), accessPoint));
+
+        accessPoint.getConnections().forEach(point -> {
+            AccessPoint existing = accessPointsByConnectPoint.put(point, accessPoint);
+
+            if ((existing != null) && (existing != accessPoint)) {
+                // TODO: We may want to support more than one AccessPoint at an edge location.
+                log.warn("Connect point {} moved from AccessPoint {} to {}", point,
+                        existing.getMacAddress().toString(), accessPoint.getMacAddress().toString());
+            }
+        });
+    }
+
+    /**
+     * Remove any connect points and gateway subnets owned by an access point from the
+     * lookup indexes
+     *
+     * @param accessPoint Access point to remove
+     */
+    private void unindexAccessPoint(AccessPoint accessPoint) {
+
+        accessPoint.getDefaultGateways().keySet().forEach(cidr ->
+                accessPointsBySubnet.remove(cidr.getIpPrefix(), accessPoint));
+
+        accessPointsByConnectPoint.values().removeIf(ap -> ap == accessPoint);
+    }
+
+    /**
+     * Get any access point at the specified edge connect point
+     *
+     * @param point Connect point (or host location) to look up
+     * @return Any associated access point or null
+     */
+    public AccessPoint getAccessPointByConnectPoint(ConnectPoint point) {
+
+        if ((point == null) || point.equals(HostLocation.NONE)) {
+            return null;
+        }
+        // HostLocation carries a timestamp, so key the lookup on the plain connect point
+
+        return accessPointsByConnectPoint.get(new ConnectPoint(point.elementId(), point.port()));
+    }
+
     /**
      * Remove a host completely from the system
      *
@@ -338,7 +871,152 @@ public class APManager implements SDNWLANService {
     public void purgeHost(MobileHost host) {
         log.info("purgeHost: {}", host.toString());
 
-        accessPoints.values().forEach(ap -> ap.removeHost(host));
+        Timeout timeout = purgeTimeouts.remove(host.getMacAddress());
+
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        // Only the home access point(s) and the access point the host is currently
+        // attached to can be holding on to it.  The host stays registered until its flows
+        // are withdrawn since only the intents of registered hosts are sent.
+
+        host.getHomeAccessPoints().forEach(ap -> ap.removeHost(host));
+
+        AccessPoint current = host.getCurrentAccessPoint();
+
+        if ((current != null) && !host.getHomeAccessPoints().contains(current)) {
+            current.removeHost(host);
+        }
+        mobileHosts.remove(host.getMacAddress(), host);
+        hostWriter.remove(host.getMacAddress());
+    }
+
+    /**
+     * Hand a host over to another instance of the cluster.  It is dropped from this
+     * instance but its flows are left in place for the new owner.
+     *
+     * @param host Mobile host to release
+     */
+    private void releaseHost(MobileHost host) {
+        log.info("releaseHost: {}", host.toString());
+
+        Timeout timeout = purgeTimeouts.remove(host.getMacAddress());
+
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        mobileHosts.remove(host.getMacAddress(), host);
+
+        host.getHomeAccessPoints().forEach(ap -> ap.removeHost(host, false));
+
+        AccessPoint current = host.getCurrentAccessPoint();
+
+        if ((current != null) && !host.getHomeAccessPoints().contains(current)) {
+            current.removeHost(host, false);
+        }
+        host.release();
+    }
+
+    /**
+     * The active instances of the cluster changed.  Hand over the mobile hosts whose home
+     * access point now belongs to another instance and take over the ones that now
+     * belong to us.
+     */
+    private void onRebalance() {
+
+        mobileHosts.values().stream()
+                .filter(host -> !isLocalAccessPoint(host.getHomeAccessPoint()))
+                .collect(Collectors.toList())
+                .forEach(this::releaseHost);
+
+        List<Host> hosts = StreamSupport.stream(hostService.getHosts().spliterator(), false)
+                .filter(host -> !mobileHosts.containsKey(host.mac()))
+                .collect(Collectors.toList());
+
+        hostListener.onExistingHosts(hosts);
+
+        // Access points we now own may have intents that were never sent from here
+
+        accessPoints.values().forEach(reconciler::markDirty);
+
+        log.info("onRebalance: {} mobile hosts handled by this instance", mobileHosts.size());
+    }
+
+    /**
+     * Is an access point (and so its mobile hosts) handled by this instance?
+     *
+     * @param accessPoint Access point
+     * @return true if handled here
+     */
+    private boolean isLocalAccessPoint(AccessPoint accessPoint) {
+        return (accessPoint == null) || partitioner.isMine(accessPoint.getMacAddress());
+    }
+
+    /**
+     * Should an intent be sent to the intent service by this instance?  The intents of a
+     * mobile host are sent by the instance handling the host and all others by the
+     * instance handling the access point in the key.
+     *
+     * This also filters withdrawals, so a host key must pass on exactly one instance even
+     * once the host is gone (an orphaned intent found by the reconciler).  A host still
+     * known to the host service is placed by its home access point, the same as its
+     * events.  One that is not is placed by its own MAC address.
+     *
+     * @param key Intent key
+     * @return true if handled here
+     */
+    private boolean isLocalKey(Key key) {
+        MacAddress mac = IntentKeys.macOf(key);
+
+        if (mac == null) {
+            return true;
+        }
+        if (!IntentKeys.isHostKey(key)) {
+            return partitioner.isMine(mac);
+        }
+        if (mobileHosts.containsKey(mac)) {
+            return true;
+        }
+        Set<Host> hosts = hostService.getHostsByMac(mac);
+
+        return hosts.isEmpty() ? partitioner.isMine(mac) : hostListener.isLocalHost(hosts.iterator().next());
+    }
+
+    /**
+     * Start the purge timer for a host that was the subject of a HOST_REMOVED event.
+     *
+     *   We pause a small amount of time before completely removing it since it could
+     *   be a host that left one AP and then shows up at another one shortly afterwards.
+     *
+     * @param host Mobile host to purge if it does not come back
+     */
+    private void schedulePurge(MobileHost host) {
+
+        host.setRemovedTime();
+
+        Timeout timeout = Timer.getTimer().newTimeout(new PurgeHostTask(host),
+                                                      hostRemovedTimeout, TimeUnit.SECONDS);
+        Timeout previous = purgeTimeouts.put(host.getMacAddress(), timeout);
+
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Stop any pending purge of a host that has come back
+     *
+     * @param host Mobile host
+     */
+    private void cancelPurge(MobileHost host) {
+
+        host.setRemovedTime(0);
+
+        Timeout timeout = purgeTimeouts.remove(host.getMacAddress());
+
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 
     /**
@@ -354,10 +1032,45 @@ public class APManager implements SDNWLANService {
             if (cfg == null) {
                 return;
             }
+            // A configuration out of range is rejected as a whole, the current one stays in effect
+
+            try {
+                if (!cfg.isValid()) {
+                    log.error("reconfigureNetwork: invalid configuration ignored");
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.error("reconfigureNetwork: invalid configuration ignored: {}", e.getMessage());
+                return;
+            }
             gatewayFlowPriority    = cfg.getDefaultGatewayFlowPriority();
             roamingUnicastPriority = cfg.getRoamingUnicastFlowPriority();
             hostRemovedTimeout     = cfg.getDefaultRemovedHostTimeout();
 
+            intentPipeline.configure(cfg.getIntentBatchSize(), cfg.getIntentBatchWindow());
+            intentPipeline.configureRate(cfg.getIntentRate(), cfg.getIntentBurst());
+            objectivePipeline.configure(cfg.getIntentBatchSize(), cfg.getObjectiveBatchWindow());
+            reconciler.configure(cfg.getReconcileInterval());
+            snapshot.configure(cfg.getSnapshotInterval());
+            hostWriter.configure(cfg.getHostStateFlushInterval());
+            configureJournal(cfg);
+
+            boolean sharedFlowsChanged = (aggregateNorthbound != cfg.getAggregateNorthbound()) ||
+                                         (roamingBroadcast != cfg.getRoamingBroadcast());
+
+            makeBeforeBreak        = cfg.getMakeBeforeBreak();
+            makeBeforeBreakTimeout = cfg.getMakeBeforeBreakTimeout();
+            aggregateNorthbound    = cfg.getAggregateNorthbound();
+            useFlowObjectives      = cfg.getFlowBackend().equals(SDNWLANConfig.FLOW_BACKEND_OBJECTIVE);
+            warmRestart            = cfg.getWarmRestart();
+            warmRestartGrace       = cfg.getWarmRestartGrace();
+            homeApShortcut         = cfg.getHomeApShortcut();
+            roamingBroadcast       = cfg.getRoamingBroadcast();
+
+            if (sharedFlowsChanged) {
+                refreshSharedRoamingFlows();
+            }
+
             // Walk new list of access points and updateConfig existing ones and then add new ones
 
             Map<MacAddress, AccessPointConfig> newPoints = cfg.getAccessPoints();
@@ -367,16 +1080,19 @@ public class APManager implements SDNWLANService {
 
             getAccessPoints().values().stream().filter(ap -> !newPoints.containsKey(ap.getMacAddress())).forEach(ap -> {
                 onRemoveAccessPoint(ap);
+                store.removeAccessPoint(ap);
             });
             // Update existing ones
 
             newPoints.values().stream().filter(newConfig -> accessPoints.containsKey(newConfig.getMacAddress())).forEach(newConfig -> {
-                accessPoints.get(newConfig.getMacAddress()).updateConfig(newConfig);
+                onUpdateAccessPoint(accessPoints.get(newConfig.getMacAddress()), newConfig);
+                store.putAccessPoint(newConfig);
             });
             // Then add any new ones
 
             newPoints.values().stream().filter(newConfig -> !accessPoints.containsKey(newConfig.getMacAddress())).forEach(newConfig -> {
                 onAddAccessPoint(new AccessPoint(newConfig));
+                store.putAccessPoint(newConfig);
             });
         }
 
@@ -395,6 +1111,37 @@ public class APManager implements SDNWLANService {
         }
     }
 
+    /**
+     * Apply access point changes saved to the store by other controller instances
+     */
+    private class InternalStoreDelegate implements SDNWLANStoreDelegate {
+        @Override
+        public void notify(SDNWLANStoreEvent event) {
+            AccessPointConfig config   = event.subject();
+            AccessPoint       existing = accessPoints.get(config.getMacAddress());
+
+            switch (event.type()) {
+                case ACCESS_POINT_ADDED:
+                case ACCESS_POINT_UPDATED:
+                    if (existing != null) {
+                        onUpdateAccessPoint(existing, config);
+                    } else {
+                        onAddAccessPoint(new AccessPoint(config));
+                    }
+                    break;
+
+                case ACCESS_POINT_REMOVED:
+                    if (existing != null) {
+                        onRemoveAccessPoint(existing);
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
     /**
      * Handle Host events. This application will monitor all default gateway hosts as well
      * as mobile hosts
@@ -444,6 +1191,19 @@ public class APManager implements SDNWLANService {
          */
         @Override
         public void event(HostEvent event) {
+
+            EventJournal current = journal;
+
+            if (current != null) {
+                current.append(event);
+            }
+            // Mobile hosts of access points handled by another instance are left to it
+
+            if (!isLocalHost(event.subject())) {
+                log.debug("{} {} handled by another instance", event.type(),
+                          MobileHost.hostToString(event.subject()));
+                return;
+            }
             switch (event.type()) {
             case HOST_ADDED:
                 onHostAdded(event.subject());
@@ -476,8 +1236,50 @@ public class APManager implements SDNWLANService {
             //
             //
             default:
-                break;
+                return;
             }
+            // Replicate the new state of the mobile host (if it is one) to the other instances
+
+            saveMobileHost(event.subject());
+        }
+
+        /**
+         * Save the state of a host to the distributed store if it is one of our mobile hosts
+         *
+         * @param host Host from the host service
+         */
+        private void saveMobileHost(Host host) {
+            MobileHost mobileHost = mobileHosts.get(host.mac());
+
+            if (mobileHost != null) {
+                saveHost(mobileHost);
+            }
+        }
+
+        /**
+         * Handle the hosts that were already known when we started.  Default gateways are
+         * handled first so their location is known before any mobile host is set up.
+         *
+         * @param hosts Hosts from the host service
+         */
+        private void onExistingHosts(Iterable<Host> hosts) {
+            List<Host> mobile = Lists.newArrayList();
+
+            hosts.forEach(host -> {
+                if (isDefaultGateway(host)) {
+                    onDefaultGatewayModified(host);
+                } else {
+                    mobile.add(host);
+                }
+            });
+            mobile.removeIf(host -> !isLocalHost(host));
+
+            log.info("onExistingHosts: {} possible mobile hosts", mobile.size());
+
+            mobile.forEach(host -> {
+                onMobileHostAdded(host);
+                saveMobileHost(host);
+            });
         }
 
         /**
@@ -488,18 +1290,10 @@ public class APManager implements SDNWLANService {
         private AccessPoint getAccessPointByHostLocation(HostLocation location) {
 
             // TODO: We may want to support more than one AccessPoint at an edge location.  Change if needed.
-            if (location.equals(HostLocation.NONE)) {
-                return null;
-            }
-            for (AccessPoint accessPoint : accessPoints.values()) {
-                if (accessPoint.getConnections().contains(location)) {
-                    return accessPoint;
-                }
-            }
-            return null;
+            return getAccessPointByConnectPoint(location);
         }
         /*
-         * Get all access points whose default gateway handles the given IP Address(es)
+         * Get the access points whose default gateway subnet is the longest match for the given IP Address(es)
          *
          * @param addrs Set of IP Address
          * @return Set of access points
@@ -508,13 +1302,7 @@ public class APManager implements SDNWLANService {
 
             Set<AccessPoint> points = Sets.newHashSet();
 
-            accessPoints.values().forEach(accessPoint ->
-                accessPoint.getDefaultGateways().keySet().forEach(cidr ->
-                    addrs.forEach(ip -> {
-                        if (cidr.contains(ip)) {
-                            points.add(accessPoint);
-                        }
-                    })));
+            addrs.forEach(ip -> points.addAll(accessPointsBySubnet.longestPrefixMatch(ip)));
 
             // TODO: Currently we only support a single AccessPoint per subnet.
             // we will return all of them here but the rest of our logic uses only the first in the set
@@ -523,22 +1311,78 @@ public class APManager implements SDNWLANService {
         }
 
         /**
-         * Search all AP's for an existing mobile host
+         * Find the home access points of a host that is not yet a mobile host.  Any saved
+         * by an instance that handled the host before are used, otherwise the access points
+         * serving the host's subnet.
+         *
+         * @param host Host from the host service
+         * @return Set of access points, empty if none
+         */
+        private Set<AccessPoint> findHomeAccessPoints(Host host) {
+            MobileHostState  saved   = hostWriter.get(host.mac());
+            Set<AccessPoint> homeAPs = (saved != null) ? getAccessPointsByMac(saved.getHomeAccessPoints()) :
+                                       Collections.emptySet();
+
+            return homeAPs.isEmpty() ? getAccessPointsBySubnet(host.ipAddresses()) : homeAPs;
+        }
+
+        /**
+         * Is a host handled by this instance?  Default gateways (and hosts we do not care
+         * about) are seen by every instance.  A mobile host is handled by the instance
+         * handling its home access point.
+         *
+         * @param host Host from the host service
+         * @return true if handled here
+         */
+        private boolean isLocalHost(Host host) {
+            if (mobileHosts.containsKey(host.mac()) || isDefaultGateway(host)) {
+                return true;
+            }
+            Set<AccessPoint> homeAPs = findHomeAccessPoints(host);
+
+            return homeAPs.isEmpty() || isLocalAccessPoint(homeAPs.iterator().next());
+        }
+
+        /**
+         * Get the access points with the given MAC addresses.  Any that are not known are skipped.
+         *
+         * @param macs MAC addresses of the access points
+         * @return Set of access points
+         */
+        private Set<AccessPoint> getAccessPointsByMac(Set<MacAddress> macs) {
+
+            Set<AccessPoint> points = Sets.newHashSet();
+
+            macs.forEach(mac -> {
+                AccessPoint ap = accessPoints.get(mac);
+
+                if (ap != null) {
+                    points.add(ap);
+                }
+            });
+            return points;
+        }
+
+        /**
+         * Look up an existing mobile host
          * @param host  Host to search for
          * @return Mobile host or null if not found
          */
         protected MobileHost getMobileHost(Host host) {
 
-            MacAddress hostMac = host.mac();
+            return mobileHosts.get(host.mac());
+        }
 
-            for (AccessPoint accessPoint : accessPoints.values()) {
-                for (MobileHost apHost : accessPoint.getLocalHosts().values()) {
-                    if (hostMac.equals(apHost.getMacAddress())) {
-                        return apHost;
-                    }
-                }
-            }
-            return null;
+        /**
+         * Is the host one of our monitored default gateways?  Done by seeing if any host IPs
+         * are in common with our set of known default gateways.
+         *
+         * @param host Host to check
+         * @return true if the host has a default gateway address
+         */
+        private boolean isDefaultGateway(Host host) {
+
+            return defaultGatewayAddresses.containsAny(host.ipAddresses());
         }
 
         /**
@@ -553,8 +1397,8 @@ public class APManager implements SDNWLANService {
         private void onMobileHostAdded(Host host) {
             AccessPoint      locationAP = getAccessPointByHostLocation(host.location());
             MobileHost       mobileHost = getMobileHost(host);
-            Set<AccessPoint> homeAPs    = (mobileHost == null) ?
-                                          getAccessPointsBySubnet(host.ipAddresses()) :
+            MobileHostState  saved      = (mobileHost == null) ? hostWriter.get(host.mac()) : null;
+            Set<AccessPoint> homeAPs    = (mobileHost == null) ? findHomeAccessPoints(host) :
                                           mobileHost.getHomeAccessPoints();
 
             // Is the new host related to any of our access points and is the subnet handled?
@@ -569,7 +1413,7 @@ public class APManager implements SDNWLANService {
                     log.info("onHostAdded: {}, This was a host pending purge", MobileHost.hostToString(host));
 
                     // Stop any remove timeout purge for this host
-                    mobileHost.setRemovedTime(0);
+                    cancelPurge(mobileHost);
                     mobileHost.setCurrentAccessPoint(locationAP);
                 }
                 else {
@@ -579,6 +1423,16 @@ public class APManager implements SDNWLANService {
                                  new MobileHost(host, homeAPs) :
                                  new MobileHost(host, homeAPs, locationAP);
 
+                    if (mobileHosts.putIfAbsent(host.mac(), mobileHost) != null) {
+                        log.warn("onHostAdded: {}, mobile host already registered", MobileHost.hostToString(host));
+                        return;
+                    }
+                    // Known to another (or a previous) instance, keep its history
+
+                    if (saved != null) {
+                        mobileHost.restoreState(saved);
+                    }
+
                     // Add host to it's home Access Point.  The flows from this point are already set up
                     // (default gateway flows)
 
@@ -607,7 +1461,7 @@ public class APManager implements SDNWLANService {
 
                 if ((mobileHost != null) && (locationAP == null)) {
                     // Stop any remove timeout purge for this host
-                    mobileHost.setRemovedTime(0);
+                    cancelPurge(mobileHost);
                     mobileHost.setCurrentAccessPoint(null);
                 }
             }
@@ -643,10 +1497,9 @@ public class APManager implements SDNWLANService {
 
             log.info("HOST_ADDED: {}", MobileHost.hostToString(host));
 
-            // Is it a known default gateway. Do by seeing if any host IPs are in common
-            // with our set of known default gateways.
+            // Is it a known default gateway?
 
-            if (!Collections.disjoint(host.ipAddresses(), defaultGateways.keySet())) {
+            if (isDefaultGateway(host)) {
                 onDefaultGatewayModified(host);
 
             } else {
@@ -664,7 +1517,7 @@ public class APManager implements SDNWLANService {
             log.info("onHostUpdated: {}, previous: {}",
                     MobileHost.hostToString(host), MobileHost.hostToString(previous));
 
-            if (!Collections.disjoint(host.ipAddresses(), defaultGateways.keySet())) {
+            if (isDefaultGateway(host)) {
                 onDefaultGatewayModified(host);
 
             } else {
@@ -694,7 +1547,7 @@ public class APManager implements SDNWLANService {
 
             log.info("onHostMoved: {}", MobileHost.hostToString(host));
 
-            if (!Collections.disjoint(host.ipAddresses(), defaultGateways.keySet())) {
+            if (isDefaultGateway(host)) {
                 onDefaultGatewayModified(host);
 
             } else {
@@ -732,10 +1585,10 @@ public class APManager implements SDNWLANService {
 
             MobileHost mobileHost = getMobileHost(host);
 
-            if (host != null) {
-                // Set the time this was removed.
+            if (mobileHost != null) {
+                // Set the time this was removed and start the purge timer
 
-                mobileHost.setRemovedTime();
+                schedulePurge(mobileHost);
 
                 // Note that we do not tear down any flows or set the current access point.  This
                 // will be done if the remove timeout occurs.  We may get an 'ADD_HOST' very soon
@@ -780,6 +1633,14 @@ public class APManager implements SDNWLANService {
          */
         @Override
         public void event(DeviceEvent event) {
+
+            // Port statistics are frequent and of no interest to a replay
+
+            EventJournal current = journal;
+
+            if ((current != null) && (event.type() != DeviceEvent.Type.PORT_STATS_UPDATED)) {
+                current.append(event);
+            }
             switch (event.type()) {
                 case DEVICE_ADDED:
                     onDeviceAdded(event);
@@ -859,33 +1720,29 @@ public class APManager implements SDNWLANService {
     }
 
     /**
-     * Timer task that is used to purge hosts that were the subject of HOST_REMOVED
-     * events.  We pause a small amount of time before completely removing them since it
-     * could be a host that left one AP and then showed up at another one shortly afterwards.
+     * Timer task that is used to purge a host that was the subject of a HOST_REMOVED
+     * event and did not come back before the removed host timeout expired.
      */
     private class PurgeHostTask implements TimerTask {
-        @Override
-        public void run(Timeout to) {
 
-            Date dateNow = new Date();
+        private final MobileHost host;
 
-            for (AccessPoint accessPoint : accessPoints.values()) {
-                for (MobileHost apHost : accessPoint.getLocalHosts().values()) {
+        PurgeHostTask(MobileHost host) {
+            this.host = host;
+        }
 
-                    long hostTime = apHost.getRemovedTime();
+        @Override
+        public void run(Timeout to) {
 
-                    if ((hostTime != 0) &&
-                            ((dateNow.getTime() - hostTime) > (hostRemovedTimeout * 1000))) {
+            // Only purge if this timer is still the armed one for the host.  It may have
+            // been cancelled (or re-armed) by the host coming back.
 
-                        // Remove the host...
+            if (purgeTimeouts.remove(host.getMacAddress(), to) && (host.getRemovedTime() != 0)) {
 
-                        purgeHost(apHost);
+                purgeHost(host);
 
-                        log.info("PurgeHostTask: Deleted Host purged: {}", apHost);
-                    }
-                }
+                log.info("PurgeHostTask: Deleted Host purged: {}", host);
             }
-            deletedHostTimeout = Timer.getTimer().newTimeout(new PurgeHostTask(), removeDelay, TimeUnit.SECONDS);
         }
     }
 }
@@ -16,18 +16,27 @@
 package net.bcsw.sdnwlan;
 
 import net.bcsw.sdnwlan.config.AccessPointConfig;
+import net.bcsw.sdnwlan.config.GatewayConfig;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import net.bcsw.sdnwlan.flows.Flow;
 import net.bcsw.sdnwlan.flows.NorthBoundFlow;
+import net.bcsw.sdnwlan.flows.NorthBoundMacAggregateFlow;
 import net.bcsw.sdnwlan.flows.NorthBoundMacFlow;
+import net.bcsw.sdnwlan.flows.SouthBoundBroadcastFlow;
 import net.bcsw.sdnwlan.flows.SouthBoundFlow;
 import net.bcsw.sdnwlan.flows.SouthBoundIpSubnetFlow;
-import org.onlab.osgi.DefaultServiceDirectory;
-import org.onlab.osgi.ServiceDirectory;
+import net.bcsw.sdnwlan.intent.IntentKeys;
+import net.bcsw.sdnwlan.intent.IntentOwner;
+import net.bcsw.sdnwlan.intent.IntentPipeline;
+import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.HostLocation;
 import org.onosproject.net.intent.Intent;
-import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,14 +48,18 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * At this time, this is the first point of entry into the SDN network where a BSAP is connected
  */
-public class AccessPoint extends AccessPointConfig
+public class AccessPoint extends AccessPointConfig implements IntentOwner
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private final IntentService intentService;
+    private Map<Key, Intent> northboundDefaultGatewayIntentKeys = new ConcurrentHashMap<>();
+    private Map<Key, Intent> southboundDefaultGatewayIntentKeys = new ConcurrentHashMap<>();
 
-    private Map<SDNWLANConnectPointPair, Intent> northboundDefaultGatewayIntentKeys = new ConcurrentHashMap<>();
-    private Map<SDNWLANConnectPointPair, Intent> southboundDefaultGatewayIntentKeys = new ConcurrentHashMap<>();
+    // Aggregated northbound flows from the APs our hosts are roaming through to our gateways
+    private Map<Key, Intent> northboundAggregateIntentKeys = new ConcurrentHashMap<>();
+
+    // Per-subnet broadcast flows to the APs our hosts are roaming through
+    private Map<Key, Intent> southboundBroadcastIntentKeys = new ConcurrentHashMap<>();
 
     // Default gateways for this access point
 
@@ -64,9 +77,6 @@ public class AccessPoint extends AccessPointConfig
     public AccessPoint(AccessPointConfig configEntry) {
         super(configEntry);
 
-        ServiceDirectory serviceDirectory = new DefaultServiceDirectory();
-        this.intentService = serviceDirectory.get(IntentService.class);
-
         // Construct default gateways for this AP
 
         getDefaultGatewayList().forEach(gwConfig ->
@@ -112,6 +122,32 @@ public class AccessPoint extends AccessPointConfig
         return builder.toString();
     }
 
+    /**
+     * Get the southbound default gateway (and roaming broadcast) intents this AP wants installed
+     *
+     * @return map of intents by key
+     */
+    @Override
+    public Map<Key, Intent> getSouthboundIntents() {
+        return ImmutableMap.<Key, Intent>builder()
+                .putAll(southboundDefaultGatewayIntentKeys)
+                .putAll(southboundBroadcastIntentKeys)
+                .build();
+    }
+
+    /**
+     * Get the northbound default gateway (and aggregate roaming) intents this AP wants installed
+     *
+     * @return map of intents by key
+     */
+    @Override
+    public Map<Key, Intent> getNorthboundIntents() {
+        return ImmutableMap.<Key, Intent>builder()
+                .putAll(northboundDefaultGatewayIntentKeys)
+                .putAll(northboundAggregateIntentKeys)
+                .build();
+    }
+
     /**
      * Get the collection of default gateways for this AP
      *
@@ -130,7 +166,71 @@ public class AccessPoint extends AccessPointConfig
 
         log.info("updateConfig: {}", this.getMacAddress().toString());
 
-        // TODO: Implement this.  Compare new config with old config...
+        // Any change to our connect point or VLANs changes every flow we own.  Otherwise
+        // only the flows of gateways that were added, removed or changed are touched.
+
+        boolean pointChanged = !getIngressVlans().equals(config.getIngressVlans()) ||
+                               !getConnections().equals(config.getConnections());
+
+        Map<IpGatewayAndMask, GatewayConfig> newGateways = Maps.newLinkedHashMap();
+
+        config.getDefaultGatewayList().forEach(gwConfig -> newGateways.put(gwConfig.getGatewayAndMask(), gwConfig));
+
+        // Drop the flows of any gateways that are gone before our connect point changes
+
+        List<IpGatewayAndMask> removed = Lists.newArrayList(Sets.difference(defaultGateways.keySet(),
+                                                                            newGateways.keySet()));
+        removed.forEach(cidr -> {
+            DefaultGateway gateway = defaultGateways.remove(cidr);
+
+            log.info("updateConfig: gateway {} removed", gateway.toString());
+            dropDefaultGatewayFlows(gateway);
+        });
+
+        // Name, location, connections, VLANs and other VIDs.  The other VIDs are not used by
+        // any flow so they need nothing more.
+
+        setConfig(config);
+
+        newGateways.forEach((cidr, gwConfig) -> {
+            DefaultGateway existing = defaultGateways.get(cidr);
+
+            if (existing == null) {
+                DefaultGateway gateway = new DefaultGateway(gwConfig);
+
+                log.info("updateConfig: gateway {} added", gateway.toString());
+                defaultGateways.put(cidr, gateway);
+                addDefaultGatewayFlows(gateway);
+
+            } else {
+                boolean vlansChanged = !gwConfig.getIngressVlans().equals(existing.getGatewayConfig().getIngressVlans());
+                DefaultGateway gateway = existing;
+
+                if (vlansChanged || !Objects.equals(gwConfig.getName(), existing.getGatewayConfig().getName())) {
+                    gateway = new DefaultGateway(existing, gwConfig);
+                    defaultGateways.put(cidr, gateway);
+                }
+                if (vlansChanged || pointChanged) {
+                    log.info("updateConfig: gateway {} flows changed", gateway.toString());
+                    refreshDefaultGatewayFlows(gateway);
+                }
+            }
+        });
+    }
+
+    /**
+     * Re-install the default flows of a gateway after a configuration change or a move of
+     * the gateway.  Flows that did not change are left alone and the others are replaced
+     * in place.
+     *
+     * @param gateway The default gateway
+     */
+    void refreshDefaultGatewayFlows(DefaultGateway gateway) {
+        if (gateway.isDefaultFlowsInstalled()) {
+            installDefaultGatewayFlows(gateway);
+        } else {
+            addDefaultGatewayFlows(gateway);
+        }
     }
 
     /**
@@ -197,39 +297,281 @@ public class AccessPoint extends AccessPointConfig
             return;
 
         } else if (gateway.setDefaultFlowsInstalled(true)) {
+            installDefaultGatewayFlows(gateway);
+        }
+    }
 
-            ////////////////////////////////////////////////
-            // Northbound.  Match of Gateway MAC address and any VLAN ID's, preserve any
-            //              vlan(s) after matching them
-            //
-            // Southbound.  Match on the IP subnet and any VLAN ID's.
-            //
-            // Calculate the flows and see if they already exist, if not, add them.  This will
-            // allow this routine to be called at any time to add in any missing or new flows
-            // to the default gateway
+    /**
+     * Install (or replace) the default flows between this AP and a gateway whose location
+     * is known
+     *
+     * @param gateway The default gateway
+     */
+    private void installDefaultGatewayFlows(DefaultGateway gateway) {
+
+        SDNWLANConnectPoint apPoint = new SDNWLANConnectPoint(this);
+        SDNWLANConnectPoint gwPoint = new SDNWLANConnectPoint(gateway);
+
+        ////////////////////////////////////////////////
+        // Northbound.  Match of Gateway MAC address and any VLAN ID's, preserve any
+        //              vlan(s) after matching them
+        //
+        // Southbound.  Match on the IP subnet and any VLAN ID's.
+        //
+        // Calculate the flows and see if they already exist, if not, add them.  This will
+        // allow this routine to be called at any time to add in any missing or new flows
+        // to the default gateway
+
+        IpPrefix subnet = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
+
+        // Insert southbound flows first since we want data to the customer as soon as possible
+
+        SouthBoundFlow sbFlow = new SouthBoundIpSubnetFlow(APManager.appId, gwPoint, apPoint, subnet);
+
+        Key    southboundKey    = IntentKeys.gatewayKey(APManager.appId, IntentKeys.Direction.SOUTHBOUND,
+                                                        getMacAddress(), subnet);
+        Intent southboundIntent = sbFlow.getIntent(southboundKey, APManager.gatewayFlowPriority);
 
-            SDNWLANConnectPointPair pair = new SDNWLANConnectPointPair(apPoint, gwPoint,
-                    gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix());
+        installFlow(southboundDefaultGatewayIntentKeys, sbFlow, southboundIntent, IntentPipeline.Lane.GATEWAY);
 
-            // Insert southbound flows first since we want data to the customer as soon as possible
+        NorthBoundFlow nbFlow = new NorthBoundMacFlow(APManager.appId, apPoint,
+                gwPoint, gateway.getMacAddress());
 
-            SouthBoundFlow sbFlow = new SouthBoundIpSubnetFlow(APManager.appId, gwPoint, apPoint,
-                    gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix());
+        Key    northboundKey    = IntentKeys.gatewayKey(APManager.appId, IntentKeys.Direction.NORTHBOUND,
+                                                        getMacAddress(), subnet);
+        Intent northboundIntent = nbFlow.getIntent(northboundKey, APManager.gatewayFlowPriority);
+
+        installFlow(northboundDefaultGatewayIntentKeys, nbFlow, northboundIntent, IntentPipeline.Lane.GATEWAY);
+
+        // Hosts may already be roaming if the gateway location was learned late
+
+        synchronized (gateway) {
+            updateRoamingPointFlows(gateway);
+        }
+        APManager.reconciler.markDirty(this);
+    }
+
+    /**
+     * Submit an intent unless an equivalent one is already installed under its key.  A
+     * different intent with the same key is replaced in place by the intent service.
+     *
+     * @param intents Map of our intents the intent belongs in
+     * @param flow    Flow the intent implements
+     * @param intent  Intent to submit
+     * @param lane    Priority lane
+     */
+    private void installFlow(Map<Key, Intent> intents, Flow flow, Intent intent, IntentPipeline.Lane lane) {
 
-            Intent southboundIntent = sbFlow.getIntent(APManager.gatewayFlowPriority);
+        Intent existing = intents.get(intent.key());
 
-            if (southboundDefaultGatewayIntentKeys.putIfAbsent(pair, southboundIntent) == null) {
-                intentService.submit(southboundIntent);
+        if ((existing != null) && IntentPipeline.isEquivalent(existing, intent)) {
+            return;
+        }
+        intents.put(intent.key(), intent);
+
+        APManager.intentTracker.track(flow, intent);
+        APManager.intentPipeline.submit(intent, lane);
+    }
+
+    /**
+     * Add a connect point that a host of one of our default gateways is roaming through
+     *
+     * @param gateway Default gateway of the roaming host
+     * @param point   Connect point of the access point the host roamed to
+     */
+    public void addRoamingPoint(DefaultGateway gateway, ConnectPoint point) {
+        synchronized (gateway) {
+            if (gateway.addRoamingPoint(point)) {
+                updateRoamingPointFlows(gateway);
             }
-            NorthBoundFlow nbFlow = new NorthBoundMacFlow(APManager.appId, apPoint,
-                    gwPoint, gateway.getMacAddress());
+        }
+    }
 
-            Intent northboundIntent = nbFlow.getIntent(APManager.gatewayFlowPriority);
+    /**
+     * Remove a connect point that a host of one of our default gateways was roaming through
+     *
+     * @param gateway Default gateway of the roaming host
+     * @param point   Connect point of the access point the host roamed to
+     */
+    public void removeRoamingPoint(DefaultGateway gateway, ConnectPoint point) {
+        synchronized (gateway) {
+            if (gateway.removeRoamingPoint(point)) {
+                updateRoamingPointFlows(gateway);
+            }
+        }
+    }
 
-            if (northboundDefaultGatewayIntentKeys.putIfAbsent(pair, northboundIntent) == null) {
-                intentService.submit(northboundIntent);
+    /**
+     * The set of connect points hosts of a gateway are roaming through has changed.  Update
+     * the flows shared by all of them.
+     *
+     *   Caller should hold the gateway's monitor
+     *
+     * @param gateway Default gateway
+     */
+    private void updateRoamingPointFlows(DefaultGateway gateway) {
+        if (APManager.aggregateNorthbound) {
+            updateNorthBoundAggregateFlow(gateway);
+        }
+        if (APManager.roamingBroadcast) {
+            updateBroadcastFlows(gateway);
+        }
+    }
+
+    /**
+     * Bring the flows shared by the roaming hosts of all our default gateways in line with
+     * the aggregateNorthbound and roamingBroadcast settings after either has changed.  Flows
+     * of a disabled feature are withdrawn and those of an enabled one are built from the
+     * roaming points already registered.
+     */
+    public void refreshRoamingPointFlows() {
+        defaultGateways.values().forEach(gateway -> {
+            synchronized (gateway) {
+                IpPrefix subnet = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
+
+                if (APManager.aggregateNorthbound) {
+                    updateNorthBoundAggregateFlow(gateway);
+                } else {
+                    withdrawFlow(northboundAggregateIntentKeys,
+                                 IntentKeys.aggregateKey(APManager.appId, IntentKeys.Direction.NORTHBOUND,
+                                                         getMacAddress(), subnet));
+                }
+                if (APManager.roamingBroadcast) {
+                    updateBroadcastFlows(gateway);
+                } else {
+                    for (String source : new String[]{IntentKeys.FROM_GATEWAY, IntentKeys.FROM_HOME_AP}) {
+                        withdrawFlow(southboundBroadcastIntentKeys,
+                                     IntentKeys.broadcastKey(APManager.appId, source, getMacAddress(), subnet));
+                    }
+                }
+            }
+        });
+        APManager.reconciler.markDirty(this);
+    }
+
+    /**
+     * Withdraw one of our flows if it is installed
+     *
+     * @param intents Map of the intents of the flow's kind
+     * @param key     Flow key
+     */
+    private void withdrawFlow(Map<Key, Intent> intents, Key key) {
+        Intent intent = intents.remove(key);
+
+        if (intent != null) {
+            APManager.intentPipeline.withdraw(intent);
+        }
+    }
+
+    /**
+     * Submit (or replace) the broadcast flows of a default gateway's subnet to all of the
+     * points its hosts are roaming through.  There is one flow for broadcasts from the
+     * gateway and one for broadcasts from this (the home) access point, each also delivering
+     * to the other so their broadcasts are not cut off.  If no hosts are roaming, the flows
+     * are withdrawn.
+     *
+     *   An intent has a single treatment, so broadcasts from this access point can only be
+     *   replicated if the gateway uses the same VLANs.  Otherwise only the gateway's are.
+     *
+     *   Caller should hold the gateway's monitor
+     *
+     * @param gateway Default gateway
+     */
+    private void updateBroadcastFlows(DefaultGateway gateway) {
+
+        IpPrefix            subnet  = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
+        SDNWLANConnectPoint apPoint = new SDNWLANConnectPoint(this);
+        SDNWLANConnectPoint gwPoint = new SDNWLANConnectPoint(gateway);
+        Set<ConnectPoint>   points  = gateway.getRoamingPoints();
+        boolean             enabled = !points.isEmpty() && (gwPoint.getLocation() != null) &&
+                                      !gwPoint.getLocation().equals(HostLocation.NONE);
+
+        log.info("updateBroadcastFlows: {} / {} - {} roaming points", this.getMacAddress().toString(),
+                gateway.toString(), points.size());
+
+        // The roaming hosts keep the VLANs of this (their home) access point
+
+        Set<ConnectPoint> fromGateway = Sets.newHashSet(points);
+        fromGateway.add(apPoint.getLocation());
+
+        updateBroadcastFlow(IntentKeys.broadcastKey(APManager.appId, IntentKeys.FROM_GATEWAY,
+                                                    getMacAddress(), subnet),
+                            enabled ? new SouthBoundBroadcastFlow(APManager.appId, gwPoint, apPoint, fromGateway) :
+                                      null);
+
+        Set<ConnectPoint> fromHome = Sets.newHashSet(points);
+        fromHome.add(gwPoint.getLocation());
+
+        updateBroadcastFlow(IntentKeys.broadcastKey(APManager.appId, IntentKeys.FROM_HOME_AP,
+                                                    getMacAddress(), subnet),
+                            enabled && gwPoint.getIngressVlans().equals(apPoint.getIngressVlans()) ?
+                                    new SouthBoundBroadcastFlow(APManager.appId, apPoint, apPoint, fromHome) :
+                                    null);
+
+        APManager.reconciler.markDirty(this);
+    }
+
+    /**
+     * Submit (or replace) a broadcast flow
+     *
+     * @param key  Flow key
+     * @param flow Flow, or null if it should be withdrawn
+     */
+    private void updateBroadcastFlow(Key key, SouthBoundBroadcastFlow flow) {
+
+        Intent intent = (flow == null) ? null : flow.getIntent(key, APManager.roamingUnicastPriority);
+
+        if (intent == null) {
+            Intent previous = southboundBroadcastIntentKeys.remove(key);
+
+            if (previous != null) {
+                APManager.intentPipeline.withdraw(previous);
             }
+            return;
         }
+        installFlow(southboundBroadcastIntentKeys, flow, intent, IntentPipeline.Lane.SOUTHBOUND);
+    }
+
+    /**
+     * Submit (or replace) the aggregate northbound flow from all roaming points of a
+     * default gateway to the gateway.  If no hosts are roaming, the flow is withdrawn.
+     *
+     *   Caller should hold the gateway's monitor
+     *
+     * @param gateway Default gateway
+     */
+    private void updateNorthBoundAggregateFlow(DefaultGateway gateway) {
+
+        IpPrefix            subnet  = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
+        Key                 key     = IntentKeys.aggregateKey(APManager.appId, IntentKeys.Direction.NORTHBOUND,
+                                                              getMacAddress(), subnet);
+        SDNWLANConnectPoint gwPoint = new SDNWLANConnectPoint(gateway);
+        Set<ConnectPoint>   points  = gateway.getRoamingPoints();
+
+        if (points.isEmpty() || (gwPoint.getLocation() == null) ||
+                (gwPoint.getLocation() == HostLocation.NONE)) {
+
+            Intent intent = northboundAggregateIntentKeys.remove(key);
+
+            if (intent != null) {
+                APManager.intentPipeline.withdraw(intent);
+            }
+            APManager.reconciler.markDirty(this);
+            return;
+        }
+        log.info("updateNorthBoundAggregateFlow: {} / {} - {} roaming points", this.getMacAddress().toString(),
+                gateway.toString(), points.size());
+
+        // The roaming hosts keep the VLANs of this (their home) access point
+
+        NorthBoundFlow nbFlow = new NorthBoundMacAggregateFlow(APManager.appId, new SDNWLANConnectPoint(this),
+                                                               points, gwPoint, gateway.getMacAddress());
+        Intent intent = nbFlow.getIntent(key, APManager.roamingUnicastPriority);
+
+        if (intent != null) {
+            installFlow(northboundAggregateIntentKeys, nbFlow, intent, IntentPipeline.Lane.NORTHBOUND);
+        }
+        APManager.reconciler.markDirty(this);
     }
 
     /**
@@ -243,21 +585,38 @@ public class AccessPoint extends AccessPointConfig
                 gateway.toString(), gateway.isDefaultFlowsInstalled() ? "True" : "False");
 
         if (gateway.setDefaultFlowsInstalled(false)) {
-            SDNWLANConnectPointPair pair =
-                    new SDNWLANConnectPointPair(new SDNWLANConnectPoint(this),
-                                              new SDNWLANConnectPoint(gateway),
-                                              gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix());
+            IpPrefix subnet = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
 
-            Intent northBoundIntent = northboundDefaultGatewayIntentKeys.remove(pair);
+            Intent northBoundIntent = northboundDefaultGatewayIntentKeys.remove(
+                    IntentKeys.gatewayKey(APManager.appId, IntentKeys.Direction.NORTHBOUND,
+                                          getMacAddress(), subnet));
 
             if (northBoundIntent != null) {
-                intentService.withdraw(northBoundIntent);
+                APManager.intentPipeline.withdraw(northBoundIntent);
             }
-            Intent southBoundIntent = southboundDefaultGatewayIntentKeys.remove(pair);
+            Intent southBoundIntent = southboundDefaultGatewayIntentKeys.remove(
+                    IntentKeys.gatewayKey(APManager.appId, IntentKeys.Direction.SOUTHBOUND,
+                                          getMacAddress(), subnet));
 
-            if (northBoundIntent != null) {
-                intentService.withdraw(southBoundIntent);
+            if (southBoundIntent != null) {
+                APManager.intentPipeline.withdraw(southBoundIntent);
+            }
+            Intent aggregateIntent = northboundAggregateIntentKeys.remove(
+                    IntentKeys.aggregateKey(APManager.appId, IntentKeys.Direction.NORTHBOUND,
+                                            getMacAddress(), subnet));
+
+            if (aggregateIntent != null) {
+                APManager.intentPipeline.withdraw(aggregateIntent);
+            }
+            for (String source : new String[]{IntentKeys.FROM_GATEWAY, IntentKeys.FROM_HOME_AP}) {
+                Intent broadcastIntent = southboundBroadcastIntentKeys.remove(
+                        IntentKeys.broadcastKey(APManager.appId, source, getMacAddress(), subnet));
+
+                if (broadcastIntent != null) {
+                    APManager.intentPipeline.withdraw(broadcastIntent);
+                }
             }
+            APManager.reconciler.markDirty(this);
         }
     }
 
@@ -348,6 +707,20 @@ public class AccessPoint extends AccessPointConfig
      * @param host Host to remove
      */
     public void removeHost(MobileHost host) {
+        removeHost(host, true);
+    }
+
+    /**
+     * Remove a host (local or roaming) from this access point.
+     *
+     *   If the host is roaming on to another access point, its roaming flows are not
+     *   dropped here.  They are keyed by host so the new access point will replace
+     *   them in place when it adds the host.
+     *
+     * @param host      Host to remove
+     * @param dropFlows If true, withdraw any roaming flows for the host
+     */
+    public void removeHost(MobileHost host, boolean dropFlows) {
 
         MacAddress mac = host.getMacAddress();
 
@@ -355,8 +728,9 @@ public class AccessPoint extends AccessPointConfig
             log.info("removeHost: remove roaming host {} from roamed AP {}",
                     mac.toString(), this.getMacAddress().toString());
 
-            dropRoamingFlows(host);
-
+            if (dropFlows) {
+                dropRoamingFlows(host);
+            }
             roamingHosts.remove(mac);
         }
         if (apHosts.containsKey(mac)) {
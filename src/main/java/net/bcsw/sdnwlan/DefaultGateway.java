@@ -1,10 +1,14 @@
 package net.bcsw.sdnwlan;
 
 import net.bcsw.sdnwlan.config.GatewayConfig;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DefaultHost;
 import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
@@ -41,6 +45,10 @@ public class DefaultGateway extends SDNWLANHostInfo {
     // TODO: Currently only support one access point per default gateway
     private List<AccessPoint> accessPoints = Lists.newArrayList();
 
+    // Connect points of the foreign access points that hosts of this gateway's subnet are
+    // roaming through.  Reference counted by the number of roaming hosts at each point.
+    private Multiset<ConnectPoint> roamingPoints = ConcurrentHashMultiset.create();
+
     private static final ProviderId unknownProviderId = ProviderId.NONE;
     private static final MacAddress unknownMACAddress = MacAddress.NONE;
     private static final HostLocation unknownHostLocation = HostLocation.NONE;
@@ -65,6 +73,26 @@ public class DefaultGateway extends SDNWLANHostInfo {
         this.gatewayConfig = gwConfig;
     }
 
+    /**
+     * Construct a DefaultGateway with a new configuration that keeps everything already
+     * learned by an existing one (host information, access points and roaming points)
+     *
+     * @param gateway  Existing gateway
+     * @param gwConfig The new Gateway Configuration
+     */
+    public DefaultGateway(DefaultGateway gateway, GatewayConfig gwConfig) {
+        super(gateway.hostInfo);
+
+        this.gatewayConfig = gwConfig;
+        this.createTime    = gateway.createTime;
+        this.lastMoveTime  = gateway.lastMoveTime;
+        this.timesMoved    = gateway.timesMoved;
+
+        this.defaultFlowsInstalled.set(gateway.isDefaultFlowsInstalled());
+        this.accessPoints.addAll(gateway.accessPoints);
+        this.roamingPoints.addAll(gateway.roamingPoints);
+    }
+
     public static List<VlanId> getSdnViewOfGatewayVlans(IngressVlans gwVlans) {
         List<VlanId> vids = Lists.newArrayList();
 
@@ -147,6 +175,37 @@ public class DefaultGateway extends SDNWLANHostInfo {
         return Collections.unmodifiableList(accessPoints);
     }
 
+    /**
+     * Add a reference to a connect point that a host of this gateway is roaming through
+     *
+     * @param point Connect point of the roamed to access point
+     *
+     * @return True if this is the first host roaming through the connect point
+     */
+    public boolean addRoamingPoint(ConnectPoint point) {
+        return roamingPoints.add(point, 1) == 0;
+    }
+
+    /**
+     * Remove a reference to a connect point that a host of this gateway is roaming through
+     *
+     * @param point Connect point of the roamed to access point
+     *
+     * @return True if this was the last host roaming through the connect point
+     */
+    public boolean removeRoamingPoint(ConnectPoint point) {
+        return roamingPoints.remove(point, 1) == 1;
+    }
+
+    /**
+     * Get the connect points that hosts of this gateway are roaming through
+     *
+     * @return Set of connect points
+     */
+    public Set<ConnectPoint> getRoamingPoints() {
+        return ImmutableSet.copyOf(roamingPoints.elementSet());
+    }
+
     /**
      * Update host information
      *
@@ -165,7 +224,11 @@ public class DefaultGateway extends SDNWLANHostInfo {
 
         // TODO: This area needs work and cleaning up once we test things
 
-        boolean newLocation     = !oldHostInfo.location().equals(info.location());
+        // A location restored from the local snapshot carries an older timestamp than the
+        // one discovered for the same port, so only the device and port are compared.
+
+        boolean newLocation     = !oldHostInfo.location().deviceId().equals(info.location().deviceId())
+                               || !oldHostInfo.location().port().equals(info.location().port());
         boolean newMacAddress   = !oldHostInfo.mac().equals(info.mac());
 
         if (newLocation || newMacAddress) {
@@ -184,9 +247,12 @@ public class DefaultGateway extends SDNWLANHostInfo {
 
                     this.getAccessPoints().forEach(ap -> ap.onStartup());
                 } else {
-                    // TODO: existing 'fully known' default gateway has changed
+                    // Moved (or replaced) since it was last seen, possibly while we were
+                    // down and working from the snapshot.  Re-point the gateway flows.
+
+                    log.info("updateHost: default gateway changed, refreshing flows");
 
-                    log.warn("ODO: existing 'fully known' default gateway has changed");
+                    this.getAccessPoints().forEach(ap -> ap.refreshDefaultGatewayFlows(this));
                 }
             } else if (!oldWasUnknown) {
                 // TODO: existing 'fully known' default gateway is no longer fully known
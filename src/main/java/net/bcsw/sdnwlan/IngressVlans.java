@@ -16,14 +16,18 @@
 package net.bcsw.sdnwlan;
 
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.onlab.packet.VlanId;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.Criterion;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -32,86 +36,146 @@ import java.util.Objects;
  * describe the VLAN matching criteria (if any) for a specific point.  When combined
  * with the other ingress endpoint, the VLAN actions to perform (n/a, push, pop, swap, ...)
  * can be determined.
+ *
+ * Instances are immutable and interned (see the 'of' factory methods) since a deployment
+ * typically has only a handful of distinct VLAN lists.  The VLAN match criteria and
+ * treatment for each ingress/egress combination are built once and then reused for
+ * every flow between points with those VLANs.
  */
-public class IngressVlans {
+public final class IngressVlans {
 
     public  static final String INGRESS_VLANS = "ingressVlans";
 
-    private final List<VlanId> vlanList = Lists.newArrayList();
+    // All instances by VLAN list
+    private static final Map<List<VlanId>, IngressVlans> INTERNED = Maps.newConcurrentMap();
+
+    private static final IngressVlans NONE = of(ImmutableList.of());
+
+    private final ImmutableList<VlanId> vlanList;
+
+    // Compiled VLAN match/treatment for flows from this ingress to each egress
+    private final Map<IngressVlans, VlanActions> egressActions = Maps.newConcurrentMap();
 
-    public IngressVlans() {
+    /**
+     * VLAN match criteria and treatment for flows between an ingress and egress point
+     */
+    private static final class VlanActions {
+        private final List<Criterion>  match;
+        private final TrafficTreatment treatment;
+
+        private VlanActions(List<Criterion> match, TrafficTreatment treatment) {
+            this.match     = match;
+            this.treatment = treatment;
+        }
+    }
+
+    private IngressVlans(ImmutableList<VlanId> vids) {
+        vlanList = vids;
+    }
+
+    /**
+     * Get the (interned) ingress VLAN object with no VLANs
+     *
+     * @return Ingress VLANs
+     */
+    public static IngressVlans none() {
+        return NONE;
     }
 
     /**
-     * Create new ingress VLAN object
+     * Get the (interned) ingress VLAN object for a list of VLANs
      *
      *   The input VLAN list is arranged with outermost tag first
      *
      * @param vids List of VLANS
+     * @return Ingress VLANs
      */
-    public IngressVlans(List<VlanId> vids) {
+    public static IngressVlans of(List<VlanId> vids) {
         // TODO: Range check on VLAN would be good here...
+        List<VlanId> vlans = Lists.newArrayList();
+
         if (vids != null) {
             vids.forEach(vlan -> {
                 if (!vlan.equals(VlanId.NONE)) {
-                    vlanList.add(vlan);
+                    vlans.add(vlan);
                 }
             });
         }
-    }
+        ImmutableList<VlanId> key = ImmutableList.copyOf(vlans);
 
-    public IngressVlans(VlanId vlan) {
-        // TODO: Range check on VLAN would be good here...
+        return INTERNED.computeIfAbsent(key, k -> new IngressVlans(key));
+    }
 
-        if (!vlan.equals(VlanId.NONE)) { vlanList.add(vlan); }
+    public static IngressVlans of(VlanId vlan) {
+        return of(ImmutableList.of(vlan));
     }
 
     /**
-     * Create Ingress VLAN list given an STag & CTag
+     * Get the (interned) ingress VLAN object given an STag & CTag
      *
      *   The input VLAN list is arranged with outermost tag first
      *
      * @param stag STAG
      * @param ctag CTAG
+     * @return Ingress VLANs
      */
-    public IngressVlans(VlanId stag, VlanId ctag) {
-        // TODO: Range check on VLAN would be good here...
+    public static IngressVlans of(VlanId stag, VlanId ctag) {
         // TODO: what about STPID ?
 
-        if (!stag.equals(VlanId.NONE)) { vlanList.add(stag); }
-        if (!ctag.equals(VlanId.NONE)) { vlanList.add(ctag); }
+        return of(ImmutableList.of(stag, ctag));
     }
 
-    public IngressVlans(ArrayNode vids) {
+    public static IngressVlans of(ArrayNode vids) {
+        List<VlanId> vlans = Lists.newArrayList();
+
         if (vids != null) {
             vids.forEach(jsonNode ->
-                    vlanList.add(VlanId.vlanId((short) jsonNode.asInt())));
+                    vlans.add(VlanId.vlanId((short) jsonNode.asInt())));
         }
+        return of(vlans);
     }
 
     /**
      * Build up the traffic treatment and selector for a flow's vlans
      *
-     * @param selector
-     * @param ingress
-     * @param egress
-     * @return
+     *   The VLAN match criteria are added to the selector and the treatment needed to
+     *   translate the ingress VLANs to the egress VLANs is returned.  Both are compiled
+     *   once per ingress/egress VLAN combination.
+     *
+     * @param selector Selector to add the VLAN match criteria to
+     * @param ingress  Ingress connect point
+     * @param egress   Egress connect point
+     * @return VLAN treatment
      */
-    public static TrafficTreatment.Builder vlanMatchAndTreatment(TrafficSelector.Builder selector,
-                                                                 SDNWLANConnectPoint ingress,
-                                                                 SDNWLANConnectPoint egress) {
+    public static TrafficTreatment vlanMatchAndTreatment(TrafficSelector.Builder selector,
+                                                         SDNWLANConnectPoint ingress,
+                                                         SDNWLANConnectPoint egress) {
+
+        VlanActions actions = ingress.getIngressVlans().actionsTo(egress.getIngressVlans());
+
+        actions.match.forEach(criterion -> selector.add(criterion));
+
+        return actions.treatment;
+    }
+
+    private VlanActions actionsTo(IngressVlans egress) {
+        return egressActions.computeIfAbsent(egress, this::compile);
+    }
+
+    private VlanActions compile(IngressVlans egress) {
 
         TrafficTreatment.Builder treatment = DefaultTrafficTreatment.builder();
 
         // Always match any ingress vlans. The input VLAN list is arranged with outermost tag first
 
-        List<VlanId> ingressVlans = ingress.getIngressVlans().getVlanList();
+        List<VlanId> ingressVlans = vlanList;
+        List<Criterion> match = Lists.newArrayList();
 
-        ingressVlans.forEach(vid -> selector.matchVlanId(vid));
+        ingressVlans.forEach(vid -> match.add(Criteria.matchVlanId(vid)));
 
         // If egress vlans not equal to ingress, some type of action is required
 
-        List<VlanId> egressVlans = egress.getIngressVlans().getVlanList();
+        List<VlanId> egressVlans = egress.getVlanList();
 
         if (!egressVlans.equals(ingressVlans)) {
 
@@ -133,7 +197,7 @@ public class IngressVlans {
                 // TODO: Implement this more complex case
             }
         }
-        return treatment;
+        return new VlanActions(ImmutableList.copyOf(match), treatment.build());
     }
 
     /**
@@ -141,7 +205,7 @@ public class IngressVlans {
      *
      * @return List of VIDs
      */
-    public List<VlanId> getVlanList()  { return Collections.unmodifiableList(vlanList); }
+    public List<VlanId> getVlanList()  { return vlanList; }
 
     @Override
     public int hashCode() {
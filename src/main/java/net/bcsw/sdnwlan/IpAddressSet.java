@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan;
+
+import com.google.common.collect.Sets;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.IpAddress;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Compact set of IP addresses optimized for membership tests on the host event path.
+ *
+ * IPv4 addresses are kept as raw ints and IPv6 addresses as two longs in open-addressing
+ * (linear probe) tables so a lookup does not box or hash through IpAddress objects.  An
+ * Ip4Address is looked up without allocating.  Any other address is read through
+ * IpAddress.toOctets(), which returns a copy (24 bytes for an IPv4 address), and
+ * containsAny() over anything but a random access list uses the collection's iterator.
+ * The lookup cost does not grow with the number of gateways, where the key set check it
+ * replaced did.  See IpAddressSetBenchmark in the tests.
+ *
+ * Updates are made in place: an add fills a free slot and a remove leaves a tombstone, so a
+ * lookup running at the same time can only be affected for the address being changed.  The
+ * tables are only rebuilt (and published as a whole) once the used slots and tombstones
+ * fill half of a table, and a rebuilt table has room for as many again, so adding n
+ * addresses costs O(n) overall.  Updates are synchronized, lookups are lock free.
+ */
+public class IpAddressSet {
+
+    private static final int MIN_CAPACITY = 8;
+
+    // Occupied IPv4 slots have this bit set so a zero slot is always empty
+    private static final long IPV4_PRESENT = 1L << 32;
+
+    // A removed IPv4 slot.  Never equal to an occupied slot.
+    private static final long IPV4_REMOVED = 1L << 33;
+
+    // States of an IPv6 slot
+    private static final byte V6_EMPTY   = 0;
+    private static final byte V6_USED    = 1;
+    private static final byte V6_REMOVED = 2;
+
+    private static final class Table {
+        private final long[] v4;
+        private final long[] v6High;
+        private final long[] v6Low;
+        private final byte[] v6Used;
+
+        // Slots that are occupied or removed.  Guarded by the set.
+        private int v4Filled;
+        private int v6Filled;
+
+        private Table(int v4Count, int v6Count) {
+            v4     = new long[capacityFor(v4Count)];
+            v6High = new long[capacityFor(v6Count)];
+            v6Low  = new long[v6High.length];
+            v6Used = new byte[v6High.length];
+        }
+    }
+
+    private final Set<IpAddress> members = Sets.newHashSet();
+    private volatile Table table = new Table(0, 0);
+
+    private static int capacityFor(int count) {
+        int capacity = MIN_CAPACITY;
+
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(long value) {
+        value ^= (value >>> 33);
+        value *= 0xff51afd7ed558ccdL;
+        value ^= (value >>> 33);
+        return (int) value;
+    }
+
+    private static int ipv4(byte[] octets) {
+        return ((octets[0] & 0xff) << 24) | ((octets[1] & 0xff) << 16) |
+               ((octets[2] & 0xff) << 8)  |  (octets[3] & 0xff);
+    }
+
+    private static long ipv4Key(IpAddress address) {
+        int value = (address instanceof Ip4Address) ? ((Ip4Address) address).toInt()
+                                                    : ipv4(address.toOctets());
+
+        return (value & 0xffffffffL) | IPV4_PRESENT;
+    }
+
+    private static long ipv6(byte[] octets, int offset) {
+        long value = 0;
+
+        for (int pos = offset; pos < offset + 8; pos++) {
+            value = (value << 8) | (octets[pos] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Put an address that is not in the table into the first free or removed slot
+     */
+    private static void insert(Table tbl, IpAddress address) {
+        if (address.isIp4()) {
+            long key  = ipv4Key(address);
+            int  mask = tbl.v4.length - 1;
+            int  slot = mix(key) & mask;
+
+            while ((tbl.v4[slot] != 0) && (tbl.v4[slot] != IPV4_REMOVED)) {
+                slot = (slot + 1) & mask;
+            }
+            if (tbl.v4[slot] == 0) {
+                tbl.v4Filled++;
+            }
+            tbl.v4[slot] = key;
+        } else {
+            byte[] octets = address.toOctets();
+            long   high   = ipv6(octets, 0);
+            long   low    = ipv6(octets, 8);
+            int    mask   = tbl.v6High.length - 1;
+            int    slot   = mix(high ^ low) & mask;
+
+            while (tbl.v6Used[slot] == V6_USED) {
+                slot = (slot + 1) & mask;
+            }
+            if (tbl.v6Used[slot] == V6_EMPTY) {
+                tbl.v6Filled++;
+            }
+            // Lookups only compare a slot once it is marked used, so set that last
+
+            tbl.v6High[slot] = high;
+            tbl.v6Low[slot]  = low;
+            tbl.v6Used[slot] = V6_USED;
+        }
+    }
+
+    /**
+     * Find the slot of an address
+     *
+     * @return slot or -1 if not present
+     */
+    private static int find(Table tbl, IpAddress address) {
+        if (address.isIp4()) {
+            long key  = ipv4Key(address);
+            int  mask = tbl.v4.length - 1;
+
+            for (int slot = mix(key) & mask; tbl.v4[slot] != 0; slot = (slot + 1) & mask) {
+                if (tbl.v4[slot] == key) {
+                    return slot;
+                }
+            }
+        } else {
+            byte[] octets = address.toOctets();
+            long   high   = ipv6(octets, 0);
+            long   low    = ipv6(octets, 8);
+            int    mask   = tbl.v6High.length - 1;
+
+            for (int slot = mix(high ^ low) & mask; tbl.v6Used[slot] != V6_EMPTY; slot = (slot + 1) & mask) {
+                if ((tbl.v6Used[slot] == V6_USED) && (tbl.v6High[slot] == high) && (tbl.v6Low[slot] == low)) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Build new tables from the members, leaving room for as many again
+     */
+    private void rebuild() {
+        int v4Count = 0;
+
+        for (IpAddress address : members) {
+            if (address.isIp4()) {
+                v4Count++;
+            }
+        }
+        Table newTable = new Table(v4Count * 2, (members.size() - v4Count) * 2);
+
+        members.forEach(address -> insert(newTable, address));
+
+        table = newTable;
+    }
+
+    /**
+     * Add an address to the set
+     *
+     * @param address Address to add
+     * @return true if the address was not already present
+     */
+    public synchronized boolean add(IpAddress address) {
+        if (!members.add(address)) {
+            return false;
+        }
+        Table tbl = table;
+
+        // Keep at least one empty slot in each probe sequence and the probes short
+
+        if (address.isIp4() ? ((tbl.v4Filled + 1) * 2 > tbl.v4.length)
+                            : ((tbl.v6Filled + 1) * 2 > tbl.v6High.length)) {
+            rebuild();
+            return true;
+        }
+        insert(tbl, address);
+
+        // Publish the change to lookups that read the table from now on
+
+        table = tbl;
+        return true;
+    }
+
+    /**
+     * Remove an address from the set
+     *
+     * @param address Address to remove
+     * @return true if the address was present
+     */
+    public synchronized boolean remove(IpAddress address) {
+        if (!members.remove(address)) {
+            return false;
+        }
+        Table tbl  = table;
+        int   slot = find(tbl, address);
+
+        // The slot stays filled so probes for the addresses after it still find them
+
+        if (address.isIp4()) {
+            tbl.v4[slot] = IPV4_REMOVED;
+        } else {
+            tbl.v6Used[slot] = V6_REMOVED;
+        }
+        table = tbl;
+        return true;
+    }
+
+    /**
+     * Is the address a member of this set?
+     *
+     * @param address Address to check
+     * @return true if present
+     */
+    public boolean contains(IpAddress address) {
+        return find(table, address) >= 0;
+    }
+
+    /**
+     * Are any of the given addresses a member of this set?
+     *
+     * @param addresses Addresses to check
+     * @return true if at least one address is present
+     */
+    public boolean containsAny(Collection<IpAddress> addresses) {
+        if (addresses instanceof RandomAccess) {
+            List<IpAddress> list = (List<IpAddress>) addresses;
+
+            for (int index = 0; index < list.size(); index++) {
+                if (contains(list.get(index))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (IpAddress address : addresses) {
+            if (contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of addresses in the set
+     *
+     * @return address count
+     */
+    public synchronized int size() {
+        return members.size();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import java.util.Set;
+
+/**
+ * Binary trie of IPv4 and IPv6 subnets used for longest-prefix-match lookups.
+ *
+ * Each configured prefix maps to a set of values (typically the access points whose
+ * default gateway serves that subnet).  A lookup walks at most one node per address
+ * bit so the cost depends on the prefix length and not on the number of subnets.
+ *
+ * @param <V> Type of value stored for each prefix
+ */
+public class IpSubnetTrie<V> {
+
+    private static final class Node<V> {
+        private Node<V> zero;
+        private Node<V> one;
+        private Set<V>  values;     // Non-null only where a prefix terminates
+
+        private Node<V> child(int bit) {
+            return (bit == 0) ? zero : one;
+        }
+
+        private boolean isEmpty() {
+            return (zero == null) && (one == null) && ((values == null) || values.isEmpty());
+        }
+    }
+
+    private final Node<V> ipv4Root = new Node<>();
+    private final Node<V> ipv6Root = new Node<>();
+
+    private Node<V> root(IpAddress address) {
+        return address.isIp4() ? ipv4Root : ipv6Root;
+    }
+
+    private static int bit(byte[] octets, int index) {
+        return (octets[index >> 3] >> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * Add a value for a subnet
+     *
+     * @param prefix Subnet
+     * @param value  Value to associate with the subnet
+     */
+    public synchronized void add(IpPrefix prefix, V value) {
+
+        byte[]  octets = prefix.address().toOctets();
+        Node<V> node   = root(prefix.address());
+
+        for (int pos = 0; pos < prefix.prefixLength(); pos++) {
+            if (bit(octets, pos) == 0) {
+                if (node.zero == null) {
+                    node.zero = new Node<>();
+                }
+                node = node.zero;
+            } else {
+                if (node.one == null) {
+                    node.one = new Node<>();
+                }
+                node = node.one;
+            }
+        }
+        if (node.values == null) {
+            node.values = Sets.newHashSet();
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Remove a value from a subnet.  Any trie nodes that are no longer needed are pruned.
+     *
+     * @param prefix Subnet
+     * @param value  Value to remove
+     *
+     * @return true if the value was found and removed
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean remove(IpPrefix prefix, V value) {
+
+        byte[]    octets = prefix.address().toOctets();
+        Node<V>[] path   = new Node[prefix.prefixLength() + 1];
+        Node<V>   node   = root(prefix.address());
+
+        path[0] = node;
+
+        for (int pos = 0; pos < prefix.prefixLength(); pos++) {
+            node = node.child(bit(octets, pos));
+
+            if (node == null) {
+                return false;
+            }
+            path[pos + 1] = node;
+        }
+        if ((node.values == null) || !node.values.remove(value)) {
+            return false;
+        }
+        if (node.values.isEmpty()) {
+            node.values = null;
+        }
+        // Prune empty leaves back towards the root
+
+        for (int pos = prefix.prefixLength(); pos > 0 && path[pos].isEmpty(); pos--) {
+            if (bit(octets, pos - 1) == 0) {
+                path[pos - 1].zero = null;
+            } else {
+                path[pos - 1].one = null;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the values associated with the longest configured subnet that contains an address
+     *
+     * @param address IP Address to look up
+     *
+     * @return Set of values, empty if no subnet contains the address
+     */
+    public synchronized Set<V> longestPrefixMatch(IpAddress address) {
+
+        byte[]  octets = address.toOctets();
+        Node<V> node   = root(address);
+        Set<V>  best   = node.values;
+
+        for (int pos = 0; pos < octets.length * Byte.SIZE; pos++) {
+            node = node.child(bit(octets, pos));
+
+            if (node == null) {
+                break;
+            }
+            if (node.values != null) {
+                best = node.values;
+            }
+        }
+        return (best == null) ? ImmutableSet.of() : ImmutableSet.copyOf(best);
+    }
+
+    /**
+     * Remove all subnets
+     */
+    public synchronized void clear() {
+        ipv4Root.zero = ipv4Root.one = null;
+        ipv4Root.values = null;
+        ipv6Root.zero = ipv6Root.one = null;
+        ipv6Root.values = null;
+    }
+}
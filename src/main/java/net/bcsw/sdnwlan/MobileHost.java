@@ -15,17 +15,27 @@
  */
 package net.bcsw.sdnwlan;
 
+import net.bcsw.sdnwlan.flows.DeviceObjective;
+import net.bcsw.sdnwlan.flows.Flow;
+import net.bcsw.sdnwlan.flows.HomeSubnetShortcutFlow;
 import net.bcsw.sdnwlan.flows.NorthBoundFlow;
 import net.bcsw.sdnwlan.flows.NorthBoundMacFlow;
 import net.bcsw.sdnwlan.flows.SouthBoundFlow;
 import net.bcsw.sdnwlan.flows.SouthBoundMacFlow;
+import net.bcsw.sdnwlan.intent.IntentKeys;
+import net.bcsw.sdnwlan.intent.IntentOwner;
+import net.bcsw.sdnwlan.intent.IntentPipeline;
+import net.bcsw.sdnwlan.storage.MobileHostState;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import org.onlab.osgi.DefaultServiceDirectory;
-import org.onlab.osgi.ServiceDirectory;
 import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.Host;
 import org.onosproject.net.intent.Intent;
-import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,18 +49,32 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * Note only the MAC address is considered to be unique and constant for a mobile host
  */
-public class MobileHost extends SDNWLANHostInfo {
+public class MobileHost extends SDNWLANHostInfo implements IntentOwner {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private final IntentService intentService;
-
     private Set<AccessPoint> homeAccessPoints = Sets.newConcurrentHashSet();
     private AccessPoint currentAccessPoint;
 
-    // Our roaming flows for this host
-    private Map<SDNWLANConnectPointPair, Intent> northboundIntentKeys = new ConcurrentHashMap<>();
-    private Map<SDNWLANConnectPointPair, Intent> southboundIntentKeys = new ConcurrentHashMap<>();
+    // Our roaming flows for this host.  Keys do not depend on the current access point, so
+    // a roam to a new access point replaces the existing intents in place.
+    private Map<Key, Intent> northboundIntentKeys = new ConcurrentHashMap<>();
+    private Map<Key, Intent> southboundIntentKeys = new ConcurrentHashMap<>();
+
+    // Make-before-break: northbound roaming flows through the previous AP waiting to be withdrawn
+    private Map<Key, Intent>          retiringIntentKeys    = new ConcurrentHashMap<>();
+    private Map<Key, DeviceObjective> retiringObjectiveKeys = new ConcurrentHashMap<>();
+
+    // Roaming flows programmed directly on a device (flow objective backend)
+    private Map<Key, DeviceObjective> objectiveKeys = new ConcurrentHashMap<>();
+
+    // Connect point registered with our home default gateways while roaming, and the
+    // gateways it is registered with
+    private ConnectPoint          roamingPoint;
+    private Set<IpGatewayAndMask> registeredGateways = Sets.newHashSet();
+
+    // Keys of the roaming flows installed since the last refresh started
+    private Set<Key> installedKeys = Sets.newConcurrentHashSet();
 
     // TODO: Useful stats would be nice.  Separate interface/class?
 
@@ -59,18 +83,13 @@ public class MobileHost extends SDNWLANHostInfo {
 
         homeAccessPoints   = home;
         currentAccessPoint = homeAccessPoints.size() > 0 ? homeAccessPoints.iterator().next() : null;
-
-        ServiceDirectory serviceDirectory = new DefaultServiceDirectory();
-        this.intentService = serviceDirectory.get(IntentService.class);
     }
 
     public MobileHost(Host info, Set<AccessPoint> home, AccessPoint current) {
+        super(info);
 
         homeAccessPoints   = home;
         currentAccessPoint = current;
-
-        ServiceDirectory serviceDirectory = new DefaultServiceDirectory();
-        this.intentService = serviceDirectory.get(IntentService.class);
     }
 
     /**
@@ -113,23 +132,278 @@ public class MobileHost extends SDNWLANHostInfo {
     public void setCurrentAccessPoint(AccessPoint point) {
         if (currentAccessPoint != point) {
 
-            // Cleanup old flows (if we were roaming)
+            AccessPoint               previous      = currentAccessPoint;
+            boolean                   wasRoaming    = isRoaming();
+            Map<Key, Intent>          oldFlows      = null;
+            Map<Key, DeviceObjective> oldObjectives = null;
 
-            if (currentAccessPoint != getHomeAccessPoint()) {
-                currentAccessPoint.removeHost(this);
-            }
             currentAccessPoint = point;
             lastMoveTime       = date.getTime();
             timesMoved++;
 
+            // Cleanup old flows (if we were roaming).  If we are still roaming, the
+            // flows are left in place and either re-submitted with the same keys below
+            // or, for the northbound flows under make-before-break, withdrawn once the
+            // new flows are installed.
+
+            if (wasRoaming) {
+                boolean stillRoaming = isRoaming();
+
+                if (stillRoaming && APManager.makeBeforeBreak) {
+                    oldFlows      = takeNorthboundFlows();
+                    oldObjectives = Maps.newHashMap(objectiveKeys);
+                    objectiveKeys.clear();
+                }
+                previous.removeHost(this, !stillRoaming);
+            }
+
             // Set new flows if needed
 
             if (currentAccessPoint != null) {
                 currentAccessPoint.addHost(this);
             }
+            if (oldFlows != null) {
+                withdrawWhenInstalled(oldFlows, oldObjectives);
+            }
+        }
+    }
+
+    /**
+     * Remove the current northbound roaming flows from this host without withdrawing them.
+     *
+     * The southbound flows are left alone.  Through the old and new access point they match
+     * the same gateway ingress and destination MAC at the same priority, so they compile to
+     * the same flow rule and can not coexist.  They keep a single key per host and are
+     * re-submitted under it so the intent service replaces the rule in place.
+     *
+     * @return Map of the northbound roaming intents by key
+     */
+    private Map<Key, Intent> takeNorthboundFlows() {
+        Map<Key, Intent> flows = Maps.newHashMap(northboundIntentKeys);
+
+        northboundIntentKeys.clear();
+
+        return flows;
+    }
+
+    /**
+     * Withdraw old northbound roaming flows once the current ones are installed (or the
+     * make-before-break timeout expires)
+     *
+     * @param oldFlows      Northbound roaming intents through the previous access point
+     * @param oldObjectives Roaming objectives through the previous access point
+     */
+    private void withdrawWhenInstalled(Map<Key, Intent> oldFlows, Map<Key, DeviceObjective> oldObjectives) {
+        Set<Key> newKeys = Sets.newHashSet(northboundIntentKeys.keySet());
+
+        newKeys.addAll(objectiveKeys.keySet());
+        retiringIntentKeys.putAll(oldFlows);
+        retiringObjectiveKeys.putAll(oldObjectives);
+
+        // Not run if the tracker is stopped (the wait is cancelled).  Anything still retiring
+        // then is dropped with the rest of our flows, or left in place on a warm restart.
+
+        APManager.intentTracker.whenInstalled(newKeys, APManager.makeBeforeBreakTimeout)
+                .thenAccept(installed -> {
+                    if (!installed) {
+                        log.warn("withdrawWhenInstalled: new flows for {} not installed, removing old flows",
+                                 getMacAddress());
+                    }
+                    // Skip any flow already dropped or in use again (host roamed back quickly)
+
+                    oldFlows.forEach((key, intent) -> {
+                        if (retiringIntentKeys.remove(key, intent) && !northboundIntentKeys.containsKey(key)) {
+                            APManager.intentPipeline.withdraw(intent);
+                        }
+                    });
+                    APManager.reconciler.markDirty(this);
+
+                    oldObjectives.forEach((key, objective) -> {
+                        if (retiringObjectiveKeys.remove(key, objective)) {
+                            removeObjective(key, objective);
+                        }
+                    });
+                });
+    }
+
+    /**
+     * Get the southbound roaming intents this host wants installed
+     *
+     * @return map of intents by key
+     */
+    @Override
+    public Map<Key, Intent> getSouthboundIntents() {
+        return ImmutableMap.copyOf(southboundIntentKeys);
+    }
+
+    /**
+     * Get the northbound roaming intents this host wants installed.  Intents through
+     * the previous access point that are waiting on a make-before-break are included
+     * so they are not withdrawn early.
+     *
+     * @return map of intents by key
+     */
+    @Override
+    public Map<Key, Intent> getNorthboundIntents() {
+        Map<Key, Intent> intents = Maps.newHashMap(retiringIntentKeys);
+
+        intents.putAll(northboundIntentKeys);
+        return intents;
+    }
+
+    /**
+     * Get the state of this host to save in the distributed store
+     *
+     * @return host state
+     */
+    public MobileHostState getState() {
+        Set<MacAddress> home = Sets.newHashSet();
+        Set<String>     keys = Sets.newHashSet();
+
+        homeAccessPoints.forEach(ap -> home.add(ap.getMacAddress()));
+
+        southboundIntentKeys.keySet().forEach(key -> keys.add(key.toString()));
+        northboundIntentKeys.keySet().forEach(key -> keys.add(key.toString()));
+        objectiveKeys.keySet().forEach(key -> keys.add(key.toString()));
+
+        AccessPoint current = currentAccessPoint;
+
+        return new MobileHostState(getMacAddress(), home, (current == null) ? null : current.getMacAddress(),
+                                   createTime, lastMoveTime, removedTime, timesMoved, keys);
+    }
+
+    /**
+     * Carry over the history of a host that was known to a previous (or another) instance
+     *
+     * @param state Saved host state
+     */
+    public void restoreState(MobileHostState state) {
+        createTime   = state.getCreationTime();
+        lastMoveTime = state.getLastMovedTime();
+        timesMoved   = state.getTimesMoved();
+    }
+
+    /**
+     * Get the key for one of this host's roaming intents
+     *
+     * @param direction Flow direction
+     * @param subnet    Home gateway subnet
+     * @return intent key
+     */
+    private Key roamingKey(IntentKeys.Direction direction, IpPrefix subnet) {
+        if (APManager.makeBeforeBreak && (direction == IntentKeys.Direction.NORTHBOUND)) {
+            // Northbound flows through the old and new access point must be able to coexist.
+            // Southbound flows can not (see takeNorthboundFlows) and are replaced in place.
+
+            return IntentKeys.roamingKey(APManager.appId, direction, getMacAddress(),
+                                         currentAccessPoint.getMacAddress(), subnet);
+        }
+        return IntentKeys.roamingKey(APManager.appId, direction, getMacAddress(), subnet);
+    }
+
+    /**
+     * Get the key for one of this host's home access point shortcut intents
+     *
+     * @param direction Flow direction, southbound is toward the host
+     * @param subnet    Home gateway subnet, or null if the flow is not subnet specific
+     * @return intent key
+     */
+    private Key shortcutKey(IntentKeys.Direction direction, IpPrefix subnet) {
+        return IntentKeys.shortcutKey(APManager.appId, direction, getMacAddress(), subnet);
+    }
+
+    /**
+     * Install a roaming flow at the roaming unicast priority
+     *
+     * @param key     Flow key
+     * @param flow    Flow to install
+     * @param lane    Priority lane if an intent is used
+     * @param intents Map of this host's intents for the flow direction
+     */
+    private void installRoamingFlow(Key key, Flow flow, IntentPipeline.Lane lane, Map<Key, Intent> intents) {
+        installRoamingFlow(key, flow, lane, intents, APManager.roamingUnicastPriority);
+    }
+
+    /**
+     * Install a roaming flow.  If the flow objective backend is selected and the flow is
+     * within a single device, it is programmed directly with a forwarding objective.
+     * Otherwise an intent is submitted.  Anything previously installed under the same key
+     * by the other method (or on another device) is removed.
+     *
+     * @param key      Flow key
+     * @param flow     Flow to install
+     * @param lane     Priority lane if an intent is used
+     * @param intents  Map of this host's intents for the flow direction
+     * @param priority Flow priority
+     */
+    private void installRoamingFlow(Key key, Flow flow, IntentPipeline.Lane lane, Map<Key, Intent> intents,
+                                    int priority) {
+
+        installedKeys.add(key);
+
+        DeviceObjective objective = APManager.useFlowObjectives ? flow.getObjective(priority) : null;
+
+        if (objective != null) {
+            DeviceObjective previous = objectiveKeys.put(key, objective);
+
+            APManager.objectivePipeline.add(key, objective);
+
+            if ((previous != null) && !previous.sameMatch(objective)) {
+                APManager.objectivePipeline.remove(key, previous);
+            }
+            Intent intent = intents.remove(key);
+
+            if (intent != null) {
+                APManager.intentPipeline.withdraw(intent);
+            }
+        } else {
+            Intent intent = flow.getIntent(key, priority);
+
+            if (intent == null) {
+                log.warn("installRoamingFlow: unable to build intent for {}", flow);
+                return;
+            }
+            Intent existing = intents.get(key);
+
+            if ((existing != null) && IntentPipeline.isEquivalent(existing, intent)) {
+                return;
+            }
+            intents.put(key, intent);
+            submitRoamingIntent(flow, intent, lane);
+
+            DeviceObjective previous = objectiveKeys.remove(key);
+
+            if (previous != null) {
+                removeObjective(key, previous);
+            }
         }
     }
 
+    /**
+     * Remove a roaming objective unless one of our current objectives has replaced
+     * its flow entry
+     *
+     * @param key       Flow key
+     * @param objective Objective to remove
+     */
+    private void removeObjective(Key key, DeviceObjective objective) {
+        if (objectiveKeys.values().stream().noneMatch(current -> current.sameMatch(objective))) {
+            APManager.objectivePipeline.remove(key, objective);
+        }
+    }
+
+    /**
+     * Submit a roaming intent and track its installation
+     *
+     * @param flow   Flow the intent implements
+     * @param intent Intent to submit
+     * @param lane   Priority lane
+     */
+    private void submitRoamingIntent(Flow flow, Intent intent, IntentPipeline.Lane lane) {
+        APManager.intentTracker.track(flow, intent);
+        APManager.intentPipeline.submit(intent, lane);
+    }
+
     /**
      * Is this host currently roaming away from its home AP?
      *
@@ -164,6 +438,11 @@ public class MobileHost extends SDNWLANHostInfo {
 
         SDNWLANConnectPoint apPoint = new SDNWLANConnectPoint(currentAccessPoint, getHomeAccessPoint());
 
+        // The aggregate northbound flow of each gateway is built from the registered points
+
+        if (APManager.aggregateNorthbound) {
+            registerRoamingPoint(apPoint.getLocation());
+        }
         for (DefaultGateway gateway : this.getHomeAccessPoint().getDefaultGateways().values()) {
 
             SDNWLANConnectPoint gwPoint = new SDNWLANConnectPoint(gateway);
@@ -176,25 +455,72 @@ public class MobileHost extends SDNWLANHostInfo {
                 log.info("addDefaultGatewayFlows: unknown default gateway location");
                 break;
             }
-            SDNWLANConnectPointPair pair = new SDNWLANConnectPointPair(apPoint, gwPoint,
-                                                gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix());
+            IpPrefix subnet = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
 
-            // Insert southbound flows first since we want data to the customer as soon as possible
+            // Insert southbound flows first since we want data to the customer as soon as possible.
+            // An intent already installed under the same key (from the AP we roamed away from)
+            // is replaced by the intent service rather than withdrawn and rebuilt.
 
             SouthBoundFlow sbFlow = new SouthBoundMacFlow(APManager.appId, gwPoint,
                                                           apPoint, getMacAddress());
-            Intent southboundIntent = sbFlow.getIntent(APManager.roamingUnicastPriority);
+            installRoamingFlow(roamingKey(IntentKeys.Direction.SOUTHBOUND, subnet), sbFlow,
+                               IntentPipeline.Lane.SOUTHBOUND, southboundIntentKeys);
 
-            if (southboundIntentKeys.putIfAbsent(pair, southboundIntent) == null) {
-                intentService.submit(southboundIntent);
+            // When aggregated, the home access point carries our northbound traffic in a
+            // single flow for all of the gateway's roaming hosts
+
+            if (APManager.aggregateNorthbound) {
+                continue;
             }
             NorthBoundFlow nbFlow = new NorthBoundMacFlow(APManager.appId, apPoint, gwPoint,
                                                           gateway.getMacAddress());
-            Intent northboundIntent = nbFlow.getIntent(APManager.roamingUnicastPriority);
+            installRoamingFlow(roamingKey(IntentKeys.Direction.NORTHBOUND, subnet), nbFlow,
+                               IntentPipeline.Lane.NORTHBOUND, northboundIntentKeys);
+        }
+        APManager.reconciler.markDirty(this);
+    }
 
-            if (northboundIntentKeys.putIfAbsent(pair, northboundIntent) == null) {
-                intentService.submit(northboundIntent);
+    /**
+     * Register the connect point we are roaming through with our home default gateways
+     *
+     * @param point Connect point of the current access point
+     */
+    private synchronized void registerRoamingPoint(ConnectPoint point) {
+        if (!point.equals(roamingPoint)) {
+            unregisterRoamingPoint();
+            roamingPoint = point;
+        }
+        // Only gateways we are not registered with yet.  A gateway replaced by a configuration
+        // change keeps the roaming points of the one it replaced.
+
+        AccessPoint home = getHomeAccessPoint();
+
+        registeredGateways.retainAll(home.getDefaultGateways().keySet());
+
+        home.getDefaultGateways().forEach((cidr, gw) -> {
+            if (registeredGateways.add(cidr)) {
+                home.addRoamingPoint(gw, point);
             }
+        });
+    }
+
+    /**
+     * Remove the connect point we were roaming through from our home default gateways
+     */
+    private synchronized void unregisterRoamingPoint() {
+        if (roamingPoint != null) {
+            AccessPoint  home  = getHomeAccessPoint();
+            ConnectPoint point = roamingPoint;
+
+            registeredGateways.forEach(cidr -> {
+                DefaultGateway gw = home.getDefaultGateways().get(cidr);
+
+                if (gw != null) {
+                    home.removeRoamingPoint(gw, point);
+                }
+            });
+            registeredGateways.clear();
+            roamingPoint = null;
         }
     }
 
@@ -204,7 +530,36 @@ public class MobileHost extends SDNWLANHostInfo {
     private void addRoamingUnicastHomeAPFlows() {
 
         log.info("addUnicastHomeAPFlows: {}", this.toString());
-        // TODO: Implement this
+
+        if (!APManager.homeApShortcut) {
+            return;
+        }
+        AccessPoint         home      = getHomeAccessPoint();
+        SDNWLANConnectPoint apPoint   = new SDNWLANConnectPoint(currentAccessPoint, home);
+        SDNWLANConnectPoint homePoint = new SDNWLANConnectPoint(home);
+
+        // Toward the host.  Anything for our MAC address arriving from the home access point
+
+        SouthBoundFlow sbFlow = new SouthBoundMacFlow(APManager.appId, homePoint, apPoint, getMacAddress());
+
+        installRoamingFlow(shortcutKey(IntentKeys.Direction.SOUTHBOUND, null), sbFlow,
+                           IntentPipeline.Lane.SOUTHBOUND, southboundIntentKeys);
+
+        // From the host.  Our traffic to each home subnet goes to the home access point.  This
+        // is one below the default gateway flows so traffic for the gateway MAC still goes there.
+
+        for (DefaultGateway gateway : home.getDefaultGateways().values()) {
+
+            IpPrefix subnet = gateway.getGatewayConfig().getGatewayAndMask().getIpPrefix();
+
+            NorthBoundFlow nbFlow = new HomeSubnetShortcutFlow(APManager.appId, apPoint, homePoint,
+                                                               getMacAddress(), subnet);
+
+            installRoamingFlow(shortcutKey(IntentKeys.Direction.NORTHBOUND, subnet), nbFlow,
+                               IntentPipeline.Lane.NORTHBOUND, northboundIntentKeys,
+                               APManager.roamingUnicastPriority - 1);
+        }
+        APManager.reconciler.markDirty(this);
     }
 
     /**
@@ -214,7 +569,65 @@ public class MobileHost extends SDNWLANHostInfo {
 
         log.info("addBroadcastMulticastFlows: {}", this.toString());
 
-        // TODO: Implement this
+        // The broadcasts of each home subnet are replicated by a single flow to every connect
+        // point our home gateways have registered, so all we need to do is be registered.
+        //
+        // TODO: Multicast beyond link-local broadcast is not handled
+
+        SDNWLANConnectPoint apPoint = new SDNWLANConnectPoint(currentAccessPoint, getHomeAccessPoint());
+
+        if (APManager.roamingBroadcast) {
+            registerRoamingPoint(apPoint.getLocation());
+        }
+    }
+
+    /**
+     * Rebuild the roaming flows of this host after a configuration change of its home or
+     * current access point.  Flows that did not change are left alone, changed ones are
+     * replaced in place and any that are no longer needed (a gateway was removed) are
+     * withdrawn.
+     */
+    public void refreshRoamingFlows() {
+
+        if (!isRoaming()) {
+            return;
+        }
+        log.info("refreshRoamingFlows: {}", this.toString());
+
+        Set<Key> stale = Sets.newHashSet(northboundIntentKeys.keySet());
+
+        stale.addAll(southboundIntentKeys.keySet());
+        stale.addAll(objectiveKeys.keySet());
+
+        installedKeys.clear();
+
+        addRoamingUnicastFlows();
+        addRoamingBroadcastMulticastFlows();
+
+        // Neither shared flow wants our roaming point any more (configuration change)
+
+        if (!APManager.aggregateNorthbound && !APManager.roamingBroadcast) {
+            unregisterRoamingPoint();
+        }
+        stale.removeAll(installedKeys);
+
+        stale.forEach(key -> {
+            Intent northbound = northboundIntentKeys.remove(key);
+            Intent southbound = southboundIntentKeys.remove(key);
+
+            if (northbound != null) {
+                APManager.intentPipeline.withdraw(northbound);
+            }
+            if (southbound != null) {
+                APManager.intentPipeline.withdraw(southbound);
+            }
+            DeviceObjective objective = objectiveKeys.remove(key);
+
+            if (objective != null) {
+                removeObjective(key, objective);
+            }
+        });
+        APManager.reconciler.markDirty(this);
     }
 
     /**
@@ -224,8 +637,48 @@ public class MobileHost extends SDNWLANHostInfo {
 
         log.info("dropRoamingFlows: {}", this.toString());
 
-        northboundIntentKeys.forEach((pair, intent) -> intentService.withdraw(intent));
-        southboundIntentKeys.forEach((pair, intent) -> intentService.withdraw(intent));
+        northboundIntentKeys.values().forEach(intent -> APManager.intentPipeline.withdraw(intent));
+        southboundIntentKeys.values().forEach(intent -> APManager.intentPipeline.withdraw(intent));
+
+        retiringIntentKeys.forEach((key, intent) -> {
+            if (!northboundIntentKeys.containsKey(key)) {
+                APManager.intentPipeline.withdraw(intent);
+            }
+        });
+
+        northboundIntentKeys.clear();
+        southboundIntentKeys.clear();
+        retiringIntentKeys.clear();
+
+        objectiveKeys.forEach(APManager.objectivePipeline::remove);
+        objectiveKeys.clear();
+
+        retiringObjectiveKeys.forEach(this::removeObjective);
+        retiringObjectiveKeys.clear();
+
+        unregisterRoamingPoint();
+
+        APManager.reconciler.markDirty(this);
+    }
+
+    /**
+     * Let go of this host without withdrawing any of its flows.  Used when the host is
+     * handed over to another instance of the cluster, which takes the flows over by key.
+     */
+    public void release() {
+
+        log.info("release: {}", this.toString());
+
+        northboundIntentKeys.clear();
+        southboundIntentKeys.clear();
+        retiringIntentKeys.clear();
+        retiringObjectiveKeys.clear();
+        objectiveKeys.clear();
+        installedKeys.clear();
+
+        unregisterRoamingPoint();
+
+        APManager.reconciler.release(this);
     }
 
     /**
@@ -15,8 +15,12 @@
  */
 package net.bcsw.sdnwlan;
 
+import net.bcsw.sdnwlan.flows.Flow;
+import net.bcsw.sdnwlan.intent.IntentPipeline;
+import net.bcsw.sdnwlan.storage.MobileHostState;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.MacAddress;
+import org.onosproject.net.intent.Key;
 
 import java.util.Map;
 
@@ -39,6 +43,44 @@ public interface SDNWLANService
      */
     Map<IpAddress, DefaultGateway> getDefaultGateways();
 
+    /**
+     * Get a map of all known mobile hosts
+     *
+     * @return collection of mobile hosts
+     */
+    Map<MacAddress, MobileHost> getMobileHosts();
+
+    /**
+     * Get a mobile host by its MAC address
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host or null if not found
+     */
+    MobileHost getMobileHost(MacAddress mac);
+
+    /**
+     * Get the cluster-wide state of a mobile host.  Available on every instance, even
+     * one that has not processed any events for the host.
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host state or null if not found
+     */
+    MobileHostState getMobileHostState(MacAddress mac);
+
+    /**
+     * Get a map of the flows submitted by the sdnWLAN and their lifecycle statistics
+     *
+     * @return map of flows by intent key
+     */
+    Map<Key, Flow> getFlows();
+
+    /**
+     * Get the number of intent operations waiting in each priority lane
+     *
+     * @return queue depth by lane
+     */
+    Map<IntentPipeline.Lane, Integer> getIntentQueueDepths();
+
     /**
      * Creates a sdnWLAN Access Point
      *
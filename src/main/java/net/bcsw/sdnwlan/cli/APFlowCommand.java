@@ -16,13 +16,16 @@
 package net.bcsw.sdnwlan.cli;
 
 import net.bcsw.sdnwlan.SDNWLANService;
+import net.bcsw.sdnwlan.flows.Flow;
 import org.apache.karaf.shell.commands.Command;
 import org.apache.karaf.shell.commands.Argument;
+import org.onlab.packet.MacAddress;
 import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.net.intent.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
+import java.util.Map;
 
 /**
  * List flows used by access point
@@ -30,16 +33,24 @@ import java.util.List;
 @Command(scope = "bcsw", name = "sdnwlan-flows", description = "Lists sdnWLAN Access Point flows")
 public class APFlowCommand extends AbstractShellCommand {
 
-    // TODO Do we want a header/table format or a list format with embedded tags?
-    //private static final String FORMAT_HEADER = "MAC ID: %s -> IP ASSIGNED %s";
-    private static final String FORMAT_WLAN = "Hostname: %s -> MAC: %s, TODO...";
+    private static final String FORMAT_HEADER =
+            "State      Latency  Failures  Key";
+    private static final String FORMAT_FLOW = "%-9.9s  %7s  %8d  %s";
+    private static final String FORMAT_DETAIL = "           %s";
+    private static final String FORMAT_QUEUES = "Queued intent operations: %s";
     private final Logger log = LoggerFactory.getLogger(getClass());
-    @Argument(index = 0, name = "macAddress", description = "MAC Address of the Access Point",
+    @Argument(index = 0, name = "macAddress", description = "MAC Address of the Access Point or Host",
             required = false, multiValued = false)
     private String macAddress = null;
     // Reference to our service
     private SDNWLANService service;
 
+    //          1         2         3         4         5         6         7
+    // 1234567890123456789012345678901234567890123456789012345678901234567890123456789
+    // State      Latency  Failures  Key
+    // INSTALLED    12345         0  gw/sb/01:02:03:04:05:06/10.0.0.0/24
+    //            of:a1a1a1a1a1a1a1a1/1 - [100]  <-> of:a2a2a2a2a2a2a2a2/1 - [100]
+
     /**
      * Execute the sdnwlan CLI command
      */
@@ -50,14 +61,34 @@ public class APFlowCommand extends AbstractShellCommand {
 
         service = AbstractShellCommand.get(SDNWLANService.class);
 
-//        List<AccessPoint> list = service.getAccessPoints().values();
-//
-//        // TODO print(FORMAT_HEADER);
-//
-//        list.stream().forEach((entry) -> {
-//            if ((hostName == null) || (entry.getName().equals(hostName))) {
-//                print(FORMAT_WLAN, entry.getName(), entry.getMac().toString());
-//            }
-//        });
+        // Intent keys contain the MAC address of the access point or host that owns them
+
+        String filter;
+
+        try {
+            filter = (macAddress == null) ? null : MacAddress.valueOf(macAddress).toString();
+
+        } catch (IllegalArgumentException e) {
+            error("Invalid MAC address '%s', usage: sdnwlan-flows [xx:xx:xx:xx:xx:xx]", macAddress);
+            return;
+        }
+
+        if (filter == null) {
+            print(FORMAT_QUEUES, service.getIntentQueueDepths());
+        }
+        print(FORMAT_HEADER);
+
+        for (Map.Entry<Key, Flow> entry : service.getFlows().entrySet()) {
+            String key  = entry.getKey().toString();
+            Flow   flow = entry.getValue();
+
+            if ((filter == null) || key.contains(filter)) {
+                long latency = flow.getInstallLatency();
+
+                print(FORMAT_FLOW, flow.getState(), latency < 0 ? "-" : Long.toString(latency),
+                        flow.getFailureCount(), key);
+                print(FORMAT_DETAIL, flow.toString());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -21,12 +21,12 @@ import net.bcsw.sdnwlan.SDNWLANService;
 import com.google.common.collect.Lists;
 import org.apache.karaf.shell.commands.Argument;
 import org.apache.karaf.shell.commands.Command;
+import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
 import org.onosproject.cli.AbstractShellCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.List;
 
 /**
@@ -63,29 +63,41 @@ public class APHostCommand extends AbstractShellCommand {
         service = AbstractShellCommand.get(SDNWLANService.class);
 
         List<MobileHost> hosts = Lists.newArrayList();
-        Collection<AccessPoint> list = service.getAccessPoints().values();
 
-        list.forEach(ap -> hosts.addAll(ap.getLocalHosts().values()));
+        if (macAddress == null) {
+            hosts.addAll(service.getMobileHosts().values());
+        } else {
+            MacAddress mac;
 
+            try {
+                mac = MacAddress.valueOf(macAddress);
+
+            } catch (IllegalArgumentException e) {
+                error("Invalid MAC address '%s', usage: sdnwlan-hosts [xx:xx:xx:xx:xx:xx]", macAddress);
+                return;
+            }
+            MobileHost host = service.getMobileHost(mac);
+
+            if (host != null) {
+                hosts.add(host);
+            }
+        }
         print(FORMAT_HEADER);
 
         hosts.forEach(host -> {
-            if ((macAddress == null) || host.getMacAddress().equals(macAddress)) {
-
-                // TODO: Currently just output/support one connection
-
-                String current = "<unknown>";
-                AccessPoint currentAp = host.getCurrentAccessPoint();
-                if (currentAp != null) {
-                    current = String.format("%s/%-4.4s", currentAp.getMacAddress().toString(),
-                            vidListToString(currentAp.getIngressVlans().getVlanList()));
-                }
-                print(FORMAT_HOSTS, host.getMacAddress().toString(),
-                        (int) host.getHostInfo().vlan().toShort(),
-                        host.getHomeAccessPoint().getMacAddress().toString(),
-                        vidListToString(host.getHomeAccessPoint().getIngressVlans().getVlanList()),
-                        current);
+            // TODO: Currently just output/support one connection
+
+            String current = "<unknown>";
+            AccessPoint currentAp = host.getCurrentAccessPoint();
+            if (currentAp != null) {
+                current = String.format("%s/%-4.4s", currentAp.getMacAddress().toString(),
+                        vidListToString(currentAp.getIngressVlans().getVlanList()));
             }
+            print(FORMAT_HOSTS, host.getMacAddress().toString(),
+                    (int) host.getHostInfo().vlan().toShort(),
+                    host.getHomeAccessPoint().getMacAddress().toString(),
+                    vidListToString(host.getHomeAccessPoint().getIngressVlans().getVlanList()),
+                    current);
         });
     }
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.cluster;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.onlab.packet.MacAddress;
+import org.onosproject.cluster.ClusterEvent;
+import org.onosproject.cluster.ClusterEventListener;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+/**
+ * Divides the work of the application between the active instances of the cluster using
+ * a consistent hash ring.
+ *
+ * Each node is placed on the ring at a number of virtual points and a MAC address belongs
+ * to the first node at or after its own hash.  When a node joins or leaves, only the MACs
+ * between its points and those of its neighbours change owner, and the rebalance callback
+ * is run so the local instance can take over (or let go of) that work.
+ *
+ * The ring is rebuilt from the cluster service on each cluster event and replaced as a
+ * whole, so lookups need no locking.
+ */
+public class WorkPartitioner implements ClusterEventListener {
+
+    // Points on the ring for each node.  More points give a more even split.
+    private static final int VIRTUAL_NODES = 64;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ClusterService clusterService;
+    private final NodeId         localNode;
+    private final Runnable       onRebalance;
+
+    private volatile SortedSet<NodeId>          nodes = ImmutableSortedSet.of();
+    private volatile NavigableMap<Long, NodeId> ring  = ImmutableSortedMap.of();
+
+    /**
+     * Create a new partitioner
+     *
+     * @param clusterService Cluster service
+     * @param onRebalance    Run after the set of active nodes changes
+     */
+    public WorkPartitioner(ClusterService clusterService, Runnable onRebalance) {
+        this.clusterService = clusterService;
+        this.localNode      = clusterService.getLocalNode().id();
+        this.onRebalance    = onRebalance;
+    }
+
+    /**
+     * Build the ring and start following cluster membership
+     */
+    public void start() {
+        rebuild();
+        clusterService.addListener(this);
+    }
+
+    /**
+     * Stop following cluster membership
+     */
+    public void stop() {
+        clusterService.removeListener(this);
+    }
+
+    /**
+     * Is the work for a MAC address handled by this instance?
+     *
+     * @param mac MAC address
+     * @return true if owned by this instance (or if there is no ring yet)
+     */
+    public boolean isMine(MacAddress mac) {
+        NodeId owner = getOwner(mac);
+
+        return (owner == null) || localNode.equals(owner);
+    }
+
+    /**
+     * Get the instance handling the work for a MAC address
+     *
+     * @param mac MAC address
+     * @return Owning node or null if there are no active nodes
+     */
+    public NodeId getOwner(MacAddress mac) {
+        NavigableMap<Long, NodeId> current = ring;
+
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, NodeId> entry = current.ceilingEntry(HASH.hashLong(mac.toLong()).asLong());
+
+        return (entry != null) ? entry.getValue() : current.firstEntry().getValue();
+    }
+
+    /**
+     * Get the active nodes work is divided between
+     *
+     * @return Set of node IDs
+     */
+    public SortedSet<NodeId> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public void event(ClusterEvent event) {
+        if (rebuild()) {
+            log.info("Rebalancing work for {} over {}", event.type(), nodes);
+            onRebalance.run();
+        }
+    }
+
+    /**
+     * Rebuild the ring from the currently active nodes.  The local node is always included
+     * since it is running this code.
+     *
+     * @return true if the set of nodes changed
+     */
+    private synchronized boolean rebuild() {
+        ImmutableSortedSet.Builder<NodeId> active = ImmutableSortedSet.naturalOrder();
+
+        clusterService.getNodes().stream()
+                .map(ControllerNode::id)
+                .filter(id -> id.equals(localNode) ||
+                        (clusterService.getState(id) == ControllerNode.State.ACTIVE))
+                .forEach(active::add);
+
+        SortedSet<NodeId> newNodes = active.build();
+
+        if (newNodes.equals(nodes)) {
+            return false;
+        }
+        NavigableMap<Long, NodeId> newRing = new TreeMap<>();
+
+        newNodes.forEach(id -> {
+            for (int point = 0; point < VIRTUAL_NODES; point++) {
+                newRing.put(HASH.hashString(id.toString() + "#" + point, StandardCharsets.UTF_8).asLong(), id);
+            }
+        });
+        ring  = ImmutableSortedMap.copyOf(newRing);
+        nodes = newNodes;
+        return true;
+    }
+}
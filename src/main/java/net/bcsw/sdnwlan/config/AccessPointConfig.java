@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Created by cboling on 12/12/15.
@@ -45,7 +46,7 @@ public class AccessPointConfig {
     private static final String OTHER_VIDS = "otherVids";
     private static final String OTHER_VIDS_GATEWAY = "gateway";
     private static final String OTHER_VIDS_VLANS = "vlans";
-    protected final Logger log = LoggerFactory.getLogger(getClass());
+    protected static final Logger log = LoggerFactory.getLogger(AccessPointConfig.class);
     private String name;
     private MacAddress macAddress;
     private IngressVlans ingressVlans;
@@ -61,6 +62,15 @@ public class AccessPointConfig {
     }
 
     protected AccessPointConfig(AccessPointConfig rhs) {
+        setConfig(rhs);
+    }
+
+    /**
+     * Replace this configuration with another one
+     *
+     * @param rhs New configuration
+     */
+    protected void setConfig(AccessPointConfig rhs) {
         this.name = rhs.getName();
         this.macAddress = rhs.getMacAddress();
         this.ingressVlans = rhs.getIngressVlans();
@@ -70,7 +80,6 @@ public class AccessPointConfig {
         this.altitude = rhs.getAltitude();
         this.otherVids = rhs.getOtherVids();
         this.connections = rhs.getConnections();
-
     }
 
     public AccessPointConfig(String name, MacAddress macAddress,
@@ -160,10 +169,10 @@ public class AccessPointConfig {
                     throw new ConfigException("Error parsing compute node connections", e);
                 }
             }
-            IngressVlans ingressVlans = new IngressVlans();
+            IngressVlans ingressVlans = IngressVlans.none();
 
             if (accessNode.has(IngressVlans.INGRESS_VLANS)) {
-                ingressVlans = new IngressVlans((ArrayNode) accessNode.path(IngressVlans.INGRESS_VLANS));
+                ingressVlans = IngressVlans.of((ArrayNode) accessNode.path(IngressVlans.INGRESS_VLANS));
             }
             return new AccessPointConfig(name, macAddress, ingressVlans, defaultGateways,
                     longitude, latitude, altitude, otherGateways, connections);
@@ -208,4 +217,35 @@ public class AccessPointConfig {
     public List<ConnectPoint> getConnections() {
         return Collections.unmodifiableList(connections);
     }
+
+    /**
+     * Does another access point have the same configuration?  Only the configured values
+     * are compared, so a live AccessPoint matches the configuration it was built from.
+     *
+     * @param other Access point configuration to compare against
+     * @return true if all configured values are equal
+     */
+    public boolean sameConfig(AccessPointConfig other) {
+        if ((other == null) || !Objects.equals(name, other.getName()) ||
+                !Objects.equals(macAddress, other.getMacAddress()) ||
+                !Objects.equals(ingressVlans, other.getIngressVlans()) ||
+                (Double.compare(longitude, other.getLongitude()) != 0) ||
+                (Double.compare(latitude, other.getLatitude()) != 0) ||
+                (Double.compare(altitude, other.getAltitude()) != 0) ||
+                !getOtherVids().equals(other.getOtherVids()) ||
+                !getConnections().equals(other.getConnections())) {
+            return false;
+        }
+        List<GatewayConfig> otherGateways = other.getDefaultGatewayList();
+
+        if (defaultGateways.size() != otherGateways.size()) {
+            return false;
+        }
+        for (int index = 0; index < defaultGateways.size(); index++) {
+            if (!defaultGateways.get(index).sameConfig(otherGateways.get(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
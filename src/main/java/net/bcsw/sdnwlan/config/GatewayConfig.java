@@ -23,6 +23,8 @@ import org.onosproject.incubator.net.config.basics.ConfigException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Objects;
+
 
 /**
  * Wraps the JSON configuration data for a gateway
@@ -31,7 +33,7 @@ public class GatewayConfig {
     public static final String GATEWAY_CONFIG = "gateways";
     private static final String NAME = "name";
     private static final String SUBNET_AND_ADDRESS = "subnetAndAddress";
-    protected final Logger log = LoggerFactory.getLogger(getClass());
+    protected static final Logger log = LoggerFactory.getLogger(GatewayConfig.class);
     private String name;
     private IpGatewayAndMask gatewayAndMask;
     private IngressVlans ingressVlans;
@@ -48,7 +50,7 @@ public class GatewayConfig {
     public GatewayConfig(String name, IpGatewayAndMask gatewayAndMask) {
         this.name = name;
         this.gatewayAndMask = gatewayAndMask;
-        this.ingressVlans = new IngressVlans();
+        this.ingressVlans = IngressVlans.none();
     }
 
     public GatewayConfig(String name, IpGatewayAndMask gatewayAndMask,
@@ -62,10 +64,10 @@ public class GatewayConfig {
         try {
             String name = gwNode.path(NAME).asText("").trim();
             IpGatewayAndMask addr = IpGatewayAndMask.valueOf(gwNode.path(SUBNET_AND_ADDRESS).asText().trim());
-            IngressVlans ingressVlans = new IngressVlans();
+            IngressVlans ingressVlans = IngressVlans.none();
 
             if (gwNode.has(IngressVlans.INGRESS_VLANS)) {
-                ingressVlans = new IngressVlans((ArrayNode) gwNode.path(IngressVlans.INGRESS_VLANS));
+                ingressVlans = IngressVlans.of((ArrayNode) gwNode.path(IngressVlans.INGRESS_VLANS));
             }
             return new GatewayConfig(name, addr, ingressVlans);
 
@@ -85,4 +87,16 @@ public class GatewayConfig {
     public IngressVlans getIngressVlans() {
         return ingressVlans;
     }
+
+    /**
+     * Does another gateway have the same configuration?
+     *
+     * @param other Gateway configuration to compare against
+     * @return true if all configured values are equal
+     */
+    public boolean sameConfig(GatewayConfig other) {
+        return (other != null) && Objects.equals(name, other.getName()) &&
+                Objects.equals(gatewayAndMask, other.getGatewayAndMask()) &&
+                Objects.equals(ingressVlans, other.getIngressVlans());
+    }
 }
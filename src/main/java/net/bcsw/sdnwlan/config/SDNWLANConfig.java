@@ -39,6 +39,25 @@ public class SDNWLANConfig extends Config<ApplicationId> {
     private static final String GATEWAY_FLOW_PRIORITY = "defGwFlowPriority";
     private static final String UNICAST_FLOW_PRIORITY = "roamingUnicastPriority";
     private static final String REMOVED_HOST_TIMEOUT = "removedHostTimeout";
+    private static final String INTENT_BATCH_SIZE = "intentBatchSize";
+    private static final String INTENT_BATCH_WINDOW = "intentBatchWindow";
+    private static final String OBJECTIVE_BATCH_WINDOW = "objectiveBatchWindow";
+    private static final String INTENT_RATE = "intentRate";
+    private static final String INTENT_BURST = "intentBurst";
+    private static final String MAKE_BEFORE_BREAK = "makeBeforeBreak";
+    private static final String MAKE_BEFORE_BREAK_TIMEOUT = "makeBeforeBreakTimeout";
+    private static final String AGGREGATE_NORTHBOUND = "aggregateNorthbound";
+    private static final String FLOW_BACKEND = "flowBackend";
+    private static final String RECONCILE_INTERVAL = "reconcileInterval";
+    private static final String WARM_RESTART = "warmRestart";
+    private static final String HOME_AP_SHORTCUT = "homeApShortcut";
+    private static final String ROAMING_BROADCAST = "roamingBroadcast";
+    private static final String WARM_RESTART_GRACE = "warmRestartGrace";
+    private static final String SNAPSHOT_INTERVAL = "snapshotInterval";
+    private static final String EVENT_JOURNAL = "eventJournal";
+    private static final String JOURNAL_SEGMENT_SIZE = "journalSegmentSize";
+    private static final String JOURNAL_SEGMENTS = "journalSegments";
+    private static final String HOST_STATE_FLUSH_INTERVAL = "hostStateFlushInterval";
     private static final String ACCESS_POINT_INFO = "accessPoints";
 
     /////////////////////////////////////////////////////////////////////////////////
@@ -49,9 +68,61 @@ public class SDNWLANConfig extends Config<ApplicationId> {
     // Default values
     public static int DEFAULT_ROAMING_UNICAST_FLOW_PRIORITY = 20000;
     public static int DEFAULT_REMOVED_HOST_TIMEOUT_SECONDS = 30;
-    public static int DEFAULT_REMOVED_HOST_DELAY_GRANULARITY = 5;
+    public static int DEFAULT_INTENT_BATCH_SIZE = 100;
+    public static int DEFAULT_INTENT_BATCH_WINDOW_MSEC = 20;
+    public static int DEFAULT_OBJECTIVE_BATCH_WINDOW_MSEC = 0;
+    public static int DEFAULT_INTENT_RATE = 1000;
+    public static int DEFAULT_INTENT_BURST = 500;
+    public static boolean DEFAULT_MAKE_BEFORE_BREAK = false;
+    public static int DEFAULT_MAKE_BEFORE_BREAK_TIMEOUT_MSEC = 2000;
+    public static boolean DEFAULT_AGGREGATE_NORTHBOUND = false;
+    public static String FLOW_BACKEND_INTENT = "intent";
+    public static String FLOW_BACKEND_OBJECTIVE = "objective";
+    public static String DEFAULT_FLOW_BACKEND = FLOW_BACKEND_INTENT;
+    public static int DEFAULT_RECONCILE_INTERVAL_SECONDS = 5;
+    public static boolean DEFAULT_WARM_RESTART = false;
+    public static int DEFAULT_WARM_RESTART_GRACE_SECONDS = 30;
+    public static boolean DEFAULT_HOME_AP_SHORTCUT = true;
+    public static boolean DEFAULT_ROAMING_BROADCAST = true;
+    public static int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 60;
+    public static boolean DEFAULT_EVENT_JOURNAL = false;
+    public static int DEFAULT_JOURNAL_SEGMENT_SIZE_MB = 16;
+    public static int DEFAULT_JOURNAL_SEGMENTS = 8;
+    public static int DEFAULT_HOST_STATE_FLUSH_INTERVAL_MSEC = 500;
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    /**
+     * Check that every top-level property present is of the right type and within its
+     * range.  The getters return the values unchecked, so a configuration must be valid
+     * before it is used.
+     *
+     * @return true if the configuration is valid
+     */
+    @Override
+    public boolean isValid() {
+        return isIntegralNumber(GATEWAY_FLOW_PRIORITY, FieldPresence.OPTIONAL, 1, 65535) &&
+                isIntegralNumber(UNICAST_FLOW_PRIORITY, FieldPresence.OPTIONAL, 1, 65535) &&
+                isIntegralNumber(REMOVED_HOST_TIMEOUT, FieldPresence.OPTIONAL, 0, 3600) &&
+                isIntegralNumber(INTENT_BATCH_SIZE, FieldPresence.OPTIONAL, 1, 10000) &&
+                isIntegralNumber(INTENT_BATCH_WINDOW, FieldPresence.OPTIONAL, 0, 10000) &&
+                isIntegralNumber(OBJECTIVE_BATCH_WINDOW, FieldPresence.OPTIONAL, 0, 10000) &&
+                isIntegralNumber(INTENT_RATE, FieldPresence.OPTIONAL, 0, 1000000) &&
+                isIntegralNumber(INTENT_BURST, FieldPresence.OPTIONAL, 1, 1000000) &&
+                isBoolean(MAKE_BEFORE_BREAK, FieldPresence.OPTIONAL) &&
+                isIntegralNumber(MAKE_BEFORE_BREAK_TIMEOUT, FieldPresence.OPTIONAL, 0, 60000) &&
+                isBoolean(AGGREGATE_NORTHBOUND, FieldPresence.OPTIONAL) &&
+                isIntegralNumber(RECONCILE_INTERVAL, FieldPresence.OPTIONAL, 0, 3600) &&
+                isBoolean(WARM_RESTART, FieldPresence.OPTIONAL) &&
+                isIntegralNumber(WARM_RESTART_GRACE, FieldPresence.OPTIONAL, 0, 3600) &&
+                isBoolean(HOME_AP_SHORTCUT, FieldPresence.OPTIONAL) &&
+                isBoolean(ROAMING_BROADCAST, FieldPresence.OPTIONAL) &&
+                isIntegralNumber(SNAPSHOT_INTERVAL, FieldPresence.OPTIONAL, 0, 86400) &&
+                isBoolean(EVENT_JOURNAL, FieldPresence.OPTIONAL) &&
+                isIntegralNumber(JOURNAL_SEGMENT_SIZE, FieldPresence.OPTIONAL, 1, 1024) &&
+                isIntegralNumber(JOURNAL_SEGMENTS, FieldPresence.OPTIONAL, 1, 1000) &&
+                isIntegralNumber(HOST_STATE_FLUSH_INTERVAL, FieldPresence.OPTIONAL, 0, 60000);
+    }
+
     /////////////////////////////////////////////////////////////////////////////////
     // Simple top-level properties
 
@@ -62,7 +133,6 @@ public class SDNWLANConfig extends Config<ApplicationId> {
      * @return flow priority (1-65535)
      */
     public int getDefaultGatewayFlowPriority() {
-        // TODO: Bounds checking would be nice here, throw a ConfigException on error
         return get(GATEWAY_FLOW_PRIORITY, DEFAULT_GATEWAY_FLOW_PRIORITY);
     }
 
@@ -73,7 +143,6 @@ public class SDNWLANConfig extends Config<ApplicationId> {
      * @return flow priority (1-65535)
      */
     public int getRoamingUnicastFlowPriority() {
-        // TODO: Bounds checking would be nice here, throw a ConfigException on error
         return get(UNICAST_FLOW_PRIORITY, DEFAULT_ROAMING_UNICAST_FLOW_PRIORITY);
     }
 
@@ -81,12 +150,208 @@ public class SDNWLANConfig extends Config<ApplicationId> {
      * The number of seconds after a HOST_REMOVED event until the host is deleted.  This
      * allows for a move to be a 'REMOVE' followed by an 'ADD'
      *
-     * @return timeout in seconds
+     * @return timeout in seconds (0-3600)
      */
     public int getDefaultRemovedHostTimeout() {
-        // TODO: Bounds checking would be nice here, throw a ConfigException on error
         return get(REMOVED_HOST_TIMEOUT, DEFAULT_REMOVED_HOST_TIMEOUT_SECONDS);
     }
+
+    /**
+     * The maximum number of intent submit/withdraw operations sent to the intent
+     * service in a single batch
+     *
+     * @return batch size (1-10000)
+     */
+    public int getIntentBatchSize() {
+        return get(INTENT_BATCH_SIZE, DEFAULT_INTENT_BATCH_SIZE);
+    }
+
+    /**
+     * The maximum time an intent submit/withdraw operation is held so that it can
+     * be batched with others
+     *
+     * @return batch window in milliseconds (0-10000)
+     */
+    public int getIntentBatchWindow() {
+        return get(INTENT_BATCH_WINDOW, DEFAULT_INTENT_BATCH_WINDOW_MSEC);
+    }
+
+    /**
+     * The maximum time a forwarding objective is held so that it can be batched with
+     * others.  Objectives skip intent compilation, so by default they are sent as soon
+     * as the pipeline thread gets to them.
+     *
+     * @return batch window in milliseconds (0-10000)
+     */
+    public int getObjectiveBatchWindow() {
+        return get(OBJECTIVE_BATCH_WINDOW, DEFAULT_OBJECTIVE_BATCH_WINDOW_MSEC);
+    }
+
+    /**
+     * The maximum rate intent submit/withdraw operations are sent to the intent service
+     *
+     * @return operations per second (0-1000000), 0 for no limit
+     */
+    public int getIntentRate() {
+        return get(INTENT_RATE, DEFAULT_INTENT_RATE);
+    }
+
+    /**
+     * The number of intent operations that may be sent at once, above the rate limit,
+     * after a quiet period
+     *
+     * @return burst size (1-1000000)
+     */
+    public int getIntentBurst() {
+        return get(INTENT_BURST, DEFAULT_INTENT_BURST);
+    }
+
+    /**
+     * If true, the roaming flows for a host that moves between two foreign access
+     * points are installed towards the new access point before the flows to the
+     * old access point are withdrawn
+     *
+     * @return true if make-before-break roaming is enabled
+     */
+    public boolean getMakeBeforeBreak() {
+        return get(MAKE_BEFORE_BREAK, DEFAULT_MAKE_BEFORE_BREAK);
+    }
+
+    /**
+     * The maximum time to wait for the new roaming flows to be installed before the
+     * old flows are withdrawn anyway
+     *
+     * @return timeout in milliseconds (0-60000)
+     */
+    public int getMakeBeforeBreakTimeout() {
+        return get(MAKE_BEFORE_BREAK_TIMEOUT, DEFAULT_MAKE_BEFORE_BREAK_TIMEOUT_MSEC);
+    }
+
+    /**
+     * If true, the northbound roaming traffic toward a default gateway from all roaming
+     * hosts is carried by a single multipoint-to-single-point flow per gateway instead
+     * of a flow per roaming host
+     *
+     * @return true if northbound roaming flows are aggregated
+     */
+    public boolean getAggregateNorthbound() {
+        return get(AGGREGATE_NORTHBOUND, DEFAULT_AGGREGATE_NORTHBOUND);
+    }
+
+    /**
+     * How roaming flows are programmed.  With 'objective', a roaming flow whose ingress
+     * and egress are on the same device is programmed directly with a forwarding
+     * objective.  Flows that need a path always use an intent.
+     *
+     * @return 'intent' or 'objective'
+     */
+    public String getFlowBackend() {
+        String backend = get(FLOW_BACKEND, DEFAULT_FLOW_BACKEND);
+
+        if (!backend.equalsIgnoreCase(FLOW_BACKEND_INTENT) && !backend.equalsIgnoreCase(FLOW_BACKEND_OBJECTIVE)) {
+            log.warn("Unsupported flow backend '{}', using '{}'", backend, DEFAULT_FLOW_BACKEND);
+            return DEFAULT_FLOW_BACKEND;
+        }
+        return backend.toLowerCase();
+    }
+
+    /**
+     * How often the installed intents of any changed access points and hosts are
+     * compared with the intent service and repaired
+     *
+     * @return interval in seconds (0-3600), 0 disables reconciliation
+     */
+    public int getReconcileInterval() {
+        return get(RECONCILE_INTERVAL, DEFAULT_RECONCILE_INTERVAL_SECONDS);
+    }
+
+    /**
+     * If true, the intents of the application are left installed when it is deactivated
+     * and are adopted (rather than re-submitted) when it is activated again
+     *
+     * @return true if warm restart is enabled
+     */
+    public boolean getWarmRestart() {
+        return get(WARM_RESTART, DEFAULT_WARM_RESTART);
+    }
+
+    /**
+     * How long after activation the access points and hosts have to claim the intents
+     * left by a previous instance before any unclaimed ones are withdrawn
+     *
+     * @return grace period in seconds (0-3600)
+     */
+    public int getWarmRestartGrace() {
+        return get(WARM_RESTART_GRACE, DEFAULT_WARM_RESTART_GRACE_SECONDS);
+    }
+
+    /**
+     * If true, traffic between a roaming host and the peers on its home subnet is sent
+     * directly between the access points instead of through the default gateway
+     *
+     * @return true if home access point shortcut flows are installed
+     */
+    public boolean getHomeApShortcut() {
+        return get(HOME_AP_SHORTCUT, DEFAULT_HOME_AP_SHORTCUT);
+    }
+
+    /**
+     * If true, the broadcasts of a home subnet (ARP, DHCP) are also delivered to the
+     * access points its hosts are roaming through
+     *
+     * @return true if roaming broadcast flows are installed
+     */
+    public boolean getRoamingBroadcast() {
+        return get(ROAMING_BROADCAST, DEFAULT_ROAMING_BROADCAST);
+    }
+
+    /**
+     * How often the gateway locations and mobile host state are checkpointed to the
+     * local snapshot file that is reloaded on activation
+     *
+     * @return interval in seconds (0-86400), 0 disables the periodic checkpoint
+     */
+    public int getSnapshotInterval() {
+        return get(SNAPSHOT_INTERVAL, DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+    }
+
+    /**
+     * Are the host and device events received journaled to disk for offline replay?
+     *
+     * @return true if the event journal is enabled
+     */
+    public boolean getEventJournal() {
+        return get(EVENT_JOURNAL, DEFAULT_EVENT_JOURNAL);
+    }
+
+    /**
+     * Size at which an event journal segment file is closed and a new one started
+     *
+     * @return segment size in megabytes (1-1024)
+     */
+    public int getJournalSegmentSize() {
+        return get(JOURNAL_SEGMENT_SIZE, DEFAULT_JOURNAL_SEGMENT_SIZE_MB);
+    }
+
+    /**
+     * Most event journal segment files kept.  The oldest is deleted when a new one is
+     * started past this limit.
+     *
+     * @return segment count (1-1000)
+     */
+    public int getJournalSegments() {
+        return get(JOURNAL_SEGMENTS, DEFAULT_JOURNAL_SEGMENTS);
+    }
+
+    /**
+     * How often changes to the mobile host state are written to the store.  Repeated
+     * changes to the same host within the interval are written once.
+     *
+     * @return interval in milliseconds (0-60000), 0 writes every change straight through
+     */
+    public int getHostStateFlushInterval() {
+        return get(HOST_STATE_FLUSH_INTERVAL, DEFAULT_HOST_STATE_FLUSH_INTERVAL_MSEC);
+    }
     /////////////////////////////////////////////////////////////////////////////////
     // more complex keys
 
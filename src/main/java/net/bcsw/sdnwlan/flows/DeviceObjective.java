@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.flows;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flowobjective.ForwardingObjective;
+
+/**
+ * A forwarding objective for a flow that can be programmed on a single device
+ * without needing an intent (and path computation).
+ */
+public final class DeviceObjective {
+
+    private final DeviceId                    deviceId;
+    private final TrafficSelector             selector;
+    private final int                         priority;
+    private final ForwardingObjective.Builder objective;
+    private final Flow                        flow;
+
+    public DeviceObjective(DeviceId deviceId, TrafficSelector selector, int priority,
+                           ForwardingObjective.Builder objective, Flow flow) {
+        this.deviceId  = deviceId;
+        this.selector  = selector;
+        this.priority  = priority;
+        this.objective = objective;
+        this.flow      = flow;
+    }
+
+    /**
+     * Device to program the objective on
+     *
+     * @return device ID
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Objective builder.  Used to build both the 'add' and 'remove' objective
+     *
+     * @return objective builder
+     */
+    public ForwardingObjective.Builder objective() {
+        return objective;
+    }
+
+    /**
+     * Flow implemented by this objective
+     *
+     * @return flow
+     */
+    public Flow flow() {
+        return flow;
+    }
+
+    /**
+     * Does another objective program the same flow entry (device, match and priority)?
+     * If so, adding one replaces the other and removing either removes both.
+     *
+     * @param other Objective to compare against
+     * @return true if the flow entries are the same
+     */
+    public boolean sameMatch(DeviceObjective other) {
+        return (other != null) && deviceId.equals(other.deviceId) &&
+                (priority == other.priority) && selector.equals(other.selector);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s", deviceId, flow);
+    }
+}
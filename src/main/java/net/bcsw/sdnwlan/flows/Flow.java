@@ -15,11 +15,20 @@
  */
 package net.bcsw.sdnwlan.flows;
 
+import net.bcsw.sdnwlan.IngressVlans;
 import net.bcsw.sdnwlan.SDNWLANConnectPoint;
 import org.onosproject.core.ApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flowobjective.DefaultForwardingObjective;
+import org.onosproject.net.flowobjective.ForwardingObjective;
 import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides common interface for all flow implementations
@@ -30,10 +39,28 @@ import java.util.Objects;
  */
 public abstract class Flow {
 
+    /**
+     * Lifecycle state of the intent that implements a flow
+     */
+    public enum State {
+        CREATED,
+        SUBMITTED,
+        INSTALLED,
+        FAILED,
+        WITHDRAWN
+    }
+
     protected SDNWLANConnectPoint ingress;
     protected SDNWLANConnectPoint egress;
     protected ApplicationId appId;
 
+    // Statistics common to all flows (times are in milliseconds since the epoch)
+    private final long          createTime = System.currentTimeMillis();
+    private final AtomicInteger failures   = new AtomicInteger();
+    private volatile long       submitTime;
+    private volatile long       installTime;
+    private volatile State      state = State.CREATED;
+
     protected Flow(ApplicationId appId, SDNWLANConnectPoint ingress, SDNWLANConnectPoint egress) {
 
         this.ingress = ingress;
@@ -77,14 +104,131 @@ public abstract class Flow {
      * @param flowPriority Priority for the intent
      * @return Intent ready for submission or 'null' on error
      */
-    public abstract Intent getIntent(int flowPriority);
+    public Intent getIntent(int flowPriority) {
+        return getIntent(null, flowPriority);
+    }
+
+    /**
+     * Get the intent object that represents this flow
+     *
+     * @param key          Key for the intent, if null one is generated by the intent framework
+     * @param flowPriority Priority for the intent
+     * @return Intent ready for submission or 'null' on error
+     */
+    public abstract Intent getIntent(Key key, int flowPriority);
+
+    /**
+     * Get the flow specific match criteria (not including any VLANs or ports)
+     *
+     * @return Selector builder or 'null' if the flow can only be implemented by an intent
+     */
+    protected TrafficSelector.Builder selector() {
+        return null;
+    }
+
+    /**
+     * Get a forwarding objective that implements this flow directly on a device.
+     *
+     *   This is only possible if both the ingress and egress points are on the same
+     *   device.  Otherwise a path is needed and an intent must be used.
+     *
+     * @param flowPriority Priority for the flow
+     * @return Objective ready for submission or 'null' if not possible
+     */
+    public DeviceObjective getObjective(int flowPriority) {
+
+        ConnectPoint inPoint  = ingress.getLocation();
+        ConnectPoint outPoint = egress.getLocation();
+
+        if ((inPoint == null) || (outPoint == null) || !inPoint.deviceId().equals(outPoint.deviceId())) {
+            return null;
+        }
+        TrafficSelector.Builder selector = selector();
+
+        if (selector == null) {
+            return null;
+        }
+        selector.matchInPort(inPoint.port());
+
+        TrafficTreatment vlanTreatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
+        TrafficSelector  match         = selector.build();
+
+        ForwardingObjective.Builder objective = DefaultForwardingObjective.builder()
+                .fromApp(getApplicationId())
+                .withSelector(match)
+                .withTreatment(DefaultTrafficTreatment.builder(vlanTreatment)
+                                       .setOutput(outPoint.port())
+                                       .build())
+                .withPriority(flowPriority)
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .makePermanent();
+
+        return new DeviceObjective(inPoint.deviceId(), match, flowPriority, objective, this);
+    }
+
+    /**
+     * Record that the intent for this flow was submitted
+     */
+    public void submitted() {
+        submitTime = System.currentTimeMillis();
+        state      = State.SUBMITTED;
+    }
+
+    /**
+     * Record that the intent for this flow was installed
+     *
+     * @return time from submission to installation in milliseconds
+     */
+    public long installed() {
+        installTime = System.currentTimeMillis();
+        state       = State.INSTALLED;
+
+        return getInstallLatency();
+    }
+
+    /**
+     * Record that the intent for this flow failed to install
+     */
+    public void failed() {
+        failures.incrementAndGet();
+        state = State.FAILED;
+    }
 
     /**
-     * TODO: Should provide some statistics common to all flows
-     * <p>
-     * - date created
-     * - ...
+     * Record that the intent for this flow was withdrawn
      */
+    public void withdrawn() {
+        state = State.WITHDRAWN;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    public long getInstallTime() {
+        return installTime;
+    }
+
+    /**
+     * Time from submission of the intent to its installation
+     *
+     * @return latency in milliseconds, or -1 if not yet installed
+     */
+    public long getInstallLatency() {
+        return (installTime != 0 && submitTime != 0) ? installTime - submitTime : -1;
+    }
+
+    public int getFailureCount() {
+        return failures.get();
+    }
 
     @Override
     public int hashCode() {
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.flows;
+
+import net.bcsw.sdnwlan.IngressVlans;
+import net.bcsw.sdnwlan.SDNWLANConnectPoint;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.PointToPointIntent;
+
+import java.util.Objects;
+
+/**
+ * A northbound flow from the access point a host is roaming through directly to its home
+ * access point that matches on the source MAC of the host and a destination IP subnet.
+ * <p>
+ * Used so traffic between a roaming host and peers on its home subnet does not have to
+ * go through the default gateway.  Any VLAN tags are translated between the two points.
+ */
+public class HomeSubnetShortcutFlow extends NorthBoundFlow {
+
+    private final MacAddress macAddress;
+    private final IpPrefix   ipPrefix;
+
+    public HomeSubnetShortcutFlow(ApplicationId appId,
+                                  SDNWLANConnectPoint roamingPoint,
+                                  SDNWLANConnectPoint homePoint,
+                                  MacAddress hostMac,
+                                  IpPrefix ipPrefix) {
+        super(appId, roamingPoint, homePoint, ipPrefix);
+
+        this.macAddress = hostMac;
+        this.ipPrefix   = ipPrefix;
+    }
+
+    /**
+     * Return the short name for the implemented Flow
+     */
+    @Override
+    public String name() {
+        return "Home Subnet Shortcut Flow";
+    }
+
+    /**
+     * Return the description for the implemented Flow
+     */
+    @Override
+    public String description() {
+        return "Flow to the home access point that matches on source MAC, IP Subnet " +
+                "destination and any optional VLAN tags ";
+    }
+
+    @Override
+    protected TrafficSelector.Builder selector() {
+        short ipType = ipPrefix.isIp6() ? Ethernet.TYPE_IPV6 : Ethernet.TYPE_IPV4;
+
+        return DefaultTrafficSelector.builder()
+                .matchEthSrc(macAddress)
+                .matchEthType(ipType)
+                .matchIPDst(ipPrefix);
+    }
+
+    /**
+     * Get the intent object that represents this flow
+     *
+     * @param key          Key for the intent, if null one is generated by the intent framework
+     * @param flowPriority Priority for the intent
+     * @return Intent ready for submission or 'null' on error
+     */
+    @Override
+    public Intent getIntent(Key key, int flowPriority) {
+
+        ////////////////////////////////////////////////
+        // Roaming AP to home AP.  Match of host MAC and home IpPrefix
+
+        TrafficSelector.Builder selector = selector();
+
+        TrafficTreatment treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
+
+        return PointToPointIntent.builder()
+                .appId(getApplicationId())
+                .key(key)
+                .selector(selector.build())
+                .ingressPoint(ingress.getLocation())
+                .egressPoint(egress.getLocation())
+                .treatment(treatment)
+                .priority(flowPriority)
+                .build();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(new Object[]{appId, ingress, egress, macAddress, ipPrefix});
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj != null && obj instanceof HomeSubnetShortcutFlow) {
+            HomeSubnetShortcutFlow other = (HomeSubnetShortcutFlow) obj;
+
+            return this.ingress.equals(other.ingress) &&
+                    this.egress.equals(other.egress) &&
+                    this.macAddress.equals(other.macAddress) &&
+                    this.ipPrefix.equals(other.ipPrefix);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(this.ingress.toString()).append(" <-> ");
+        builder.append(this.egress.toString()).append(" / ");
+        builder.append(this.macAddress.toString()).append(" -> ").append(this.ipPrefix.toString());
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.flows;
+
+import net.bcsw.sdnwlan.IngressVlans;
+import net.bcsw.sdnwlan.SDNWLANConnectPoint;
+import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MultiPointToSinglePointIntent;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A northbound flow that matches on destination MAC address from several southbound
+ * connect points.
+ * <p>
+ * Used to carry the traffic of all roaming hosts of a default gateway, from whichever
+ * access point they are roaming through, in a single intent.  All of the ingress points
+ * share the VLANs of the southbound point given to the constructor (the home access point
+ * of the hosts).
+ */
+public class NorthBoundMacAggregateFlow extends NorthBoundFlow {
+
+    private MacAddress        macAddress;
+    private Set<ConnectPoint> ingressPoints;
+
+    public NorthBoundMacAggregateFlow(ApplicationId appId,
+                                      SDNWLANConnectPoint sbPoint,
+                                      Set<ConnectPoint> sbLocations,
+                                      SDNWLANConnectPoint nbPoint,
+                                      MacAddress macAddress) {
+        super(appId, sbPoint, nbPoint, macAddress);
+
+        this.macAddress    = macAddress;
+        this.ingressPoints = ImmutableSet.copyOf(sbLocations);
+    }
+
+    @Override
+    public String name() {
+        return "NorthBound Aggregate Destination MAC Flow";
+    }
+
+    @Override
+    public String description() {
+        return "Northbound flow from multiple ingress points that matches on the destination " +
+                "MAC address and any optional VLAN tags ";
+    }
+
+    /**
+     * Get the intent object that represents this flow
+     *
+     * @param key          Key for the intent, if null one is generated by the intent framework
+     * @param flowPriority Priority for the intent
+     * @return Intent ready for submission or 'null' on error
+     */
+    @Override
+    public Intent getIntent(Key key, int flowPriority) {
+
+        ////////////////////////////////////////////////
+        // Northbound.  Match of Gateway MAC address and any VLAN ID's
+
+        if ((macAddress != MacAddress.ZERO) && (macAddress != MacAddress.NONE) &&
+                !ingressPoints.isEmpty()) {
+
+            TrafficSelector.Builder selector = DefaultTrafficSelector.builder()
+                    .matchEthDst(macAddress);
+
+            TrafficTreatment treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
+
+            return MultiPointToSinglePointIntent.builder()
+                    .appId(getApplicationId())
+                    .key(key)
+                    .selector(selector.build())
+                    .ingressPoints(ingressPoints)
+                    .egressPoint(egress.getLocation())
+                    .treatment(treatment)
+                    .priority(flowPriority)
+                    .build();
+        }
+        return null;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(new Object[]{super.hashCode(), ingressPoints});
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj != null && obj instanceof NorthBoundMacAggregateFlow) {
+            NorthBoundMacAggregateFlow other = (NorthBoundMacAggregateFlow) obj;
+
+            return super.equals(other) &&
+                    this.ingressPoints.equals(other.ingressPoints);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(ingressPoints.toString()).append(" -> ").append(super.toString());
+
+        return builder.toString();
+    }
+}
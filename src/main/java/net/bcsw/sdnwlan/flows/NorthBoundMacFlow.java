@@ -8,6 +8,7 @@ import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
 import org.onosproject.net.intent.PointToPointIntent;
 
 /**
@@ -39,31 +40,41 @@ public class NorthBoundMacFlow extends NorthBoundFlow {
                 "any optional VLAN tags ";
     }
 
+    @Override
+    protected TrafficSelector.Builder selector() {
+        if ((macAddress != MacAddress.ZERO) && (macAddress != MacAddress.NONE)) {
+            return DefaultTrafficSelector.builder()
+                    .matchEthDst(macAddress);
+        }
+        return null;
+    }
+
     /**
      * Get the intent object that represents this flow
      *
+     * @param key          Key for the intent, if null one is generated by the intent framework
      * @param flowPriority Priority for the intent
      * @return Intent ready for submission or 'null' on error
      */
     @Override
-    public Intent getIntent(int flowPriority) {
+    public Intent getIntent(Key key, int flowPriority) {
 
         ////////////////////////////////////////////////
         // Northbound.  Match of Gateway MAC address and any VLAN ID's
 
-        if ((macAddress != MacAddress.ZERO) && (macAddress != MacAddress.NONE)) {
+        TrafficSelector.Builder selector = selector();
 
-            TrafficSelector.Builder selector = DefaultTrafficSelector.builder()
-                    .matchEthDst(macAddress);
+        if (selector != null) {
 
-            TrafficTreatment.Builder treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
+            TrafficTreatment treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
 
             return PointToPointIntent.builder()
                     .appId(getApplicationId())
+                    .key(key)
                     .selector(selector.build())
                     .ingressPoint(ingress.getLocation())
                     .egressPoint(egress.getLocation())
-                    .treatment(treatment.build())
+                    .treatment(treatment)
                     .priority(flowPriority)
                     .build();
         }
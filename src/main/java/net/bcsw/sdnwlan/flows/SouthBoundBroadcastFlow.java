@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.flows;
+
+import net.bcsw.sdnwlan.IngressVlans;
+import net.bcsw.sdnwlan.SDNWLANConnectPoint;
+import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.SinglePointToMultiPointIntent;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A southbound flow that replicates broadcast frames from a single connect point to
+ * several connect points.
+ * <p>
+ * Used to deliver the broadcasts of a subnet (ARP, DHCP) to all of the access points that
+ * hosts of the subnet are roaming through with a single intent per subnet.  All of the
+ * egress points share the VLANs of the southbound point given to the constructor (the home
+ * access point of the hosts).
+ */
+public class SouthBoundBroadcastFlow extends SouthBoundFlow {
+
+    private final Set<ConnectPoint> egressPoints;
+
+    public SouthBoundBroadcastFlow(ApplicationId appId,
+                                   SDNWLANConnectPoint nbPoint,
+                                   SDNWLANConnectPoint sbPoint,
+                                   Set<ConnectPoint> sbLocations) {
+        super(appId, nbPoint, sbPoint, null);
+
+        this.egressPoints = ImmutableSet.copyOf(sbLocations);
+    }
+
+    /**
+     * Return the short name for the implemented Flow
+     */
+    @Override
+    public String name() {
+        return "SouthBound Broadcast Flow";
+    }
+
+    /**
+     * Return the description for the implemented Flow
+     */
+    @Override
+    public String description() {
+        return "Southbound flow to multiple egress points that matches on the broadcast " +
+                "MAC address and any optional VLAN tags ";
+    }
+
+    @Override
+    protected TrafficSelector.Builder selector() {
+        return DefaultTrafficSelector.builder()
+                .matchEthDst(MacAddress.BROADCAST);
+    }
+
+    /**
+     * Get the intent object that represents this flow
+     *
+     * @param key          Key for the intent, if null one is generated by the intent framework
+     * @param flowPriority Priority for the intent
+     * @return Intent ready for submission or 'null' on error
+     */
+    @Override
+    public Intent getIntent(Key key, int flowPriority) {
+
+        ////////////////////////////////////////////////
+        // Southbound.  Match of broadcast MAC address and any VLAN ID's
+
+        if (egressPoints.isEmpty() || egressPoints.contains(ingress.getLocation())) {
+            return null;
+        }
+        TrafficSelector.Builder selector = selector();
+
+        TrafficTreatment treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
+
+        return SinglePointToMultiPointIntent.builder()
+                .appId(getApplicationId())
+                .key(key)
+                .selector(selector.build())
+                .ingressPoint(ingress.getLocation())
+                .egressPoints(egressPoints)
+                .treatment(treatment)
+                .priority(flowPriority)
+                .build();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(new Object[]{appId, ingress, egress, egressPoints});
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj != null && obj instanceof SouthBoundBroadcastFlow) {
+            SouthBoundBroadcastFlow other = (SouthBoundBroadcastFlow) obj;
+
+            return this.ingress.equals(other.ingress) &&
+                    this.egress.equals(other.egress) &&
+                    this.egressPoints.equals(other.egressPoints);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(this.ingress.toString()).append(" -> ").append(egressPoints.toString());
+        builder.append(" / ").append(MacAddress.BROADCAST.toString());
+
+        return builder.toString();
+    }
+}
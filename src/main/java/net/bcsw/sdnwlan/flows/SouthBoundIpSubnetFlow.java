@@ -25,6 +25,7 @@ import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
 import org.onosproject.net.intent.PointToPointIntent;
 
 import java.util.Objects;
@@ -65,32 +66,39 @@ public class SouthBoundIpSubnetFlow extends SouthBoundFlow {
                 "any optional VLAN tags ";
     }
 
+    @Override
+    protected TrafficSelector.Builder selector() {
+        short ipType = ipPrefix.isIp6() ? Ethernet.TYPE_IPV6 : Ethernet.TYPE_IPV4;
+
+        return DefaultTrafficSelector.builder()
+                .matchEthType(ipType)
+                .matchIPDst(ipPrefix);
+    }
+
     /**
      * Get the intent object that represents this flow
      *
+     * @param key          Key for the intent, if null one is generated by the intent framework
      * @param flowPriority Priority for the intent
      * @return Intent ready for submission or 'null' on error
      */
     @Override
-    public Intent getIntent(int flowPriority) {
+    public Intent getIntent(Key key, int flowPriority) {
 
         ////////////////////////////////////////////////
         // Southbound.  Match of Egress AP IpPrefix
 
-        short ipType = ipPrefix.isIp6() ? Ethernet.TYPE_IPV6 : Ethernet.TYPE_IPV4;
-
-        TrafficSelector.Builder selector = DefaultTrafficSelector.builder()
-                .matchEthType(ipType)
-                .matchIPDst(ipPrefix);
+        TrafficSelector.Builder selector = selector();
 
-        TrafficTreatment.Builder treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
+        TrafficTreatment treatment = IngressVlans.vlanMatchAndTreatment(selector, ingress, egress);
 
         return PointToPointIntent.builder()
                 .appId(getApplicationId())
+                .key(key)
                 .selector(selector.build())
                 .ingressPoint(ingress.getLocation())
                 .egressPoint(egress.getLocation())
-                .treatment(treatment.build())
+                .treatment(treatment)
                 .priority(flowPriority)
                 .build();
     }
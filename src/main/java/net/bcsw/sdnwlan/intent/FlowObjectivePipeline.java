@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import net.bcsw.sdnwlan.config.SDNWLANConfig;
+import net.bcsw.sdnwlan.flows.DeviceObjective;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flowobjective.FlowObjectiveService;
+import org.onosproject.net.flowobjective.Objective;
+import org.onosproject.net.flowobjective.ObjectiveContext;
+import org.onosproject.net.flowobjective.ObjectiveError;
+import org.onosproject.net.intent.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Batches forwarding objectives per device before handing them to the flow objective service.
+ *
+ * This is the fast path for flows whose ingress and egress are on the same device and so
+ * do not need intent compilation or path computation.  Operations are accumulated for a
+ * short window (none by default, only what arrives while a flush is running) and then sent
+ * device by device, in the order they were requested.  Results are reported to the
+ * {@link IntentTracker} so objective flows are listed and counted along with the intents.
+ */
+public class FlowObjectivePipeline {
+
+    private static final class Operation {
+        private final boolean         add;
+        private final Key             key;
+        private final DeviceObjective objective;
+
+        private Operation(boolean add, Key key, DeviceObjective objective) {
+            this.add       = add;
+            this.key       = key;
+            this.objective = objective;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final FlowObjectiveService     flowObjectiveService;
+    private final IntentTracker            tracker;
+    private final ScheduledExecutorService executor;
+
+    private volatile int  batchSize   = SDNWLANConfig.DEFAULT_INTENT_BATCH_SIZE;
+    private volatile long batchWindow = SDNWLANConfig.DEFAULT_OBJECTIVE_BATCH_WINDOW_MSEC;
+
+    // Pending operations by device, in arrival order.  Guarded by 'this'
+    private Map<DeviceId, List<Operation>> pending = Maps.newLinkedHashMap();
+    private int                            pendingCount;
+    private boolean                        flushScheduled;
+
+    public FlowObjectivePipeline(FlowObjectiveService flowObjectiveService, IntentTracker tracker) {
+        this.flowObjectiveService = flowObjectiveService;
+        this.tracker              = tracker;
+        this.executor             = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("bcsw/sdnwlan", "objective-pipeline"));
+    }
+
+    /**
+     * Set the batching parameters
+     *
+     * @param size   Maximum number of operations in a batch
+     * @param window Maximum time (milliseconds) an operation waits before being flushed
+     */
+    public void configure(int size, long window) {
+        batchSize   = size;
+        batchWindow = window;
+    }
+
+    /**
+     * Queue an objective to be added to its device
+     *
+     * @param key       Flow key
+     * @param objective Objective to add
+     */
+    public void add(Key key, DeviceObjective objective) {
+        tracker.track(key, objective.flow());
+        enqueue(new Operation(true, key, objective));
+    }
+
+    /**
+     * Queue an objective to be removed from its device
+     *
+     * @param key       Flow key
+     * @param objective Objective to remove
+     */
+    public void remove(Key key, DeviceObjective objective) {
+        enqueue(new Operation(false, key, objective));
+    }
+
+    private void enqueue(Operation op) {
+        boolean flushNow = false;
+
+        synchronized (this) {
+            pending.computeIfAbsent(op.objective.deviceId(), id -> Lists.newArrayList()).add(op);
+
+            if (executor.isShutdown() || (++pendingCount >= batchSize)) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, batchWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Pipeline is stopping, send it now
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Send all pending operations to the flow objective service
+     */
+    public void flush() {
+        Map<DeviceId, List<Operation>> batch;
+
+        synchronized (this) {
+            batch          = pending;
+            pending        = Maps.newLinkedHashMap();
+            pendingCount   = 0;
+            flushScheduled = false;
+        }
+        batch.forEach((deviceId, ops) -> {
+            log.debug("flush: {} objective operations for {}", ops.size(), deviceId);
+
+            ops.forEach(op -> {
+                if (op.add) {
+                    flowObjectiveService.forward(deviceId,
+                                                 op.objective.objective().add(new Context(op)));
+                } else {
+                    flowObjectiveService.forward(deviceId,
+                                                 op.objective.objective().remove(new Context(op)));
+                }
+            });
+        });
+    }
+
+    /**
+     * Flush any remaining operations and stop the pipeline
+     */
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(batchWindow + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Reports the objective result to the tracker
+     */
+    private final class Context implements ObjectiveContext {
+        private final Operation op;
+
+        private Context(Operation op) {
+            this.op = op;
+        }
+
+        @Override
+        public void onSuccess(Objective result) {
+            if (op.add) {
+                tracker.installed(op.key, op.objective.flow());
+            } else {
+                tracker.withdrawn(op.key, op.objective.flow());
+            }
+        }
+
+        @Override
+        public void onError(Objective result, ObjectiveError error) {
+            log.warn("onError: objective {} failed: {}", op.objective, error);
+
+            if (op.add) {
+                tracker.failed(op.key, op.objective.flow());
+            }
+        }
+    }
+}
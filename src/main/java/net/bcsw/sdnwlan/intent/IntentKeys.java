@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.Key;
+
+/**
+ * Builds the deterministic intent keys used by the sdnWLAN application.
+ *
+ * An intent submitted with the same key as an existing one replaces it in the intent
+ * service, so a flow that only changes an endpoint (a host roaming between access points)
+ * is updated in place rather than withdrawn and rebuilt.
+ */
+public final class IntentKeys {
+
+    /**
+     * Direction of the flow an intent implements
+     */
+    public enum Direction {
+        NORTHBOUND("nb"),
+        SOUTHBOUND("sb");
+
+        private final String tag;
+
+        Direction(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public String toString() {
+            return tag;
+        }
+    }
+
+    public static final String GATEWAY_PREFIX = "gw";
+    public static final String ROAMING_PREFIX = "roam";
+    public static final String AGGREGATE_PREFIX = "agg";
+    public static final String SHORTCUT_PREFIX = "home";
+    public static final String BROADCAST_PREFIX = "bcast";
+
+    // Sources of the per-subnet broadcast flows
+    public static final String FROM_GATEWAY = "gw";
+    public static final String FROM_HOME_AP = "ap";
+
+    private IntentKeys() {
+    }
+
+    /**
+     * Is the key that of a default gateway flow?
+     *
+     * @param key Intent key
+     * @return true if built by gatewayKey()
+     */
+    public static boolean isGatewayKey(Key key) {
+        return key.toString().startsWith(GATEWAY_PREFIX + "/");
+    }
+
+    /**
+     * Is the key that of a flow owned by a mobile host (rather than an access point)?
+     *
+     * @param key Intent key
+     * @return true if built by roamingKey() or shortcutKey()
+     */
+    public static boolean isHostKey(Key key) {
+        String name = key.toString();
+
+        return name.startsWith(ROAMING_PREFIX + "/") || name.startsWith(SHORTCUT_PREFIX + "/");
+    }
+
+    /**
+     * Get the MAC address a key was built for.  This is the host MAC address of a host key
+     * and the access point MAC address of all others.
+     *
+     * @param key Intent key
+     * @return MAC address or null if the key was not built here
+     */
+    public static MacAddress macOf(Key key) {
+        String[] parts = key.toString().split("/");
+
+        if (parts.length < 3) {
+            return null;
+        }
+        try {
+            return MacAddress.valueOf(parts[2]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Key for a default gateway flow between an access point and one of its gateways
+     *
+     * @param appId     Application ID
+     * @param direction Flow direction
+     * @param apMac     MAC address of the access point
+     * @param subnet    Gateway subnet
+     * @return intent key
+     */
+    public static Key gatewayKey(ApplicationId appId, Direction direction,
+                                 MacAddress apMac, IpPrefix subnet) {
+        return Key.of(String.format("%s/%s/%s/%s", GATEWAY_PREFIX, direction, apMac, subnet), appId);
+    }
+
+    /**
+     * Key for an aggregate roaming flow shared by all roaming hosts of a gateway
+     *
+     * @param appId     Application ID
+     * @param direction Flow direction
+     * @param apMac     MAC address of the home access point of the hosts
+     * @param subnet    Gateway subnet
+     * @return intent key
+     */
+    public static Key aggregateKey(ApplicationId appId, Direction direction,
+                                   MacAddress apMac, IpPrefix subnet) {
+        return Key.of(String.format("%s/%s/%s/%s", AGGREGATE_PREFIX, direction, apMac, subnet), appId);
+    }
+
+    /**
+     * Key for the broadcast flow of a subnet to all of the access points its hosts are
+     * roaming through
+     *
+     * @param appId  Application ID
+     * @param source Where the broadcasts come from, FROM_GATEWAY or FROM_HOME_AP
+     * @param apMac  MAC address of the home access point of the hosts
+     * @param subnet Gateway subnet
+     * @return intent key
+     */
+    public static Key broadcastKey(ApplicationId appId, String source,
+                                   MacAddress apMac, IpPrefix subnet) {
+        return Key.of(String.format("%s/%s/%s/%s", BROADCAST_PREFIX, source, apMac, subnet), appId);
+    }
+
+    /**
+     * Key for a roaming unicast flow between a mobile host and one of its home gateways
+     *
+     * @param appId     Application ID
+     * @param direction Flow direction
+     * @param hostMac   MAC address of the mobile host
+     * @param subnet    Home gateway subnet
+     * @return intent key
+     */
+    public static Key roamingKey(ApplicationId appId, Direction direction,
+                                 MacAddress hostMac, IpPrefix subnet) {
+        return Key.of(String.format("%s/%s/%s/%s", ROAMING_PREFIX, direction, hostMac, subnet), appId);
+    }
+
+    /**
+     * Key for a roaming unicast flow that also identifies the access point the host is
+     * roaming through.  Used for the northbound flows of make-before-break roaming, where
+     * the flows through the old and new access points must exist at the same time.  The
+     * southbound flows through either access point compile to the same flow rule, so they
+     * keep the key without the access point and are replaced in place.
+     *
+     * @param appId     Application ID
+     * @param direction Flow direction
+     * @param hostMac   MAC address of the mobile host
+     * @param apMac     MAC address of the access point the host is roaming through
+     * @param subnet    Home gateway subnet
+     * @return intent key
+     */
+    public static Key roamingKey(ApplicationId appId, Direction direction,
+                                 MacAddress hostMac, MacAddress apMac, IpPrefix subnet) {
+        return Key.of(String.format("%s/%s/%s/%s/%s", ROAMING_PREFIX, direction, hostMac, apMac, subnet),
+                      appId);
+    }
+
+    /**
+     * Key for a shortcut flow between a roaming host and its home access point.  The key
+     * does not depend on the access point the host is roaming through, so a roam replaces
+     * the flow in place (even with make-before-break, as the flows through the old and new
+     * access points match the same traffic and so can not coexist).
+     *
+     * @param appId     Application ID
+     * @param direction Flow direction, southbound is toward the host
+     * @param hostMac   MAC address of the mobile host
+     * @param subnet    Home gateway subnet, or null if the flow is not subnet specific
+     * @return intent key
+     */
+    public static Key shortcutKey(ApplicationId appId, Direction direction,
+                                  MacAddress hostMac, IpPrefix subnet) {
+        StringBuilder key = new StringBuilder();
+
+        key.append(SHORTCUT_PREFIX).append('/').append(direction).append('/').append(hostMac);
+
+        if (subnet != null) {
+            key.append('/').append(subnet);
+        }
+        return Key.of(key.toString(), appId);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+
+import java.util.Map;
+
+/**
+ * An object (access point or mobile host) that owns a set of intents.  Used by the
+ * reconciler to find the intents that should currently be installed.
+ */
+public interface IntentOwner {
+
+    /**
+     * Get the southbound intents this owner wants installed
+     *
+     * @return map of intents by key
+     */
+    Map<Key, Intent> getSouthboundIntents();
+
+    /**
+     * Get the northbound intents this owner wants installed
+     *
+     * @return map of intents by key
+     */
+    Map<Key, Intent> getNorthboundIntents();
+}
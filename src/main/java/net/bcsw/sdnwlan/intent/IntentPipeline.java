@@ -0,0 +1,477 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import net.bcsw.sdnwlan.config.SDNWLANConfig;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.net.intent.ConnectivityIntent;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MultiPointToSinglePointIntent;
+import org.onosproject.net.intent.PointToPointIntent;
+import org.onosproject.net.intent.SinglePointToMultiPointIntent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Batches intent submit and withdraw requests before handing them to the intent service.
+ *
+ * Requests are accumulated for a short window (or until a batch size is reached) and then
+ * dispatched from a single worker thread.  Each request is queued in a priority lane: the
+ * default gateway flows of the access points first, then southbound roaming flows so data
+ * can reach the customer as soon as possible, then northbound roaming flows and finally
+ * withdrawals.  If several requests for the same intent key arrive before they are sent,
+ * only the most recent one is kept.
+ *
+ * Dispatch is limited by a token bucket so a mass re-association can not flood the intent
+ * service.  When the bucket runs dry, the rest of the queue waits for more tokens and the
+ * higher priority lanes are drained first, so gateway flows never wait behind a storm of
+ * roaming updates.  Withdrawals are guaranteed a share of the tokens while any are waiting
+ * so they are not starved (leaving stale flows installed) under sustained load.
+ *
+ * After a warm restart the intents left installed by the previous instance can be adopted.
+ * A submission whose key matches one of those intents, and which would install the same
+ * thing, is not sent to the intent service at all.
+ *
+ * In a cluster, a key filter limits the pipeline to the intents this instance is responsible
+ * for.  Operations on any other key are dropped.
+ */
+public class IntentPipeline {
+
+    // Share of the dispatch tokens kept for withdrawals while any are waiting
+    private static final double WITHDRAW_SHARE = 0.25;
+
+    /**
+     * Priority lane of an intent operation, highest priority first
+     */
+    public enum Lane {
+        GATEWAY,        // Default gateway flows of the access points
+        SOUTHBOUND,     // Southbound roaming flows
+        NORTHBOUND,     // Northbound roaming flows
+        WITHDRAW        // Withdrawals, used internally by withdraw()
+    }
+
+    private enum OpType {
+        SUBMIT,
+        WITHDRAW
+    }
+
+    private static final class Operation {
+        private final OpType type;
+        private final Lane   lane;
+        private final Intent intent;
+
+        private Operation(OpType type, Lane lane, Intent intent) {
+            this.type   = type;
+            this.lane   = lane;
+            this.intent = intent;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final IntentService            intentService;
+    private final ScheduledExecutorService executor;
+
+    private volatile int  batchSize   = SDNWLANConfig.DEFAULT_INTENT_BATCH_SIZE;
+    private volatile long batchWindow = SDNWLANConfig.DEFAULT_INTENT_BATCH_WINDOW_MSEC;
+
+    // Pending operations of each lane in arrival order.  Guarded by 'this'
+    private final Map<Lane, Map<Key, Operation>> queues = Maps.newEnumMap(Lane.class);
+    private final Map<Lane, Integer>             maxDepth = Maps.newEnumMap(Lane.class);
+    private int                                  pendingCount;
+    private boolean                              flushScheduled;
+    private boolean                              throttled;
+    private boolean                              stopping;
+
+    // Token bucket.  Guarded by 'this'
+    private int    rate  = SDNWLANConfig.DEFAULT_INTENT_RATE;
+    private int    burst = SDNWLANConfig.DEFAULT_INTENT_BURST;
+    private double tokens;
+    private long   lastRefill = System.nanoTime();
+    private double withdrawCredit;
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong throttledCount  = new AtomicLong();
+
+    // Installed intents left by a previous instance that may be adopted
+    private final Map<Key, Intent> adoptable = Maps.newConcurrentMap();
+    private volatile Consumer<Key> onAdopted = key -> { };
+
+    // Keys this instance is responsible for
+    private volatile Predicate<Key> keyFilter = key -> true;
+
+    public IntentPipeline(IntentService intentService) {
+        this.intentService = intentService;
+        this.executor      = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("bcsw/sdnwlan", "intent-pipeline"));
+
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, Maps.newLinkedHashMap());
+            maxDepth.put(lane, 0);
+        }
+        tokens = burst;
+    }
+
+    /**
+     * Set the batching parameters
+     *
+     * @param size   Maximum number of operations in a batch
+     * @param window Maximum time (milliseconds) an operation waits before being flushed
+     */
+    public void configure(int size, long window) {
+        batchSize   = size;
+        batchWindow = window;
+    }
+
+    /**
+     * Set the dispatch rate limit
+     *
+     * @param rate  Operations per second, 0 for no limit
+     * @param burst Maximum number of operations that may be sent at once after an idle period
+     */
+    public synchronized void configureRate(int rate, int burst) {
+        this.rate   = rate;
+        this.burst  = burst;
+        this.tokens = Math.min(tokens, this.burst);
+    }
+
+    /**
+     * Limit the intents sent to the intent service to those this instance is responsible for
+     *
+     * @param filter Returns true for keys handled by this instance
+     */
+    public void setKeyFilter(Predicate<Key> filter) {
+        keyFilter = filter;
+    }
+
+    /**
+     * Queue an intent for submission
+     *
+     * @param intent Intent to submit
+     * @param lane   Priority lane, not WITHDRAW
+     */
+    public void submit(Intent intent, Lane lane) {
+        if (!keyFilter.test(intent.key())) {
+            log.debug("submit: {} handled by another instance", intent.key());
+            return;
+        }
+        if (!adoptable.isEmpty() && adopt(intent)) {
+            return;
+        }
+        enqueue(new Operation(OpType.SUBMIT, lane, intent));
+    }
+
+    /**
+     * Offer the installed intents of a previous instance of the application for adoption.
+     * Until {@link #endAdoption()} is called, submitting an equivalent intent under the same
+     * key leaves the installed one in place.
+     *
+     * @param existing  Intents currently installed for the application
+     * @param onAdopted Called with the key of each intent that is adopted
+     */
+    public void adopt(Collection<Intent> existing, Consumer<Key> onAdopted) {
+        existing.forEach(intent -> adoptable.put(intent.key(), intent));
+        this.onAdopted = onAdopted;
+
+        log.info("adopt: {} existing intents available for adoption", adoptable.size());
+    }
+
+    /**
+     * Stop adopting existing intents.  Any that were not claimed are left to the reconciler.
+     */
+    public void endAdoption() {
+        if (!adoptable.isEmpty()) {
+            log.info("endAdoption: {} existing intents were not adopted", adoptable.size());
+        }
+        adoptable.clear();
+    }
+
+    private boolean adopt(Intent intent) {
+        Intent existing = adoptable.remove(intent.key());
+
+        if ((existing == null) || !isEquivalent(existing, intent) ||
+                (intentService.getIntentState(intent.key()) != IntentState.INSTALLED)) {
+            return false;
+        }
+        log.debug("adopt: {} already installed", intent.key());
+        onAdopted.accept(intent.key());
+        return true;
+    }
+
+    /**
+     * Would two intents install the same thing?  Intent equality in ONOS is by intent ID,
+     * which is new for every intent built, so the contents are compared instead.
+     *
+     * @param a First intent
+     * @param b Second intent
+     * @return true if equivalent
+     */
+    public static boolean isEquivalent(Intent a, Intent b) {
+        if ((a.getClass() != b.getClass()) || !(a instanceof ConnectivityIntent)) {
+            return false;
+        }
+        ConnectivityIntent ca = (ConnectivityIntent) a;
+        ConnectivityIntent cb = (ConnectivityIntent) b;
+
+        if ((ca.priority() != cb.priority()) || !Objects.equals(ca.selector(), cb.selector()) ||
+                !Objects.equals(ca.treatment(), cb.treatment())) {
+            return false;
+        }
+        if (a instanceof PointToPointIntent) {
+            PointToPointIntent pa = (PointToPointIntent) a;
+            PointToPointIntent pb = (PointToPointIntent) b;
+
+            return pa.ingressPoint().equals(pb.ingressPoint()) && pa.egressPoint().equals(pb.egressPoint());
+
+        } else if (a instanceof MultiPointToSinglePointIntent) {
+            MultiPointToSinglePointIntent ma = (MultiPointToSinglePointIntent) a;
+            MultiPointToSinglePointIntent mb = (MultiPointToSinglePointIntent) b;
+
+            return ma.ingressPoints().equals(mb.ingressPoints()) && ma.egressPoint().equals(mb.egressPoint());
+
+        } else if (a instanceof SinglePointToMultiPointIntent) {
+            SinglePointToMultiPointIntent sa = (SinglePointToMultiPointIntent) a;
+            SinglePointToMultiPointIntent sb = (SinglePointToMultiPointIntent) b;
+
+            return sa.ingressPoint().equals(sb.ingressPoint()) && sa.egressPoints().equals(sb.egressPoints());
+        }
+        return false;
+    }
+
+    /**
+     * Queue an intent for withdrawal
+     *
+     * @param intent Intent to withdraw
+     */
+    public void withdraw(Intent intent) {
+        adoptable.remove(intent.key());
+
+        if (!keyFilter.test(intent.key())) {
+            log.debug("withdraw: {} handled by another instance", intent.key());
+            return;
+        }
+        enqueue(new Operation(OpType.WITHDRAW, Lane.WITHDRAW, intent));
+    }
+
+    private void enqueue(Operation op) {
+        boolean flushNow = false;
+
+        synchronized (this) {
+            // Remove first so the operation moves to the end of the arrival order (and to
+            // the new lane if it changed)
+
+            Key key = op.intent.key();
+
+            for (Map<Key, Operation> queue : queues.values()) {
+                if (queue.remove(key) != null) {
+                    pendingCount--;
+                }
+            }
+            Map<Key, Operation> queue = queues.get(op.lane);
+
+            queue.put(key, op);
+            pendingCount++;
+            maxDepth.merge(op.lane, queue.size(), Integer::max);
+
+            // While throttled a flush is already waiting for tokens, so a full batch does
+            // not need an early one
+
+            if (stopping || executor.isShutdown() || (!throttled && (pendingCount >= batchSize))) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, batchWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Pipeline is stopping, send it now
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Send as many pending operations to the intent service as the rate limit allows.  If
+     * any remain, another flush is scheduled for when enough tokens are available.
+     */
+    public void flush() {
+        List<Operation> batch = Lists.newArrayList();
+
+        synchronized (this) {
+            flushScheduled = false;
+            throttled      = false;
+
+            if (pendingCount == 0) {
+                return;
+            }
+            int allowed = takeTokens(pendingCount);
+
+            // Withdrawals first up to their share, carried over between flushes so a trickle
+            // of one token at a time still reaches them, then the lanes in priority order
+
+            Map<Key, Operation> withdrawals = queues.get(Lane.WITHDRAW);
+
+            if (withdrawals.isEmpty()) {
+                withdrawCredit = 0;
+            } else {
+                withdrawCredit += allowed * WITHDRAW_SHARE;
+
+                int reserved = Math.min(withdrawals.size(), Math.min(allowed, (int) withdrawCredit));
+
+                withdrawCredit -= reserved;
+                take(withdrawals, reserved, batch);
+            }
+            for (Lane lane : Lane.values()) {
+                take(queues.get(lane), allowed, batch);
+            }
+            pendingCount -= batch.size();
+
+            if (pendingCount > 0) {
+                throttledCount.incrementAndGet();
+
+                if (!executor.isShutdown()) {
+                    throttled      = true;
+                    flushScheduled = true;
+                    executor.schedule(this::flush, Math.max(1, 1000 / Math.max(1, rate)), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        log.debug("flush: {} intent operations", batch.size());
+
+        batch.forEach(op -> {
+            if (op.type == OpType.SUBMIT) {
+                intentService.submit(op.intent);
+            } else {
+                intentService.withdraw(op.intent);
+            }
+        });
+        dispatchedCount.addAndGet(batch.size());
+    }
+
+    /**
+     * Move operations from a lane to the batch, oldest first
+     *
+     * @param queue Lane queue
+     * @param limit Size the batch may grow to
+     * @param batch Batch being built
+     */
+    private static void take(Map<Key, Operation> queue, int limit, List<Operation> batch) {
+        Iterator<Operation> ops = queue.values().iterator();
+
+        while ((batch.size() < limit) && ops.hasNext()) {
+            batch.add(ops.next());
+            ops.remove();
+        }
+    }
+
+    /**
+     * Take up to the requested number of tokens from the bucket
+     *
+     * @param wanted Number of operations waiting
+     * @return number of operations that may be sent now
+     */
+    private int takeTokens(int wanted) {
+        if ((rate == 0) || stopping) {
+            return wanted;
+        }
+        long now = System.nanoTime();
+
+        tokens     = Math.min(burst, tokens + (now - lastRefill) * rate / 1e9);
+        lastRefill = now;
+
+        int granted = (int) Math.min(wanted, Math.floor(tokens));
+
+        tokens -= granted;
+        return granted;
+    }
+
+    /**
+     * Get the number of operations waiting in each lane
+     *
+     * @return queue depth by lane
+     */
+    public synchronized Map<Lane, Integer> getQueueDepths() {
+        Map<Lane, Integer> depths = Maps.newEnumMap(Lane.class);
+
+        queues.forEach((lane, queue) -> depths.put(lane, queue.size()));
+        return depths;
+    }
+
+    /**
+     * Get the largest number of operations that have waited in each lane
+     *
+     * @return maximum queue depth by lane
+     */
+    public synchronized Map<Lane, Integer> getMaxQueueDepths() {
+        return Maps.newEnumMap(maxDepth);
+    }
+
+    /**
+     * Total operations sent to the intent service
+     *
+     * @return operation count
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    /**
+     * Number of flushes that had to leave operations queued because of the rate limit
+     *
+     * @return throttle count
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Flush any remaining operations and stop the pipeline
+     */
+    public void stop() {
+        synchronized (this) {
+            stopping = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(batchWindow + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
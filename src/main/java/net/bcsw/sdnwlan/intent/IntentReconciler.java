@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentListener;
+import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Keeps the intents in the intent service in line with the intents the access points and
+ * mobile hosts want installed.
+ *
+ * Owners are marked dirty when they change their intents or when one of their intents
+ * fails.  On each run, only the dirty owners are compared with the intent service: missing
+ * or failed intents are re-submitted and intents the owner no longer wants are withdrawn.
+ * The first run after activation checks every owner and also withdraws any intents of the
+ * application that no owner wants (left over from a previous instance).
+ *
+ * After a warm restart that first full run is held off for a grace period so the access
+ * points and hosts have time to be rebuilt and adopt their installed intents before
+ * anything is considered an orphan.
+ */
+public class IntentReconciler implements IntentListener {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ApplicationId                     appId;
+    private final IntentService                     intentService;
+    private final IntentPipeline                    pipeline;
+    private final Supplier<Collection<IntentOwner>> owners;
+    private final ScheduledExecutorService          executor;
+
+    // Owners waiting to be reconciled
+    private final Set<IntentOwner> dirty = Sets.newConcurrentHashSet();
+
+    // Keys each owner wanted when last reconciled, and the reverse mapping
+    private final Map<IntentOwner, Set<Key>> ownedKeys  = Maps.newConcurrentMap();
+    private final Map<Key, IntentOwner>      ownerByKey = Maps.newConcurrentMap();
+
+    private volatile boolean   fullSweep = true;
+    private volatile long      fullSweepTime;
+    private ScheduledFuture<?> task;
+
+    /**
+     * Create a new reconciler
+     *
+     * @param appId         Application ID
+     * @param intentService Intent service
+     * @param pipeline      Pipeline used to submit and withdraw intents
+     * @param owners        Supplies all intent owners for the full sweep
+     */
+    public IntentReconciler(ApplicationId appId, IntentService intentService,
+                            IntentPipeline pipeline, Supplier<Collection<IntentOwner>> owners) {
+        this.appId         = appId;
+        this.intentService = intentService;
+        this.pipeline      = pipeline;
+        this.owners        = owners;
+        this.executor      = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("bcsw/sdnwlan", "intent-reconciler"));
+    }
+
+    /**
+     * Set how often dirty owners are reconciled
+     *
+     * @param interval Interval in seconds, 0 to disable
+     */
+    public synchronized void configure(int interval) {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (interval > 0 && !executor.isShutdown()) {
+            task = executor.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Hold off the first full sweep (and the withdrawal of orphaned intents)
+     *
+     * @param grace Seconds from now before the full sweep may run
+     */
+    public void setGracePeriod(int grace) {
+        fullSweepTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(grace);
+    }
+
+    /**
+     * Stop reconciling
+     */
+    public void stop() {
+        executor.shutdownNow();
+        dirty.clear();
+    }
+
+    /**
+     * Forget an owner without withdrawing any of its intents.  Used when the owner is
+     * handed over to another instance of the cluster.
+     *
+     * @param owner Intent owner
+     */
+    public void release(IntentOwner owner) {
+        dirty.remove(owner);
+
+        Set<Key> keys = ownedKeys.remove(owner);
+
+        if (keys != null) {
+            keys.forEach(key -> ownerByKey.remove(key, owner));
+        }
+    }
+
+    /**
+     * Mark an owner as needing to be reconciled
+     *
+     * @param owner Intent owner
+     */
+    public void markDirty(IntentOwner owner) {
+        if (owner != null) {
+            dirty.add(owner);
+        }
+    }
+
+    @Override
+    public boolean isRelevant(IntentEvent event) {
+        return appId.equals(event.subject().appId());
+    }
+
+    @Override
+    public void event(IntentEvent event) {
+        if (event.type() == IntentEvent.Type.FAILED) {
+            markDirty(ownerByKey.get(event.subject().key()));
+        }
+    }
+
+    /**
+     * Reconcile the dirty owners (and, the first time after the grace period, every owner).
+     * Normally run from the timer set by configure().
+     */
+    void run() {
+        try {
+            boolean sweep = fullSweep && (System.currentTimeMillis() >= fullSweepTime);
+
+            if (sweep) {
+                dirty.addAll(owners.get());
+            }
+            List<IntentOwner> batch = Lists.newArrayList(dirty);
+
+            batch.forEach(owner -> {
+                dirty.remove(owner);
+                reconcile(owner);
+            });
+            if (sweep) {
+                fullSweep = false;
+                withdrawOrphans();
+                pipeline.endAdoption();
+            }
+        } catch (Exception e) {
+            log.error("run: reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Compare the intents of an owner with the intent service and fix any differences
+     *
+     * @param owner Intent owner
+     */
+    private void reconcile(IntentOwner owner) {
+
+        Map<Key, Intent> southbound = owner.getSouthboundIntents();
+        Map<Key, Intent> northbound = owner.getNorthboundIntents();
+
+        southbound.forEach((key, intent) -> resubmitIfNeeded(key, intent, IntentPipeline.Lane.SOUTHBOUND));
+        northbound.forEach((key, intent) -> resubmitIfNeeded(key, intent, IntentPipeline.Lane.NORTHBOUND));
+
+        Set<Key> desired = ImmutableSet.<Key>builder()
+                .addAll(southbound.keySet())
+                .addAll(northbound.keySet())
+                .build();
+
+        desired.forEach(key -> ownerByKey.put(key, owner));
+
+        // Withdraw anything this owner had but no longer wants
+
+        Set<Key> previous = desired.isEmpty() ? ownedKeys.remove(owner) : ownedKeys.put(owner, desired);
+
+        if (previous != null) {
+            // A key claimed by another owner since it was last reconciled is left alone
+
+            Sets.difference(previous, desired).forEach(key -> {
+                if (ownerByKey.remove(key, owner)) {
+                    withdrawIfPresent(key);
+                }
+            });
+        }
+    }
+
+    private void resubmitIfNeeded(Key key, Intent intent, IntentPipeline.Lane lane) {
+        IntentState state = intentService.getIntentState(key);
+
+        if ((state == null) || (state == IntentState.FAILED) ||
+                (state == IntentState.WITHDRAWING) || (state == IntentState.WITHDRAWN)) {
+
+            log.info("reconcile: re-submitting {} ({})", key, state);
+            pipeline.submit(intent, IntentKeys.isGatewayKey(key) ? IntentPipeline.Lane.GATEWAY : lane);
+        }
+    }
+
+    private void withdrawIfPresent(Key key) {
+        IntentState state = intentService.getIntentState(key);
+
+        if ((state != null) && (state != IntentState.WITHDRAWING) && (state != IntentState.WITHDRAWN)) {
+            Intent intent = intentService.getIntent(key);
+
+            if (intent != null) {
+                log.info("reconcile: withdrawing {} ({})", key, state);
+                pipeline.withdraw(intent);
+            }
+        }
+    }
+
+    /**
+     * Withdraw any of our application's intents that no owner wants
+     *
+     *   IntentService.getIntentsByAppId() is not available in all releases, so the
+     *   full intent list is filtered by application ID.  This is only done once.
+     */
+    private void withdrawOrphans() {
+        for (Intent intent : intentService.getIntents()) {
+            if (appId.equals(intent.appId()) && !ownerByKey.containsKey(intent.key())) {
+                withdrawIfPresent(intent.key());
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.bcsw.sdnwlan.flows.Flow;
+import org.jboss.netty.util.Timeout;
+import org.onlab.util.Timer;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentListener;
+import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks intents submitted by the sdnWLAN application until they are installed or fail.
+ *
+ * A caller registers interest in intent keys with {@link #whenInstalled} and gets back a
+ * future that completes with 'true' when the intent service reports the intents INSTALLED
+ * or 'false' if any is reported FAILED or WITHDRAWN.  The current state of each intent is
+ * checked on registration, so an install that completed before the caller asked is not
+ * missed.  Futures still outstanding when the tracker is stopped are cancelled.
+ *
+ * Intents submitted for a {@link Flow} also have the flow's lifecycle and statistics updated,
+ * and each tracked flow has a future of its own, returned by {@link #track} or
+ * {@link #getFuture}.  The tracker also keeps totals of install latency and failures for
+ * all flows.  Flows
+ * programmed with forwarding objectives are tracked the same way, by their key, with the
+ * {@link FlowObjectivePipeline} reporting the results.
+ */
+public class IntentTracker implements IntentListener {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ApplicationId appId;
+    private final IntentService intentService;
+
+    // Outstanding installs by intent key
+    private final Map<Key, CompletableFuture<Boolean>> pending = Maps.newConcurrentMap();
+
+    // Flows by the key of the intent that implements them.  Kept until the intent is withdrawn
+    private final Map<Key, Flow> flows = Maps.newConcurrentMap();
+
+    private final AtomicLong installedCount      = new AtomicLong();
+    private final AtomicLong failedCount         = new AtomicLong();
+    private final AtomicLong totalInstallLatency = new AtomicLong();
+    private final AtomicLong maxInstallLatency   = new AtomicLong();
+    private final AtomicLong adoptedCount        = new AtomicLong();
+
+    public IntentTracker(ApplicationId appId, IntentService intentService) {
+        this.appId         = appId;
+        this.intentService = intentService;
+    }
+
+    /**
+     * Start tracking the intent for a flow.  This should be called just before the intent
+     * is submitted (or queued for submission) since the install latency is measured from here.
+     *
+     * @param flow   Flow the intent implements
+     * @param intent Intent to be submitted
+     * @return future completed with 'true' once the intent is installed, or 'false' if it
+     *         fails or is withdrawn first
+     */
+    public CompletableFuture<Boolean> track(Flow flow, Intent intent) {
+        return track(intent.key(), flow);
+    }
+
+    /**
+     * Start tracking a flow by key.  Used for flows programmed with forwarding objectives.
+     *
+     * @param key  Flow key
+     * @param flow Flow
+     * @return future of the flow, see {@link #track(Flow, Intent)}
+     */
+    CompletableFuture<Boolean> track(Key key, Flow flow) {
+
+        // The intent is about to be (re-)submitted, so its current state is not looked at
+
+        CompletableFuture<Boolean> future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+
+        flow.submitted();
+        flows.put(key, flow);
+        return future;
+    }
+
+    /**
+     * Get the future of a flow
+     *
+     * @param key Intent key of the flow
+     * @return future completed with 'true' once the flow is installed, or 'false' if it
+     *         fails or is withdrawn first.  Already completed if the flow has been
+     *         installed or failed, and null if the flow is not tracked.
+     */
+    public CompletableFuture<Boolean> getFuture(Key key) {
+        Flow flow = flows.get(key);
+
+        if (flow == null) {
+            return null;
+        }
+        // Register before looking at the flow state so an event in between is not lost
+
+        CompletableFuture<Boolean> future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+
+        switch (flow.getState()) {
+            case INSTALLED:
+                complete(key, true);
+                break;
+
+            case FAILED:
+            case WITHDRAWN:
+                complete(key, false);
+                break;
+
+            default:
+                break;
+        }
+        return future;
+    }
+
+    /**
+     * An intent was found already installed (left by a previous instance) and was not
+     * submitted.  It is not counted in the install latency totals.
+     *
+     * @param key Intent key
+     */
+    public void adopted(Key key) {
+        Flow flow = flows.get(key);
+
+        if (flow != null && flow.getState() == Flow.State.SUBMITTED) {
+            flow.installed();
+        }
+        adoptedCount.incrementAndGet();
+        complete(key, true);
+    }
+
+    /**
+     * Get the flows being tracked
+     *
+     * @return map of flows by intent key
+     */
+    public Map<Key, Flow> getFlows() {
+        return Collections.unmodifiableMap(flows);
+    }
+
+    /**
+     * Get the flow implemented by an intent
+     *
+     * @param key Intent key
+     * @return flow or null if not tracked
+     */
+    public Flow getFlow(Key key) {
+        return flows.get(key);
+    }
+
+    public long getInstalledCount() {
+        return installedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getAdoptedCount() {
+        return adoptedCount.get();
+    }
+
+    /**
+     * Average time from submission to installation of all installed flows
+     *
+     * @return latency in milliseconds
+     */
+    public long getAverageInstallLatency() {
+        long count = installedCount.get();
+
+        return (count == 0) ? 0 : totalInstallLatency.get() / count;
+    }
+
+    /**
+     * Longest time from submission to installation of any installed flow
+     *
+     * @return latency in milliseconds
+     */
+    public long getMaxInstallLatency() {
+        return maxInstallLatency.get();
+    }
+
+    /**
+     * Get a future that completes once all of the intents are installed.
+     *
+     * @param keys    Intent keys, submitted or about to be
+     * @param timeout Maximum time to wait in milliseconds
+     * @return future completed with 'true' if all intents were installed, 'false'
+     *         if any failed or the timeout expired first, or cancelled if the tracker
+     *         was stopped first
+     */
+    public CompletableFuture<Boolean> whenInstalled(Collection<Key> keys, long timeout) {
+
+        Map<Key, CompletableFuture<Boolean>> waiting = Maps.newHashMap();
+
+        // Register before looking at the current state so an event in between is not lost
+
+        keys.forEach(key -> waiting.put(key, pending.computeIfAbsent(key, k -> new CompletableFuture<>())));
+        keys.forEach(this::checkState);
+
+        List<CompletableFuture<Boolean>> futures = Lists.newArrayList(waiting.values());
+        CompletableFuture<Boolean>       result  = new CompletableFuture<>();
+
+        // A wait cancelled by stop() cancels the result so no one acts on it
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .whenComplete((done, error) -> {
+                    if (error != null) {
+                        result.cancel(false);
+                    } else {
+                        result.complete(futures.stream().allMatch(CompletableFuture::join));
+                    }
+                });
+
+        if (!result.isDone()) {
+            Timeout timer = Timer.getTimer().newTimeout(to -> {
+                if (result.complete(false)) {
+                    log.info("whenInstalled: timed out waiting for {}", keys);
+
+                    // Nothing else will complete these unless a tracked flow still waits on them
+
+                    waiting.forEach((key, future) -> {
+                        if (!flows.containsKey(key)) {
+                            pending.remove(key, future);
+                        }
+                    });
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+
+            result.whenComplete((installed, error) -> timer.cancel());
+        }
+        return result;
+    }
+
+    /**
+     * Complete the future of an intent that is already installed or failed
+     *
+     * @param key Intent key
+     */
+    private void checkState(Key key) {
+        IntentState state = intentService.getIntentState(key);
+
+        if (state == IntentState.INSTALLED) {
+            complete(key, true);
+        } else if (state == IntentState.FAILED) {
+            complete(key, false);
+        }
+    }
+
+    /**
+     * Cancel any outstanding futures.  Dependent actions are not run, so nothing waiting on
+     * an install acts once the tracker is stopped.
+     */
+    public void stop() {
+        pending.values().forEach(future -> future.cancel(false));
+        pending.clear();
+        flows.clear();
+    }
+
+    @Override
+    public boolean isRelevant(IntentEvent event) {
+        return appId.equals(event.subject().appId());
+    }
+
+    @Override
+    public void event(IntentEvent event) {
+        Key  key  = event.subject().key();
+        Flow flow = flows.get(key);
+
+        switch (event.type()) {
+            case INSTALLED:
+                installed(key, flow);
+                break;
+
+            case FAILED:
+                log.warn("event: intent {} failed", key);
+                failed(key, flow);
+                break;
+
+            case WITHDRAWN:
+                withdrawn(key, flow);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A flow was installed
+     *
+     * @param key  Flow key
+     * @param flow Flow or null if not tracked
+     */
+    void installed(Key key, Flow flow) {
+        if (flow != null && flow.getState() == Flow.State.SUBMITTED) {
+            long latency = flow.installed();
+
+            installedCount.incrementAndGet();
+            totalInstallLatency.addAndGet(latency);
+            maxInstallLatency.accumulateAndGet(latency, Math::max);
+        }
+        if (isCurrent(key, flow)) {
+            complete(key, true);
+        }
+    }
+
+    /**
+     * A flow failed to install
+     *
+     * @param key  Flow key
+     * @param flow Flow or null if not tracked
+     */
+    void failed(Key key, Flow flow) {
+        if (flow != null) {
+            flow.failed();
+        }
+        failedCount.incrementAndGet();
+
+        if (isCurrent(key, flow)) {
+            complete(key, false);
+        }
+    }
+
+    /**
+     * A flow was removed.  One re-submitted under the same key since is kept, along with
+     * anyone waiting for it to be installed.
+     *
+     * @param key  Flow key
+     * @param flow Flow or null if not tracked
+     */
+    void withdrawn(Key key, Flow flow) {
+        if (flow == null) {
+            complete(key, false);
+
+        } else if (flow.getState() != Flow.State.SUBMITTED) {
+            flow.withdrawn();
+
+            if (flows.remove(key, flow)) {
+                complete(key, false);
+            }
+        }
+    }
+
+    /**
+     * Is a flow the one now tracked under its key?  A forwarding objective result can
+     * arrive for a flow that has already been replaced, and must not complete the wait
+     * for its replacement.
+     *
+     * @param key  Flow key
+     * @param flow Flow or null if not tracked
+     * @return true if the result is for the current flow of the key
+     */
+    private boolean isCurrent(Key key, Flow flow) {
+        return (flow == null) || (flows.get(key) == flow);
+    }
+
+    private void complete(Key key, boolean installed) {
+        CompletableFuture<Boolean> future = pending.remove(key);
+
+        if (future != null) {
+            future.complete(installed);
+        }
+    }
+}
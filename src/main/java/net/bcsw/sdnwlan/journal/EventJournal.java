@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.journal;
+
+import com.google.common.collect.Lists;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.host.HostEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Append-only binary journal of the host and device events received by sdnWLAN.
+ *
+ * Events are encoded on the listener thread and queued.  A single writer thread drains the
+ * queue and appends each batch with one gathering write, so the event thread never waits
+ * on the disk.  If the writer falls behind and the queue fills, events are dropped and
+ * counted rather than blocking event delivery.
+ *
+ * The journal is split into numbered segment files.  When a segment reaches its size limit
+ * a new one is started and the oldest is deleted once there are more than the maximum, so
+ * disk use is bounded to about segmentSize * maxSegments.  A new segment is always started
+ * when the journal is opened so a segment torn by a crash is never appended to.
+ *
+ * Each segment starts with the state at the time (gateway locations, mobile host state and
+ * the host table) so a replay of what is left after older segments were deleted still
+ * knows where the gateways and hosts are.
+ *
+ * See {@link JournalReader} to read a journal back.
+ */
+public class EventJournal {
+
+    static final String SEGMENT_PREFIX = "events-";
+    static final String SEGMENT_SUFFIX = ".jnl";
+
+    // Most events queued for the writer before new ones are dropped
+    private static final int QUEUE_CAPACITY = 65536;
+
+    // Most records written with a single gathering write
+    private static final int MAX_BATCH = 1024;
+
+    private static final long POLL_MSEC  = 100;
+    private static final long CLOSE_MSEC = 5000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File                   directory;
+    private final long                   segmentSize;
+    private final int                    maxSegments;
+    private final Supplier<JournalState> state;
+
+    private final BlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final ExecutorService           writer;
+    private volatile boolean                running = true;
+
+    private FileChannel channel;                // Only used by the writer thread
+    private long        segment;
+    private long        segmentStart;           // Position of the first event in the segment
+
+    private final AtomicLong appendedCount = new AtomicLong();
+    private final AtomicLong droppedCount  = new AtomicLong();
+    private final AtomicLong writtenBytes  = new AtomicLong();
+
+    /**
+     * Open a journal and start its writer
+     *
+     * @param directory   Directory for the segment files
+     * @param segmentSize Size at which a segment is rotated, in bytes.  At least twice
+     *                    JournalCodec.MAX_RECORD_SIZE
+     * @param maxSegments Most segment files kept, at least 1
+     * @param state       Supplies the state written at the head of each segment
+     * @throws IOException if the directory or first segment can not be created
+     */
+    public EventJournal(File directory, long segmentSize, int maxSegments,
+                        Supplier<JournalState> state) throws IOException {
+        this.directory   = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.state       = state;
+
+        Files.createDirectories(directory.toPath());
+
+        List<File> existing = segments(directory);
+
+        segment = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1));
+        rotate();
+
+        writer = Executors.newSingleThreadExecutor(groupedThreads("bcsw/sdnwlan", "journal"));
+        writer.execute(this::writeLoop);
+
+        log.info("Journaling events to {}, {} segments of {} bytes", directory, this.maxSegments, this.segmentSize);
+    }
+
+    /**
+     * Get the default journal directory, in the sdnwlan directory of the karaf data directory
+     *
+     * @return journal directory
+     */
+    public static File defaultDirectory() {
+        return new File(new File(System.getProperty("karaf.data", "."), "sdnwlan"), "journal");
+    }
+
+    public File getDirectory()      { return directory; }
+    public long getSegmentSize()    { return segmentSize; }
+    public int getMaxSegments()     { return maxSegments; }
+    public long getAppendedCount()  { return appendedCount.get(); }
+    public long getDroppedCount()   { return droppedCount.get(); }
+    public long getWrittenBytes()   { return writtenBytes.get(); }
+
+    /**
+     * Append a host event
+     *
+     * @param event Event
+     */
+    public void append(HostEvent event) {
+        try {
+            enqueue(JournalCodec.encode(event));
+        } catch (BufferOverflowException e) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Append a device event
+     *
+     * @param event Event
+     */
+    public void append(DeviceEvent event) {
+        try {
+            enqueue(JournalCodec.encode(event));
+        } catch (BufferOverflowException e) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private void enqueue(ByteBuffer record) {
+        if (running && queue.offer(record)) {
+            appendedCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stop the writer once everything queued has been written and close the journal
+     */
+    public void close() {
+        running = false;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_MSEC, TimeUnit.MILLISECONDS)) {
+                log.warn("close: journal writer did not stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Journal closed, events appended: {}, dropped: {}, bytes written: {}",
+                 getAppendedCount(), getDroppedCount(), getWrittenBytes());
+    }
+
+    /**
+     * Writer thread.  Runs until closed and the queue is empty.
+     */
+    private void writeLoop() {
+        List<ByteBuffer> batch = Lists.newArrayListWithCapacity(MAX_BATCH);
+
+        try {
+            while (running || !queue.isEmpty()) {
+                ByteBuffer first = queue.poll(POLL_MSEC, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Journal write failed, journaling stopped: {}", e.toString());
+            running = false;
+            queue.clear();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void write(List<ByteBuffer> batch) throws IOException {
+        long batchBytes = 0;
+
+        for (ByteBuffer record : batch) {
+            batchBytes += record.remaining();
+        }
+        // A batch larger than a whole segment is written to a fresh one rather than rotating again
+
+        if ((channel.position() > segmentStart) && (channel.position() + batchBytes > segmentSize)) {
+            rotate();
+        }
+        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+
+        while (batchBytes > 0) {
+            long written = channel.write(buffers);
+
+            batchBytes -= written;
+            writtenBytes.addAndGet(written);
+        }
+    }
+
+    /**
+     * Start a new segment and delete the oldest ones over the limit
+     *
+     * @throws IOException on error creating the segment
+     */
+    private void rotate() throws IOException {
+        closeChannel();
+
+        segment++;
+
+        File file = new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(JournalCodec.SEGMENT_HEADER_SIZE);
+
+        header.putInt(JournalCodec.MAGIC).putInt(JournalCodec.VERSION).flip();
+        channel.write(header);
+
+        writeState();
+        segmentStart = channel.position();
+
+        List<File> existing = segments(directory);
+
+        for (int i = 0; i < existing.size() - maxSegments; i++) {
+            if (!existing.get(i).delete()) {
+                log.warn("rotate: unable to delete {}", existing.get(i));
+            }
+        }
+    }
+
+    /**
+     * Write the current state as the first record of the segment.  A segment without one is
+     * still read, a replay from it just starts without the earlier state.
+     *
+     * @throws IOException on error writing the record
+     */
+    private void writeState() throws IOException {
+        ByteBuffer record;
+
+        try {
+            record = JournalCodec.encode(state.get());
+
+        } catch (RuntimeException e) {
+            log.warn("writeState: unable to capture the state for segment {}: {}", segment, e.toString());
+            return;
+        }
+        while (record.hasRemaining()) {
+            writtenBytes.addAndGet(channel.write(record));
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Unable to close journal segment: {}", e.toString());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Get the segment files of a journal, oldest first
+     *
+     * @param directory Journal directory
+     * @return Segment files in order
+     */
+    static List<File> segments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) &&
+                                                          name.endsWith(SEGMENT_SUFFIX));
+        List<File> result = Lists.newArrayList();
+
+        if (files != null) {
+            for (File file : files) {
+                if (segmentNumber(file) >= 0) {
+                    result.add(file);
+                }
+            }
+        }
+        result.sort((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+        return result;
+    }
+
+    private static long segmentNumber(File file) {
+        String name = file.getName();
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.journal;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.bcsw.sdnwlan.storage.LocalSnapshot;
+import net.bcsw.sdnwlan.storage.Snapshot;
+import org.onlab.packet.ChassisId;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.event.Event;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.provider.ProviderId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Binary encoding of the journal records.
+ *
+ * Each record is a length followed by the event:
+ *
+ *   int length, byte kind, byte type, long time, payload...
+ *
+ * Only what the sdnWLAN listeners look at is kept: for a host its MAC, VLAN, location and
+ * IP addresses (and those of the previous subject when there is one), for a device its ID
+ * and type and, for port events, the port number and state.  Event types are written as
+ * their ordinal so a journal must be replayed against the ONOS version that wrote it.
+ *
+ * The first record of each segment is the state when the segment was started:
+ *
+ *   int length, byte kind, byte 0, long time, int snapshot length, snapshot, int host count, hosts...
+ *
+ * where the snapshot is encoded as in the local snapshot file and each host as in a host
+ * event.
+ */
+final class JournalCodec {
+
+    static final int MAGIC   = 0x53574c4a;     // "SWLJ"
+    static final int VERSION = 2;
+
+    static final int SEGMENT_HEADER_SIZE = 8;
+
+    private static final byte KIND_HOST   = 0;
+    private static final byte KIND_DEVICE = 1;
+    private static final byte KIND_STATE  = 2;
+
+    // Largest event record expected.  A host with this many addresses is not a mobile host.
+    static final int MAX_RECORD_SIZE = 4096;
+
+    private static final ProviderId PID = ProviderId.NONE;
+
+    // Events are encoded into a per-thread scratch buffer and copied out at their exact size
+    private static final ThreadLocal<ByteBuffer> SCRATCH =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_SIZE));
+
+    /**
+     * Host event with a previous subject and the time it was recorded.  HostEvent has no
+     * constructor taking both, and a replay needs the time of each move.
+     */
+    private static final class RecordedHostEvent extends HostEvent {
+        private final long time;
+
+        private RecordedHostEvent(Type type, Host host, Host prev, long time) {
+            super(type, host, prev);
+            this.time = time;
+        }
+
+        @Override
+        public long time() {
+            return time;
+        }
+    }
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Encode a host event
+     *
+     * @param event Event
+     * @return Encoded record including its length
+     * @throws java.nio.BufferOverflowException if larger than MAX_RECORD_SIZE
+     */
+    static ByteBuffer encode(HostEvent event) {
+        ByteBuffer out = SCRATCH.get();
+
+        out.clear().position(4);
+        out.put(KIND_HOST);
+        out.put((byte) event.type().ordinal());
+        out.putLong(event.time());
+
+        putHost(out, event.subject());
+
+        Host prev = event.prevSubject();
+
+        out.put((byte) ((prev != null) ? 1 : 0));
+        if (prev != null) {
+            putHost(out, prev);
+        }
+        return finish(out);
+    }
+
+    /**
+     * Encode a device event
+     *
+     * @param event Event
+     * @return Encoded record including its length
+     */
+    static ByteBuffer encode(DeviceEvent event) {
+        ByteBuffer out = SCRATCH.get();
+
+        out.clear().position(4);
+        out.put(KIND_DEVICE);
+        out.put((byte) event.type().ordinal());
+        out.putLong(event.time());
+
+        putString(out, event.subject().id().toString());
+        out.put((byte) event.subject().type().ordinal());
+
+        Port port = event.port();
+
+        out.put((byte) ((port != null) ? 1 : 0));
+        if (port != null) {
+            out.putLong(port.number().toLong());
+            out.put((byte) (port.isEnabled() ? 1 : 0));
+        }
+        return finish(out);
+    }
+
+    /**
+     * Encode the state at the head of a segment.  The record is sized to fit, it is not
+     * limited to MAX_RECORD_SIZE.
+     *
+     * @param state Journal state
+     * @return Encoded record including its length
+     * @throws IOException on error encoding the snapshot
+     */
+    static ByteBuffer encode(JournalState state) throws IOException {
+        byte[] snapshot = LocalSnapshot.encode(state.getSnapshot());
+        int    size     = 4 + 1 + 1 + 8 + 4 + snapshot.length + 4;
+
+        for (Host host : state.getHosts()) {
+            size += hostSize(host);
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+
+        out.position(4);
+        out.put(KIND_STATE);
+        out.put((byte) 0);
+        out.putLong(state.getSnapshot().getTime());
+
+        out.putInt(snapshot.length);
+        out.put(snapshot);
+
+        out.putInt(state.getHosts().size());
+        state.getHosts().forEach(host -> putHost(out, host));
+
+        out.putInt(0, out.position() - 4);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Is a record the state at the head of a segment?  The length has already been read.
+     *
+     * @param in Record body
+     * @return true for a state record
+     */
+    static boolean isState(ByteBuffer in) {
+        return in.get(in.position()) == KIND_STATE;
+    }
+
+    /**
+     * Decode the state at the head of a segment.  The length has already been read.
+     *
+     * @param in Record body
+     * @return Journal state
+     */
+    static JournalState decodeState(ByteBuffer in) {
+        if (in.get() != KIND_STATE) {
+            throw new IllegalArgumentException("Not a journal state record");
+        }
+        in.get();
+        in.getLong();
+
+        int        length   = in.getInt();
+        ByteBuffer snapshot = in.slice();
+
+        snapshot.limit(length);
+        in.position(in.position() + length);
+
+        Snapshot   saved = LocalSnapshot.decode(snapshot);
+        int        count = in.getInt();
+        List<Host> hosts = Lists.newArrayListWithCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            hosts.add(getHost(in));
+        }
+        return new JournalState(saved, hosts);
+    }
+
+    /**
+     * Decode the event of a record.  The length has already been read.
+     *
+     * @param in Record body
+     * @return HostEvent or DeviceEvent
+     */
+    static Event<?, ?> decode(ByteBuffer in) {
+        byte kind = in.get();
+        int  type = in.get();
+        long time = in.getLong();
+
+        if (kind == KIND_HOST) {
+            Host host = getHost(in);
+            Host prev = (in.get() != 0) ? getHost(in) : null;
+
+            HostEvent.Type eventType = HostEvent.Type.values()[type];
+
+            return (prev != null) ? new RecordedHostEvent(eventType, host, prev, time)
+                                  : new HostEvent(eventType, host, time);
+
+        } else if (kind == KIND_DEVICE) {
+            DeviceId    deviceId   = DeviceId.deviceId(getString(in));
+            Device.Type deviceType = Device.Type.values()[in.get()];
+            Device      device     = new DefaultDevice(PID, deviceId, deviceType, "", "", "", "", new ChassisId());
+            Port        port       = null;
+
+            if (in.get() != 0) {
+                PortNumber number  = PortNumber.portNumber(in.getLong());
+                boolean    enabled = in.get() != 0;
+
+                port = new DefaultPort(device, number, enabled);
+            }
+            return new DeviceEvent(DeviceEvent.Type.values()[type], device, port, time);
+        }
+        throw new IllegalArgumentException("Unknown journal record kind " + kind);
+    }
+
+    private static ByteBuffer finish(ByteBuffer out) {
+        out.putInt(0, out.position() - 4);
+        return ByteBuffer.wrap(Arrays.copyOf(out.array(), out.position()));
+    }
+
+    private static int hostSize(Host host) {
+        int size = 8 + 2 + 2 + host.location().deviceId().toString().getBytes(StandardCharsets.UTF_8).length +
+                8 + 8 + 2;
+
+        for (IpAddress ip : host.ipAddresses()) {
+            size += 1 + ip.toOctets().length;
+        }
+        return size;
+    }
+
+    private static void putHost(ByteBuffer out, Host host) {
+        HostLocation location = host.location();
+
+        out.putLong(host.mac().toLong());
+        out.putShort(host.vlan().toShort());
+        putString(out, location.deviceId().toString());
+        out.putLong(location.port().toLong());
+        out.putLong(location.time());
+
+        out.putShort((short) host.ipAddresses().size());
+        host.ipAddresses().forEach(ip -> {
+            byte[] octets = ip.toOctets();
+
+            out.put((byte) octets.length);
+            out.put(octets);
+        });
+    }
+
+    private static Host getHost(ByteBuffer in) {
+        MacAddress   mac      = MacAddress.valueOf(in.getLong());
+        VlanId       vlan     = VlanId.vlanId(in.getShort());
+        DeviceId     deviceId = DeviceId.deviceId(getString(in));
+        PortNumber   port     = PortNumber.portNumber(in.getLong());
+        HostLocation location = new HostLocation(deviceId, port, in.getLong());
+
+        int            count = in.getShort() & 0xffff;
+        Set<IpAddress> ips   = Sets.newHashSetWithExpectedSize(count);
+
+        for (int i = 0; i < count; i++) {
+            byte[] octets = new byte[in.get()];
+
+            in.get(octets);
+            ips.add(IpAddress.valueOf((octets.length == IpAddress.INET_BYTE_LENGTH) ? IpAddress.Version.INET
+                                                                                    : IpAddress.Version.INET6,
+                                      octets));
+        }
+        return new DefaultHost(PID, HostId.hostId(mac, vlan), mac, vlan, location, ips);
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xffff];
+
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.journal;
+
+import org.onosproject.event.Event;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.host.HostEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the events of a journal written by {@link EventJournal}, oldest first.
+ *
+ * Each segment is memory mapped and decoded in place.  A record cut short at the end of a
+ * segment (the writer was stopped part way through) ends that segment and reading goes on
+ * with the next one.
+ *
+ * The state at the head of each segment is passed over when reading the events.  Use
+ * {@link #readState()} to get the state the oldest segment starts from.
+ */
+public class JournalReader {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+
+    private long skippedCount = 0;
+
+    /**
+     * Create a reader
+     *
+     * @param directory Journal directory
+     */
+    public JournalReader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the number of records that could not be decoded in the last read
+     *
+     * @return skipped record count
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Read every event in the journal
+     *
+     * @param hostEvents   Called for each host event
+     * @param deviceEvents Called for each device event
+     * @return Number of events read
+     * @throws IOException on error reading a segment
+     */
+    public long read(Consumer<HostEvent> hostEvents, Consumer<DeviceEvent> deviceEvents) throws IOException {
+        List<File> segments = EventJournal.segments(directory);
+        long       count    = 0;
+
+        skippedCount = 0;
+
+        for (File segment : segments) {
+            count += readSegment(segment, hostEvents, deviceEvents);
+        }
+        log.info("read: {} events from {} segments in {}, {} skipped", count, segments.size(),
+                 directory, skippedCount);
+        return count;
+    }
+
+    /**
+     * Read the state at the head of the oldest segment, the state the events of the journal
+     * are applied to
+     *
+     * @return State or null if the oldest segment does not have one
+     * @throws IOException on error reading the segment
+     */
+    public JournalState readState() throws IOException {
+        for (File segment : EventJournal.segments(directory)) {
+            try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+
+                ByteBuffer in = map(segment, channel);
+
+                if (in == null) {
+                    continue;
+                }
+                int length = (in.remaining() >= 4) ? in.getInt() : 0;
+
+                if ((length <= 0) || (length > in.remaining())) {
+                    return null;
+                }
+                in.limit(in.position() + length);
+
+                if (!JournalCodec.isState(in)) {
+                    return null;
+                }
+                try {
+                    return JournalCodec.decodeState(in);
+
+                } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                    log.warn("readState: {} has a damaged state record: {}", segment, e.toString());
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Map a segment and check its header
+     *
+     * @return Segment positioned after the header, null if not a segment of this version
+     */
+    private ByteBuffer map(File segment, FileChannel channel) throws IOException {
+        if (channel.size() < JournalCodec.SEGMENT_HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if ((in.getInt() != JournalCodec.MAGIC) || (in.getInt() != JournalCodec.VERSION)) {
+            log.warn("{} is not a journal segment of this version, skipped", segment);
+            return null;
+        }
+        return in;
+    }
+
+    private long readSegment(File segment, Consumer<HostEvent> hostEvents,
+                             Consumer<DeviceEvent> deviceEvents) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+
+            ByteBuffer in = map(segment, channel);
+
+            if (in == null) {
+                return 0;
+            }
+            long count = 0;
+
+            while (in.remaining() >= 4) {
+                int length = in.getInt();
+
+                if ((length <= 0) || (length > in.remaining())) {
+                    log.warn("readSegment: {} ends with a partial record", segment);
+                    break;
+                }
+                ByteBuffer record = in.slice();
+
+                record.limit(length);
+                in.position(in.position() + length);
+
+                if (JournalCodec.isState(record)) {
+                    continue;
+                }
+                Event<?, ?> event;
+
+                try {
+                    event = JournalCodec.decode(record);
+
+                } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                    skippedCount++;
+                    continue;
+                }
+                if (event instanceof HostEvent) {
+                    hostEvents.accept((HostEvent) event);
+                } else {
+                    deviceEvents.accept((DeviceEvent) event);
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.journal;
+
+import com.google.common.collect.ImmutableList;
+import net.bcsw.sdnwlan.storage.Snapshot;
+import org.onosproject.net.Host;
+
+import java.util.List;
+
+/**
+ * The state written at the head of each journal segment: the local snapshot (gateway
+ * locations and mobile host state) and the hosts known to the host service.  A replay of
+ * the journal starts from the state of its oldest segment, since segment rotation deletes
+ * the older events that built it.
+ * <p>
+ * Instances are immutable.
+ */
+public final class JournalState {
+
+    private final Snapshot   snapshot;
+    private final List<Host> hosts;
+
+    /**
+     * Create a journal state
+     *
+     * @param snapshot Gateway locations and mobile host state
+     * @param hosts    Hosts known to the host service
+     */
+    public JournalState(Snapshot snapshot, List<Host> hosts) {
+        this.snapshot = snapshot;
+        this.hosts    = ImmutableList.copyOf(hosts);
+    }
+
+    public Snapshot getSnapshot() { return snapshot; }
+    public List<Host> getHosts()  { return hosts; }
+}
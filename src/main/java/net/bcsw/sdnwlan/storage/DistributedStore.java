@@ -1,102 +1,319 @@
 package net.bcsw.sdnwlan.storage;
 
+import net.bcsw.sdnwlan.IngressVlans;
+import net.bcsw.sdnwlan.IpGatewayAndMask;
 import net.bcsw.sdnwlan.config.AccessPointConfig;
+import net.bcsw.sdnwlan.config.GatewayConfig;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.felix.scr.annotations.*;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.store.AbstractStore;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.ConsistentMap;
+import org.onosproject.store.service.EventuallyConsistentMap;
+import org.onosproject.store.service.MapEvent;
+import org.onosproject.store.service.MapEventListener;
+import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
+import org.onosproject.store.service.Versioned;
+import org.onosproject.store.service.WallClockTimestamp;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
-//import org.slf4j.LoggerFactory;
 
 
 /**
  * Implements the distributed store for the sdnWLAN Service
  * <p>
+ * Access point configurations are kept in a strongly consistent map so they survive a
+ * restart of the application (or controller) and are shared by all instances of a cluster.
+ * The map listener passes changes made by other instances to the store delegate.  Our own
+ * changes are recognized by comparing the event with the last value we wrote for the key
+ * (the write may return after its event is delivered, so its version can not be used) and
+ * are not echoed back.  An event that matches our own last write changes nothing locally
+ * even if another instance sent it.
  * <p>
- * TODO:  THIS IS A PLACEHOLDER FILE ONLY.  ONCE WE NEED PERSISTENT STORAGE, IT WILL NEED SOME WORK
+ * The saved access point configurations are served from a local near cache that is loaded
+ * on first use and kept current by our own writes and the map events, so they do not cost
+ * a round trip to the cluster and a deserialization each time.  The cache is read again
+ * once it is older than a few minutes in case map events were missed.
+ * <p>
+ * Mobile host state changes far more often and is kept in an eventually consistent map.
+ * Reads are local and writes are replicated to the other instances by anti-entropy, so a
+ * host move never waits on a consensus round.  The last write (by wall clock) wins.
  */
 @Component(immediate = true)
 @Service
-public class DistributedStore extends AbstractStore implements SDNWLANStore {
+public class DistributedStore extends AbstractStore<SDNWLANStoreEvent, SDNWLANStoreDelegate>
+        implements SDNWLANStore {
+
+    // Shared with the application so the map is purged when it is uninstalled
+    private static final String APP_NAME = "net.bcsw.sdnwlan";
+    private static final String ACCESS_POINT_MAP = "sdnwlan-access-points";
+    private static final String MOBILE_HOST_MAP  = "sdnwlan-mobile-hosts";
+
+    // Age at which the access point cache is read again, in case map events were missed
+    private static final long ACCESS_POINT_CACHE_MAX_AGE_MSEC = 300000;
 
-    private static final String APP_NAME = "net.bcsw.sdnwlan.storage";
     private static Logger log = LoggerFactory.getLogger(DistributedStore.class);
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected StorageService storageService;
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
-    private ConcurrentMap<MacAddress, AccessPointConfig> accessPoints;
+    private static final KryoNamespace SERIALIZER = KryoNamespace.newBuilder()
+            .register(KryoNamespaces.API)
+            .register(new IngressVlansSerializer(), IngressVlans.class)
+            .register(new IpGatewayAndMaskSerializer(), IpGatewayAndMask.class)
+            .register(GatewayConfig.class)
+            .register(AccessPointConfig.class)
+            .build();
+
+    private static final KryoNamespace.Builder HOST_SERIALIZER = KryoNamespace.newBuilder()
+            .register(KryoNamespaces.API)
+            .register(new MobileHostStateSerializer(), MobileHostState.class);
+
+    private ConsistentMap<MacAddress, AccessPointConfig> accessPoints;
+
+    private EventuallyConsistentMap<MacAddress, MobileHostState> mobileHosts;
+
+    private final MapEventListener<MacAddress, AccessPointConfig> accessPointListener =
+            new InternalAccessPointListener();
+
+    private final NearCache<MacAddress, AccessPointConfig> accessPointCache =
+            new NearCache<>(ACCESS_POINT_CACHE_MAX_AGE_MSEC);
+
+    // Last local write to each entry not yet seen as a map event.  Empty for a removal.
+    private final Map<MacAddress, Optional<AccessPointConfig>> localWrites = Maps.newConcurrentMap();
 
     @Activate
     public void activate() {
-        log.info("Started");
-
-        accessPoints = Maps.newConcurrentMap();
+        ApplicationId appId = coreService.registerApplication(APP_NAME);
 
-        // TODO test this out to see if it saves the entry correctly and see if there are ways to improve serialization
-        //        KryoNamespace.Builder serializer = KryoNamespace.newBuilder()
-        //                .register(KryoNamespaces.API)
-        //                .register(AccessPointConfig.class)
-        //                .register(MacAddress.class);
-        //
-        //        accessPoints = storageService.<MacAddress, AccessPointConfig>consistentMapBuilder()
-        //                .withSerializer(Serializer.using(serializer.build()))
-        //                .withName("sdnwlan-access-points")
-        //                .withApplicationId(appId)
-        //                .withPurgeOnUninstall()
-        //                .build();
+        accessPoints = storageService.<MacAddress, AccessPointConfig>consistentMapBuilder()
+                .withSerializer(Serializer.using(SERIALIZER))
+                .withName(ACCESS_POINT_MAP)
+                .withApplicationId(appId)
+                .withPurgeOnUninstall()
+                .build();
 
-        // TODO add a MapEvent Listener subscription here (and implement interface near bottom of file
+        accessPointCache.clear();
+        accessPoints.addListener(accessPointListener);
 
-        // TODO Also look at DHCP app and see how they do things..
+        mobileHosts = storageService.<MacAddress, MobileHostState>eventuallyConsistentMapBuilder()
+                .withSerializer(HOST_SERIALIZER)
+                .withName(MOBILE_HOST_MAP)
+                .withTimestampProvider((mac, state) -> new WallClockTimestamp())
+                .build();
 
-        // speed if need/required.
+        log.info("Started, {} access points and {} mobile hosts saved", accessPoints.size(), mobileHosts.size());
     }
 
     @Deactivate
     public void deactivate() {
-        log.info("Stopped");
+        accessPoints.removeListener(accessPointListener);
+        localWrites.clear();
+
+        log.info("Access point cache hits: {}, misses: {}", accessPointCache.getHitCount(),
+                 accessPointCache.getMissCount());
+        accessPointCache.clear();
 
+        mobileHosts.destroy();
+
+        log.info("Stopped");
     }
 
     /**
-     * Save an access Point
+     * Save an access Point.  Any previously saved configuration for the same MAC
+     * address is replaced.
      *
-     * @param accessPoint TODO: Document
+     * @param accessPoint Access point configuration to save
      */
+    @Override
     public void putAccessPoint(AccessPointConfig accessPoint) {
-        // TODO Implement
+        AccessPointConfig config = snapshot(accessPoint);
+
+        localWrites.put(accessPoint.getMacAddress(), Optional.of(config));
+
+        Versioned<AccessPointConfig> saved = accessPoints.putAndGet(accessPoint.getMacAddress(), config);
+
+        if (saved != null) {
+            accessPointCache.update(accessPoint.getMacAddress(), saved);
+        }
     }
 
     /**
      * Remove an access Point
      *
-     * @param accessPoint TODO: Document
+     * @param accessPoint Access point to remove (only the MAC address is used)
      */
+    @Override
     public void removeAccessPoint(AccessPointConfig accessPoint) {
-        // TODO Implement
+        localWrites.put(accessPoint.getMacAddress(), Optional.empty());
+
+        Versioned<AccessPointConfig> removed = accessPoints.remove(accessPoint.getMacAddress());
+
+        if (removed != null) {
+            accessPointCache.remove(accessPoint.getMacAddress(), removed);
+        }
     }
 
     /**
-     * Get a list of current access points saved to the store
+     * Get a list of current access points saved to the store.  The whole map is read
+     * once and then served from the near cache.
      *
      * @return list of access points
      */
+    @Override
     public List<AccessPointConfig> getAccessPoints() {
+        return accessPointCache.values(() -> {
+            Map<MacAddress, Versioned<AccessPointConfig>> entries = Maps.newHashMap();
+
+            accessPoints.entrySet().forEach(entry -> entries.put(entry.getKey(), entry.getValue()));
+
+            return entries;
+        });
+    }
+
+    /**
+     * Copy just the configuration of an access point (it may be a live AccessPoint) into
+     * plain collections that the serializer knows about.
+     *
+     * @param config Access point configuration
+     * @return configuration ready to be saved
+     */
+    private static AccessPointConfig snapshot(AccessPointConfig config) {
+        Map<IpGatewayAndMask, List<VlanId>> otherVids = Maps.newHashMap();
 
-        // TODO Implement
+        config.getOtherVids().forEach((gateway, vids) -> otherVids.put(gateway, Lists.newArrayList(vids)));
 
-        return null;
+        return new AccessPointConfig(config.getName(), config.getMacAddress(), config.getIngressVlans(),
+                                     config.getDefaultGatewayList(),
+                                     config.getLongitude(), config.getLatitude(), config.getAltitude(),
+                                     otherVids, Lists.newArrayList(config.getConnections()));
     }
 
+    /**
+     * Keep the near cache current and pass access point changes made by other controller
+     * instances to the delegate
+     */
+    private class InternalAccessPointListener implements MapEventListener<MacAddress, AccessPointConfig> {
+        @Override
+        public void event(MapEvent<MacAddress, AccessPointConfig> event) {
+            Versioned<AccessPointConfig> value = event.value();
+
+            // Every change, including our own, goes to the near cache
+
+            accessPointCache.event(event);
+
+            if ((value == null) || isLocalWrite(event)) {
+                return;
+            }
+            SDNWLANStoreEvent.Type type;
+
+            switch (event.type()) {
+                case INSERT:
+                    type = SDNWLANStoreEvent.Type.ACCESS_POINT_ADDED;
+                    break;
+                case UPDATE:
+                    type = SDNWLANStoreEvent.Type.ACCESS_POINT_UPDATED;
+                    break;
+                case REMOVE:
+                    type = SDNWLANStoreEvent.Type.ACCESS_POINT_REMOVED;
+                    break;
+                default:
+                    return;
+            }
+            log.info("Access point {} changed by another instance: {}", event.key(), type);
 
-    // TODO: Add put/remove/get for mobile hosts as well if needed
+            notifyDelegate(new SDNWLANStoreEvent(type, value.value()));
+        }
+
+        /**
+         * Is an event the echo of our own last write to its key?
+         *
+         * @param event Map event
+         * @return true if the event matches the last local write
+         */
+        private boolean isLocalWrite(MapEvent<MacAddress, AccessPointConfig> event) {
+            Optional<AccessPointConfig> written = localWrites.get(event.key());
+
+            if (written == null) {
+                return false;
+            }
+            boolean echo = (event.type() == MapEvent.Type.REMOVE) ? !written.isPresent() :
+                    (written.isPresent() && written.get().sameConfig(event.value().value()));
+
+            if (echo) {
+                localWrites.remove(event.key(), written);
+            }
+            return echo;
+        }
+    }
+
+    /**
+     * Save the state of a mobile host.  Mobile host state is eventually consistent: the
+     * write is applied locally and replicated to the other instances in the background.
+     *
+     * @param host Mobile host state
+     */
+    @Override
+    public void putMobileHost(MobileHostState host) {
+        mobileHosts.put(host.getMacAddress(), host);
+    }
+
+    /**
+     * Save the state of a batch of mobile hosts.  The batch is replicated to the other
+     * instances together.
+     *
+     * @param hosts Mobile host state by MAC address
+     */
+    @Override
+    public void putMobileHosts(Map<MacAddress, MobileHostState> hosts) {
+        mobileHosts.putAll(hosts);
+    }
+
+    /**
+     * Remove the state of a mobile host
+     *
+     * @param mac MAC address of the host
+     */
+    @Override
+    public void removeMobileHost(MacAddress mac) {
+        mobileHosts.remove(mac);
+    }
+
+    /**
+     * Get the saved state of a mobile host.  This is a local read.
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host state or null if not found
+     */
+    @Override
+    public MobileHostState getMobileHost(MacAddress mac) {
+        return mobileHosts.get(mac);
+    }
+
+    /**
+     * Get the saved state of all mobile hosts.  This is a local read.
+     *
+     * @return Mobile host state by MAC address
+     */
+    @Override
+    public Map<MacAddress, MobileHostState> getMobileHosts() {
+        Map<MacAddress, MobileHostState> result = Maps.newHashMap();
+
+        mobileHosts.entrySet().forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+
+        return result;
+    }
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import com.google.common.collect.Maps;
+import org.onlab.packet.MacAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Write-behind layer for the mobile host state kept in the store.
+ *
+ * Changes are held per MAC address and written to the store in a batch once per flush
+ * interval, so a host that moves many times within an interval costs a single store write.
+ * A change is at most one interval (plus the time to write the batch) behind in the store,
+ * and a flush is started early if too many hosts are pending.  Reads look at the pending
+ * changes first so the application always sees its own writes.
+ *
+ * All flushes run on a single thread so batches reach the store in order.  An interval of
+ * zero writes every change straight through.  Anything pending when the writer is switched
+ * to write through is flushed first, and write through and flushes never overlap, so an old
+ * pending change can not land on top of a newer one.
+ */
+public class HostStateWriter {
+
+    // Pending hosts that start a flush before the interval is up
+    private static final int MAX_PENDING = 10000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final SDNWLANStore store;
+
+    // Latest change of each host not yet written.  An empty value is a removal.
+    private final Map<MacAddress, Optional<MobileHostState>> pending = Maps.newConcurrentMap();
+
+    private final ScheduledExecutorService executor =
+            newSingleThreadScheduledExecutor(groupedThreads("bcsw/sdnwlan", "host-writer"));
+
+    private ScheduledFuture<?> task;
+    private volatile int       interval = 0;
+
+    // Held while writing so a write through never overlaps a flush
+    private final Object writeLock = new Object();
+
+    // Set while an early flush is queued so only one is
+    private final AtomicBoolean earlyFlush = new AtomicBoolean();
+
+    private final AtomicLong updateCount = new AtomicLong();
+    private final AtomicLong writeCount  = new AtomicLong();
+    private final AtomicLong flushCount  = new AtomicLong();
+
+    /**
+     * Create a writer for a store
+     *
+     * @param store Store the host state is written to
+     */
+    public HostStateWriter(SDNWLANStore store) {
+        this.store = store;
+    }
+
+    public long getUpdateCount() { return updateCount.get(); }
+    public long getWriteCount()  { return writeCount.get(); }
+    public long getFlushCount()  { return flushCount.get(); }
+
+    /**
+     * Set the flush interval.  Anything pending is written at the new interval, or before
+     * returning when switching to write through.
+     *
+     * @param interval Interval in milliseconds, 0 to write through
+     */
+    public synchronized void configure(int interval) {
+        if (interval == this.interval) {
+            return;
+        }
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        this.interval = interval;
+
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (interval > 0) {
+            task = executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+            return;
+        }
+        try {
+            executor.submit(this::flush).get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("configure: flush failed: {}", e.getCause().toString());
+        }
+    }
+
+    /**
+     * Save the state of a mobile host
+     *
+     * @param host Mobile host state
+     */
+    public void put(MobileHostState host) {
+        update(host.getMacAddress(), Optional.of(host));
+    }
+
+    /**
+     * Remove the state of a mobile host
+     *
+     * @param mac MAC address of the host
+     */
+    public void remove(MacAddress mac) {
+        update(mac, Optional.empty());
+    }
+
+    /**
+     * Get the state of a mobile host, including any change not yet written
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host state or null if not found
+     */
+    public MobileHostState get(MacAddress mac) {
+        Optional<MobileHostState> change = pending.get(mac);
+
+        return (change != null) ? change.orElse(null) : store.getMobileHost(mac);
+    }
+
+    private void update(MacAddress mac, Optional<MobileHostState> change) {
+        updateCount.incrementAndGet();
+
+        if (interval <= 0 || executor.isShutdown()) {
+            synchronized (writeLock) {
+                pending.remove(mac);
+                write(mac, change);
+            }
+            return;
+        }
+        pending.put(mac, change);
+
+        // Switched to write through since the check above, do not leave this behind
+
+        if (interval <= 0) {
+            flush();
+            return;
+        }
+        if ((pending.size() >= MAX_PENDING) && earlyFlush.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                earlyFlush.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Write everything pending to the store
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            Map<MacAddress, Optional<MobileHostState>> flushed = Maps.newHashMap(pending);
+            Map<MacAddress, MobileHostState>           batch   = Maps.newHashMap();
+
+            flushed.forEach((mac, change) -> {
+                if (change.isPresent()) {
+                    batch.put(mac, change.get());
+                } else {
+                    write(mac, change);
+                }
+            });
+            if (!batch.isEmpty()) {
+                store.putMobileHosts(batch);
+                writeCount.addAndGet(batch.size());
+            }
+            // Entries stay pending until written so reads never miss them.  A change made
+            // during the flush replaced its entry and is left for the next one.
+
+            flushed.forEach(pending::remove);
+            flushCount.incrementAndGet();
+        }
+    }
+
+    private void write(MacAddress mac, Optional<MobileHostState> change) {
+        if (change.isPresent()) {
+            store.putMobileHost(change.get());
+        } else {
+            store.removeMobileHost(mac);
+        }
+        writeCount.incrementAndGet();
+    }
+
+    /**
+     * Stop the flush timer and write anything still pending
+     */
+    public void stop() {
+        synchronized (this) {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(interval + 1000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+
+        log.info("Host state updates: {}, store writes: {}, flushes: {}",
+                 getUpdateCount(), getWriteCount(), getFlushCount());
+    }
+}
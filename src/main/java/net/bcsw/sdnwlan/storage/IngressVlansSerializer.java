@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import net.bcsw.sdnwlan.IngressVlans;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Lists;
+import org.onlab.packet.VlanId;
+
+import java.util.List;
+
+/**
+ * Kryo serializer for IngressVlans.
+ *
+ * Only the VLAN IDs are written.  On read the instance is looked up through the
+ * IngressVlans factory so it stays interned (and shares its compiled VLAN actions).
+ */
+public class IngressVlansSerializer extends Serializer<IngressVlans> {
+
+    public IngressVlansSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, IngressVlans object) {
+        List<VlanId> vlans = object.getVlanList();
+
+        output.writeInt(vlans.size(), true);
+        vlans.forEach(vid -> output.writeShort(vid.toShort()));
+    }
+
+    @Override
+    public IngressVlans read(Kryo kryo, Input input, Class<IngressVlans> type) {
+        int           count = input.readInt(true);
+        List<VlanId>  vlans = Lists.newArrayListWithCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            vlans.add(VlanId.vlanId(input.readShort()));
+        }
+        return IngressVlans.of(vlans);
+    }
+}
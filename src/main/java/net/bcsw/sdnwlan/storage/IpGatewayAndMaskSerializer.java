@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import net.bcsw.sdnwlan.IpGatewayAndMask;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.onlab.packet.IpAddress;
+
+/**
+ * Kryo serializer for IpGatewayAndMask.  Written as the gateway address octets
+ * followed by the prefix length.
+ */
+public class IpGatewayAndMaskSerializer extends Serializer<IpGatewayAndMask> {
+
+    public IpGatewayAndMaskSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, IpGatewayAndMask object) {
+        byte[] octets = object.gatewayAddress().toOctets();
+
+        output.writeInt(octets.length, true);
+        output.writeBytes(octets);
+        output.writeInt(object.prefixLength(), true);
+    }
+
+    @Override
+    public IpGatewayAndMask read(Kryo kryo, Input input, Class<IpGatewayAndMask> type) {
+        int    length = input.readInt(true);
+        byte[] octets = input.readBytes(length);
+        int    prefix = input.readInt(true);
+
+        IpAddress.Version version = (length == IpAddress.INET_BYTE_LENGTH) ? IpAddress.Version.INET
+                                                                            : IpAddress.Version.INET6;
+
+        return IpGatewayAndMask.valueOf(version, octets, prefix);
+    }
+}
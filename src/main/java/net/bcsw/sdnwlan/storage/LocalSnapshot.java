@@ -0,0 +1,335 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import net.bcsw.sdnwlan.IpGatewayAndMask;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Keeps a compact binary snapshot of the gateway locations and mobile host state in a
+ * memory-mapped file on the local disk of the controller.
+ *
+ * The snapshot is checkpointed periodically and once more when stopped.  It is reloaded on
+ * activation so the default gateway flows can be installed at once instead of waiting for
+ * each gateway to be rediscovered by the host service.
+ *
+ * Each checkpoint is written to a temporary file that is then renamed over the previous
+ * one, so a crash part way through a write leaves the last good snapshot in place.  The
+ * header carries a length and CRC so a damaged file is ignored rather than half loaded.
+ *
+ *   int  magic, int version, int payload length, int payload CRC32, payload...
+ */
+public class LocalSnapshot {
+
+    private static final int MAGIC       = 0x53574c53;     // "SWLS"
+    private static final int VERSION     = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File                     file;
+    private final Supplier<Snapshot>       source;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?>             task;
+
+    /**
+     * Create a new snapshot file
+     *
+     * @param file   Snapshot file
+     * @param source Supplies the current state at each checkpoint
+     */
+    public LocalSnapshot(File file, Supplier<Snapshot> source) {
+        this.file     = file;
+        this.source   = source;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("bcsw/sdnwlan", "snapshot"));
+    }
+
+    /**
+     * Get the default snapshot file, in the sdnwlan directory of the karaf data directory
+     *
+     * @return snapshot file
+     */
+    public static File defaultFile() {
+        return new File(new File(System.getProperty("karaf.data", "."), "sdnwlan"), "snapshot.bin");
+    }
+
+    /**
+     * Set how often the snapshot is checkpointed
+     *
+     * @param interval Interval in seconds, 0 to disable
+     */
+    public synchronized void configure(int interval) {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (interval > 0 && !executor.isShutdown()) {
+            task = executor.scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop checkpointing and write a final snapshot
+     */
+    public void stop() {
+        executor.shutdownNow();
+        checkpoint();
+    }
+
+    /**
+     * Write the current state to the snapshot file
+     */
+    public synchronized void checkpoint() {
+        try {
+            Snapshot snapshot = source.get();
+            byte[]   payload  = encode(snapshot);
+            CRC32    crc      = new CRC32();
+
+            crc.update(payload);
+
+            Path target = file.toPath();
+            Path temp   = target.resolveSibling(file.getName() + ".tmp");
+
+            Files.createDirectories(target.getParent());
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                                        StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE)) {
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                                      HEADER_SIZE + payload.length);
+                buffer.putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putInt(payload.length)
+                        .putInt((int) crc.getValue())
+                        .put(payload);
+                buffer.force();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            log.debug("checkpoint: {} gateways, {} hosts, {} bytes", snapshot.getGateways().size(),
+                      snapshot.getHosts().size(), HEADER_SIZE + payload.length);
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("checkpoint: unable to write {}: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * Read the snapshot file
+     *
+     * @return Snapshot or null if there is no (valid) snapshot
+     */
+    public synchronized Snapshot load() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            if (channel.size() < HEADER_SIZE) {
+                log.warn("load: {} is truncated, ignored", file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int magic   = buffer.getInt();
+            int version = buffer.getInt();
+            int length  = buffer.getInt();
+            int crc     = buffer.getInt();
+
+            if ((magic != MAGIC) || (version != VERSION) || (length != buffer.remaining())) {
+                log.warn("load: {} has an unknown format or is truncated, ignored", file);
+                return null;
+            }
+            CRC32 check = new CRC32();
+
+            check.update(buffer.duplicate());
+
+            if ((int) check.getValue() != crc) {
+                log.warn("load: {} is corrupt, ignored", file);
+                return null;
+            }
+            Snapshot snapshot = decode(buffer);
+
+            log.info("load: {} gateways, {} hosts from {}", snapshot.getGateways().size(),
+                     snapshot.getHosts().size(), file);
+            return snapshot;
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("load: unable to read {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Encode the payload of a snapshot.  Also used for the state at the head of each
+     * segment of the event journal.
+     *
+     * @param snapshot Snapshot
+     * @return Encoded snapshot, without the file header
+     * @throws IOException on error encoding
+     */
+    public static byte[] encode(Snapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream      out   = new DataOutputStream(bytes);
+
+        out.writeLong(snapshot.getTime());
+
+        out.writeInt(snapshot.getGateways().size());
+
+        for (Snapshot.GatewayLocation gw : snapshot.getGateways()) {
+            byte[] address = gw.getGateway().gatewayAddress().toOctets();
+
+            out.writeByte(address.length);
+            out.write(address);
+            out.writeByte(gw.getGateway().prefixLength());
+            out.writeLong(gw.getMacAddress().toLong());
+            out.writeShort(gw.getVlan().toShort());
+            writeString(out, gw.getLocation().deviceId().toString());
+            out.writeLong(gw.getLocation().port().toLong());
+        }
+        out.writeInt(snapshot.getHosts().size());
+
+        for (MobileHostState host : snapshot.getHosts()) {
+            out.writeLong(host.getMacAddress().toLong());
+
+            out.writeShort(host.getHomeAccessPoints().size());
+            for (MacAddress ap : host.getHomeAccessPoints()) {
+                out.writeLong(ap.toLong());
+            }
+            out.writeLong((host.getCurrentAccessPoint() == null) ? -1 : host.getCurrentAccessPoint().toLong());
+            out.writeLong(host.getCreationTime());
+            out.writeLong(host.getLastMovedTime());
+            out.writeLong(host.getRemovedTime());
+            out.writeInt(host.getTimesMoved());
+
+            out.writeShort(host.getIntentKeys().size());
+            for (String key : host.getIntentKeys()) {
+                writeString(out, key);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode the payload of a snapshot
+     *
+     * @param in Encoded snapshot, without the file header
+     * @return Snapshot
+     */
+    public static Snapshot decode(ByteBuffer in) {
+        long time = in.getLong();
+
+        int                            gatewayCount = in.getInt();
+        List<Snapshot.GatewayLocation> gateways     = Lists.newArrayListWithCapacity(gatewayCount);
+
+        for (int i = 0; i < gatewayCount; i++) {
+            byte[] address = new byte[in.get()];
+
+            in.get(address);
+
+            int          prefix   = in.get() & 0xff;
+            MacAddress   mac      = MacAddress.valueOf(in.getLong());
+            VlanId       vlan     = VlanId.vlanId(in.getShort());
+            DeviceId     deviceId = DeviceId.deviceId(readString(in));
+            PortNumber   port     = PortNumber.portNumber(in.getLong());
+
+            IpAddress.Version version = (address.length == IpAddress.INET_BYTE_LENGTH) ? IpAddress.Version.INET
+                                                                                       : IpAddress.Version.INET6;
+
+            gateways.add(new Snapshot.GatewayLocation(IpGatewayAndMask.valueOf(version, address, prefix),
+                                                      mac, vlan, new ConnectPoint(deviceId, port)));
+        }
+        int                   hostCount = in.getInt();
+        List<MobileHostState> hosts     = Lists.newArrayListWithCapacity(hostCount);
+
+        for (int i = 0; i < hostCount; i++) {
+            MacAddress mac = MacAddress.valueOf(in.getLong());
+
+            int             homeCount = in.getShort();
+            Set<MacAddress> home      = Sets.newHashSetWithExpectedSize(homeCount);
+
+            for (int ap = 0; ap < homeCount; ap++) {
+                home.add(MacAddress.valueOf(in.getLong()));
+            }
+            long       currentMac = in.getLong();
+            MacAddress current    = (currentMac == -1) ? null : MacAddress.valueOf(currentMac);
+            long       created    = in.getLong();
+            long       lastMove   = in.getLong();
+            long       removed    = in.getLong();
+            int        moves      = in.getInt();
+
+            int         keyCount = in.getShort();
+            Set<String> keys     = Sets.newHashSetWithExpectedSize(keyCount);
+
+            for (int key = 0; key < keyCount; key++) {
+                keys.add(readString(in));
+            }
+            hosts.add(new MobileHostState(mac, home, current, created, lastMove, removed, moves, keys));
+        }
+        return new Snapshot(time, gateways, hosts);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xffff];
+
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
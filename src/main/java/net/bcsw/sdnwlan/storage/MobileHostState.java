@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.MacAddress;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The replicated state of a mobile host.  Access points are referenced by their MAC
+ * address and intents by their key string so the state can be rebuilt on any instance.
+ * <p>
+ * Instances are immutable.
+ */
+public final class MobileHostState {
+
+    private final MacAddress      macAddress;
+    private final Set<MacAddress> homeAccessPoints;
+    private final MacAddress      currentAccessPoint;
+    private final long            createTime;
+    private final long            lastMoveTime;
+    private final long            removedTime;
+    private final int             timesMoved;
+    private final Set<String>     intentKeys;
+
+    /**
+     * Create a host state
+     *
+     * @param macAddress         MAC address of the host
+     * @param homeAccessPoints   MAC addresses of the home access points
+     * @param currentAccessPoint MAC address of the current access point, null if unknown
+     * @param createTime         Time the host was first seen
+     * @param lastMoveTime       Time the host last moved
+     * @param removedTime        Time of the last HOST_REMOVED event, 0 if none pending
+     * @param timesMoved         Number of moves
+     * @param intentKeys         Keys of the intents owned by the host
+     */
+    public MobileHostState(MacAddress macAddress, Set<MacAddress> homeAccessPoints,
+                           MacAddress currentAccessPoint, long createTime, long lastMoveTime,
+                           long removedTime, int timesMoved, Set<String> intentKeys) {
+        this.macAddress         = macAddress;
+        this.homeAccessPoints   = ImmutableSet.copyOf(homeAccessPoints);
+        this.currentAccessPoint = currentAccessPoint;
+        this.createTime         = createTime;
+        this.lastMoveTime       = lastMoveTime;
+        this.removedTime        = removedTime;
+        this.timesMoved         = timesMoved;
+        this.intentKeys         = ImmutableSet.copyOf(intentKeys);
+    }
+
+    public MacAddress getMacAddress()            { return macAddress; }
+    public Set<MacAddress> getHomeAccessPoints() { return homeAccessPoints; }
+    public MacAddress getCurrentAccessPoint()    { return currentAccessPoint; }
+    public long getCreationTime()                { return createTime; }
+    public long getLastMovedTime()               { return lastMoveTime; }
+    public long getRemovedTime()                 { return removedTime; }
+    public int  getTimesMoved()                  { return timesMoved; }
+    public Set<String> getIntentKeys()           { return intentKeys; }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(macAddress, homeAccessPoints, currentAccessPoint, createTime,
+                            lastMoveTime, removedTime, timesMoved, intentKeys);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj != null && obj instanceof MobileHostState) {
+            MobileHostState other = (MobileHostState) obj;
+
+            return macAddress.equals(other.macAddress) &&
+                    homeAccessPoints.equals(other.homeAccessPoints) &&
+                    Objects.equals(currentAccessPoint, other.currentAccessPoint) &&
+                    (createTime == other.createTime) &&
+                    (lastMoveTime == other.lastMoveTime) &&
+                    (removedTime == other.removedTime) &&
+                    (timesMoved == other.timesMoved) &&
+                    intentKeys.equals(other.intentKeys);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(macAddress.toString())
+                .append(", home: ").append(homeAccessPoints.toString())
+                .append(", current: ").append(currentAccessPoint)
+                .append(", moves: ").append(timesMoved)
+                .append(", intents: ").append(intentKeys.size());
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Sets;
+import org.onlab.packet.MacAddress;
+
+import java.util.Set;
+
+/**
+ * Compact Kryo serializer for MobileHostState.
+ *
+ * Host state is written on every move so it is kept small: MAC addresses are written as
+ * longs, counts and times as variable length integers and intent keys as plain strings.
+ * The times are written as deltas from the creation time.
+ */
+public class MobileHostStateSerializer extends Serializer<MobileHostState> {
+
+    public MobileHostStateSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, MobileHostState object) {
+        output.writeLong(object.getMacAddress().toLong());
+
+        output.writeInt(object.getHomeAccessPoints().size(), true);
+        object.getHomeAccessPoints().forEach(mac -> output.writeLong(mac.toLong()));
+
+        output.writeBoolean(object.getCurrentAccessPoint() != null);
+        if (object.getCurrentAccessPoint() != null) {
+            output.writeLong(object.getCurrentAccessPoint().toLong());
+        }
+        long created = object.getCreationTime();
+
+        output.writeLong(created, true);
+        output.writeLong(object.getLastMovedTime() - created, true);
+        output.writeBoolean(object.getRemovedTime() != 0);
+        if (object.getRemovedTime() != 0) {
+            output.writeLong(object.getRemovedTime() - created, true);
+        }
+        output.writeInt(object.getTimesMoved(), true);
+
+        output.writeInt(object.getIntentKeys().size(), true);
+        object.getIntentKeys().forEach(output::writeString);
+    }
+
+    @Override
+    public MobileHostState read(Kryo kryo, Input input, Class<MobileHostState> type) {
+        MacAddress mac = MacAddress.valueOf(input.readLong());
+
+        int             homeCount = input.readInt(true);
+        Set<MacAddress> home      = Sets.newHashSetWithExpectedSize(homeCount);
+
+        for (int i = 0; i < homeCount; i++) {
+            home.add(MacAddress.valueOf(input.readLong()));
+        }
+        MacAddress current = input.readBoolean() ? MacAddress.valueOf(input.readLong()) : null;
+
+        long created  = input.readLong(true);
+        long lastMove = created + input.readLong(true);
+        long removed  = input.readBoolean() ? created + input.readLong(true) : 0;
+        int  moves    = input.readInt(true);
+
+        int         keyCount = input.readInt(true);
+        Set<String> keys     = Sets.newHashSetWithExpectedSize(keyCount);
+
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(input.readString());
+        }
+        return new MobileHostState(mac, home, current, created, lastMove, removed, moves, keys);
+    }
+}
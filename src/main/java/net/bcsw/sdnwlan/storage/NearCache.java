@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.store.service.MapEvent;
+import org.onosproject.store.service.Versioned;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Local cache of the entries of a consistent map.
+ * <p>
+ * The whole map is read the first time the values are asked for, and later reads are
+ * served from the cache.  The map listener of the owning store must pass every map event
+ * to {@link #event(MapEvent)} to keep the cache current.  Events can be missed (a lost
+ * session), so the cache is read again once it is older than its maximum age.
+ * <p>
+ * Entries are kept with the version they were read (or written) with and an entry is only
+ * replaced by one with a higher version, so a slow read can not overwrite a newer value
+ * delivered by a map event.  A removal made while the map is being read leaves a tombstone
+ * with the version of the removed entry for the same reason.  Tombstones are dropped once
+ * the read is done.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class NearCache<K, V> {
+
+    private final Map<K, Versioned<V>> entries = Maps.newConcurrentMap();
+
+    private final long maxAge;
+
+    private volatile boolean loaded  = false;
+    private volatile boolean loading = false;
+    private volatile long    loadTime;
+
+    private final AtomicLong hitCount  = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Create a cache
+     *
+     * @param maxAge Milliseconds before the map is read again, 0 to only read it once
+     */
+    NearCache(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    long getHitCount()  { return hitCount.get(); }
+    long getMissCount() { return missCount.get(); }
+
+    /**
+     * Get all values, reading the whole map the first time and once the cache is too old
+     *
+     * @param loader Reads all entries of the map
+     * @return List of values
+     */
+    List<V> values(Supplier<Map<K, Versioned<V>>> loader) {
+        if (loaded && !isExpired()) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            load(loader);
+        }
+        List<V> result = Lists.newArrayList();
+
+        entries.values().stream()
+                .filter(versioned -> versioned.value() != null)
+                .forEach(versioned -> result.add(versioned.value()));
+
+        return result;
+    }
+
+    private boolean isExpired() {
+        return (maxAge > 0) && (System.currentTimeMillis() - loadTime > maxAge);
+    }
+
+    private synchronized void load(Supplier<Map<K, Versioned<V>>> loader) {
+        loading = true;
+        try {
+            // Map events still apply while reading, and a newer one wins over the read
+
+            entries.clear();
+            loader.get().forEach(this::update);
+
+            loadTime = System.currentTimeMillis();
+            loaded   = true;
+        } finally {
+            loading = false;
+            entries.values().removeIf(versioned -> versioned.value() == null);
+        }
+    }
+
+    /**
+     * Record an entry written (or read) with the given version
+     *
+     * @param key       Key
+     * @param versioned Value and version
+     */
+    void update(K key, Versioned<V> versioned) {
+        entries.merge(key, versioned, (old, value) -> (value.version() > old.version()) ? value : old);
+    }
+
+    /**
+     * Record the removal of an entry
+     *
+     * @param key     Key
+     * @param removed Removed value and its version
+     */
+    void remove(K key, Versioned<V> removed) {
+        if (!loading) {
+            entries.computeIfPresent(key, (k, old) -> (removed.version() >= old.version()) ? null : old);
+            return;
+        }
+        Versioned<V> tombstone = new Versioned<>(null, removed.version(), removed.creationTime());
+
+        // The tombstone carries the version of the entry it removes, so it wins a tie
+        entries.merge(key, tombstone, (old, value) -> (value.version() >= old.version()) ? value : old);
+    }
+
+    /**
+     * Apply a map event to the cache
+     *
+     * @param event Map event
+     */
+    void event(MapEvent<K, V> event) {
+        Versioned<V> value = event.value();
+
+        if (value == null) {
+            entries.remove(event.key());
+            return;
+        }
+        if (event.type() == MapEvent.Type.REMOVE) {
+            remove(event.key(), value);
+        } else {
+            update(event.key(), value);
+        }
+    }
+
+    /**
+     * Drop everything so the next read goes back to the map
+     */
+    void clear() {
+        loaded = false;
+        entries.clear();
+    }
+}
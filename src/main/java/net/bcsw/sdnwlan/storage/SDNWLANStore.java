@@ -16,6 +16,8 @@
 package net.bcsw.sdnwlan.storage;
 
 import net.bcsw.sdnwlan.config.AccessPointConfig;
+import org.onlab.packet.MacAddress;
+import org.onosproject.store.Store;
 
 import java.util.List;
 import java.util.Map;
@@ -23,21 +25,24 @@ import java.util.Map;
 /**
  * Interface for persistent storage for learned/configured sdnWLAN Access Points and mobile hosts
  * <p>
+ * Changes made by other controller instances are passed to the store delegate.
+ * <p>
  * TODO Add thrown exceptions for cases of duplicate entries on 'puts' or notFound on 'removes'
  */
-public interface SDNWLANStore {// TODO extends Store<NetworkConfigEvent, NetworkConfigStoreDelegate> {
+public interface SDNWLANStore extends Store<SDNWLANStoreEvent, SDNWLANStoreDelegate> {
 
     /**
-     * Save an access Point
+     * Save an access Point.  Any previously saved configuration for the same MAC
+     * address is replaced.
      *
-     * @param accessPoint TODO: Document
+     * @param accessPoint Access point configuration to save
      */
     void putAccessPoint(AccessPointConfig accessPoint);
 
     /**
      * Remove an access Point
      *
-     * @param accessPoint TODO: Document
+     * @param accessPoint Access point to remove (only the MAC address is used)
      */
     void removeAccessPoint(AccessPointConfig accessPoint);
 
@@ -48,6 +53,40 @@ public interface SDNWLANStore {// TODO extends Store<NetworkConfigEvent, Network
      */
     List<AccessPointConfig> getAccessPoints();
 
+    /**
+     * Save the state of a mobile host.  Mobile host state is eventually consistent: the
+     * write is applied locally and replicated to the other instances in the background.
+     *
+     * @param host Mobile host state
+     */
+    void putMobileHost(MobileHostState host);
+
+    /**
+     * Save the state of a batch of mobile hosts
+     *
+     * @param hosts Mobile host state by MAC address
+     */
+    void putMobileHosts(Map<MacAddress, MobileHostState> hosts);
 
-    // TODO: Add put/remove/get for mobile hosts as well if needed
+    /**
+     * Remove the state of a mobile host
+     *
+     * @param mac MAC address of the host
+     */
+    void removeMobileHost(MacAddress mac);
+
+    /**
+     * Get the saved state of a mobile host.  This is a local read.
+     *
+     * @param mac MAC address of the host
+     * @return Mobile host state or null if not found
+     */
+    MobileHostState getMobileHost(MacAddress mac);
+
+    /**
+     * Get the saved state of all mobile hosts.  This is a local read.
+     *
+     * @return Mobile host state by MAC address
+     */
+    Map<MacAddress, MobileHostState> getMobileHosts();
 }
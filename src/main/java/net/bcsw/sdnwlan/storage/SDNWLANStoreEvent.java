@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import net.bcsw.sdnwlan.config.AccessPointConfig;
+import org.onosproject.event.AbstractEvent;
+
+/**
+ * Describes a change to the access points saved in the sdnWLAN store that was made
+ * by another controller instance.
+ */
+public class SDNWLANStoreEvent extends AbstractEvent<SDNWLANStoreEvent.Type, AccessPointConfig> {
+
+    public enum Type {
+        /**
+         * An access point was saved to the store for the first time
+         */
+        ACCESS_POINT_ADDED,
+
+        /**
+         * The saved configuration of an access point was replaced
+         */
+        ACCESS_POINT_UPDATED,
+
+        /**
+         * An access point was removed from the store
+         */
+        ACCESS_POINT_REMOVED
+    }
+
+    /**
+     * Create a new store event
+     *
+     * @param type        Event type
+     * @param accessPoint Access point configuration (the previous one for a removal)
+     */
+    public SDNWLANStoreEvent(Type type, AccessPointConfig accessPoint) {
+        super(type, accessPoint);
+    }
+}
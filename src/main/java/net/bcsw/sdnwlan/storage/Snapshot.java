@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import net.bcsw.sdnwlan.IpGatewayAndMask;
+import com.google.common.collect.ImmutableList;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+
+import java.util.List;
+
+/**
+ * The state saved to the local snapshot file: the last known location of each default
+ * gateway and the state of the mobile hosts.
+ * <p>
+ * Instances are immutable.
+ */
+public final class Snapshot {
+
+    /**
+     * Where a default gateway was last seen
+     */
+    public static final class GatewayLocation {
+        private final IpGatewayAndMask gateway;
+        private final MacAddress       macAddress;
+        private final VlanId           vlan;
+        private final ConnectPoint     location;
+
+        /**
+         * Create a gateway location
+         *
+         * @param gateway    Gateway address and subnet
+         * @param macAddress MAC address of the gateway
+         * @param vlan       VLAN the gateway was seen on
+         * @param location   Connect point the gateway was seen at
+         */
+        public GatewayLocation(IpGatewayAndMask gateway, MacAddress macAddress, VlanId vlan,
+                               ConnectPoint location) {
+            this.gateway    = gateway;
+            this.macAddress = macAddress;
+            this.vlan       = vlan;
+            this.location   = location;
+        }
+
+        public IpGatewayAndMask getGateway() { return gateway; }
+        public MacAddress getMacAddress()    { return macAddress; }
+        public VlanId getVlan()              { return vlan; }
+        public ConnectPoint getLocation()    { return location; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s/%d @ %s", gateway, macAddress, vlan.toShort(), location);
+        }
+    }
+
+    private final long                  time;
+    private final List<GatewayLocation> gateways;
+    private final List<MobileHostState> hosts;
+
+    /**
+     * Create a snapshot
+     *
+     * @param time     Time the snapshot was taken
+     * @param gateways Default gateway locations
+     * @param hosts    Mobile host state
+     */
+    public Snapshot(long time, List<GatewayLocation> gateways, List<MobileHostState> hosts) {
+        this.time     = time;
+        this.gateways = ImmutableList.copyOf(gateways);
+        this.hosts    = ImmutableList.copyOf(hosts);
+    }
+
+    public long getTime()                       { return time; }
+    public List<GatewayLocation> getGateways()  { return gateways; }
+    public List<MobileHostState> getHosts()     { return hosts; }
+}
@@ -100,14 +100,14 @@ public class SDNWLANAccessPointCodec extends JsonCodec<AccessPointConfig> {
         List<ConnectPoint> conns = Lists.newArrayList();
 
         // TODO: This needs work as well
-        IngressVlans ingrVlans = new IngressVlans();
+        IngressVlans ingrVlans = IngressVlans.none();
         GatewayConfig gwConfig = new GatewayConfig("TODO", IpGatewayAndMask.valueOf("127.0.0.1/24"), ingrVlans);
         List<GatewayConfig> gateways = Lists.newArrayList();
         gateways.add(gwConfig);
 
         // TODO: JSON support for VLAN descriptor not yet supported
 
-        IngressVlans dummy = new IngressVlans();
+        IngressVlans dummy = IngressVlans.none();
 
         return new AccessPointConfig(name, mac, ingrVlans, gateways, longitude,
                 latitude, altitude, others, conns);
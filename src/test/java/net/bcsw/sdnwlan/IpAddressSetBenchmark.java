@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import net.bcsw.sdnwlan.config.GatewayConfig;
+import org.onlab.packet.IpAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the default gateway lookup of the host event path, IpAddressSet.containsAny(),
+ * with the check it replaced, Collections.disjoint() of the host addresses and the key set
+ * of the concurrent gateway map.  Each is run for a host with one address that is not a
+ * gateway (the common case), for a gateway and for an IPv6 host.
+ *
+ * This is not run by the unit tests.  Run it from the test classpath:
+ *
+ *   java -cp target/test-classes:... net.bcsw.sdnwlan.IpAddressSetBenchmark
+ *
+ * The GC profiler is enabled so the bytes allocated per lookup are reported.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpAddressSetBenchmark {
+
+    @Param({"4", "64"})
+    private int gateways;
+
+    private IpAddressSet                   gatewaySet;
+    private Map<IpAddress, DefaultGateway> defaultGateways;
+
+    private Set<IpAddress> hostAddresses;
+    private Set<IpAddress> gatewayAddresses;
+    private Set<IpAddress> ipv6Addresses;
+
+    @Setup
+    public void setup() {
+        gatewaySet      = new IpAddressSet();
+        defaultGateways = Maps.newConcurrentMap();
+
+        for (int index = 0; index < gateways; index++) {
+            IpAddress gateway = IpAddress.valueOf(String.format("10.%d.%d.1", index / 256, index % 256));
+
+            gatewaySet.add(gateway);
+            defaultGateways.put(gateway, new DefaultGateway(
+                    new GatewayConfig("gw" + index, IpGatewayAndMask.valueOf(gateway, 24))));
+        }
+        hostAddresses    = ImmutableSet.of(IpAddress.valueOf("10.0.0.17"));
+        gatewayAddresses = ImmutableSet.of(IpAddress.valueOf("10.0.0.1"));
+        ipv6Addresses    = ImmutableSet.of(IpAddress.valueOf("2001:db8::17"));
+    }
+
+    @Benchmark
+    public boolean ipAddressSetHost() {
+        return gatewaySet.containsAny(hostAddresses);
+    }
+
+    @Benchmark
+    public boolean ipAddressSetGateway() {
+        return gatewaySet.containsAny(gatewayAddresses);
+    }
+
+    @Benchmark
+    public boolean ipAddressSetIpv6() {
+        return gatewaySet.containsAny(ipv6Addresses);
+    }
+
+    @Benchmark
+    public boolean disjointHost() {
+        return !Collections.disjoint(hostAddresses, defaultGateways.keySet());
+    }
+
+    @Benchmark
+    public boolean disjointGateway() {
+        return !Collections.disjoint(gatewayAddresses, defaultGateways.keySet());
+    }
+
+    @Benchmark
+    public boolean disjointIpv6() {
+        return !Collections.disjoint(ipv6Addresses, defaultGateways.keySet());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(IpAddressSetBenchmark.class.getSimpleName())
+                           .addProfiler(GCProfiler.class)
+                           .build()).run();
+    }
+}
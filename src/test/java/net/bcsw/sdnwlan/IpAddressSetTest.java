@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.IpAddress;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the IP address set
+ */
+public class IpAddressSetTest {
+
+    private IpAddressSet set;
+
+    @Before
+    public void setUp() {
+        set = new IpAddressSet();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, set.size());
+        assertFalse(set.contains(IpAddress.valueOf("0.0.0.0")));
+        assertFalse(set.contains(IpAddress.valueOf("::")));
+        assertFalse(set.containsAny(ImmutableList.of()));
+    }
+
+    @Test
+    public void testAddRemove() {
+        IpAddress address = IpAddress.valueOf("10.1.0.1");
+
+        assertTrue(set.add(address));
+        assertFalse(set.add(address));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(address));
+        assertFalse(set.contains(IpAddress.valueOf("10.1.0.2")));
+
+        assertTrue(set.remove(address));
+        assertFalse(set.remove(address));
+        assertEquals(0, set.size());
+        assertFalse(set.contains(address));
+    }
+
+    @Test
+    public void testIp4AddressFastPath() {
+        set.add(IpAddress.valueOf("10.1.0.1"));
+
+        // An Ip4Address is read as an int and must match one added as an IpAddress
+
+        assertTrue(set.contains(Ip4Address.valueOf("10.1.0.1")));
+        assertFalse(set.contains(Ip4Address.valueOf("10.1.0.2")));
+    }
+
+    @Test
+    public void testZeroAndBroadcast() {
+        set.add(IpAddress.valueOf("0.0.0.0"));
+
+        assertTrue(set.contains(IpAddress.valueOf("0.0.0.0")));
+        assertFalse(set.contains(IpAddress.valueOf("255.255.255.255")));
+
+        set.add(IpAddress.valueOf("255.255.255.255"));
+        assertTrue(set.contains(IpAddress.valueOf("255.255.255.255")));
+    }
+
+    @Test
+    public void testIpv6() {
+        set.add(IpAddress.valueOf("2001:db8::1"));
+        set.add(IpAddress.valueOf("::"));
+
+        assertTrue(set.contains(IpAddress.valueOf("2001:db8::1")));
+        assertTrue(set.contains(IpAddress.valueOf("::")));
+        assertFalse(set.contains(IpAddress.valueOf("2001:db8::2")));
+
+        // The IPv4 and IPv6 tables are separate
+
+        assertFalse(set.contains(IpAddress.valueOf("0.0.0.0")));
+    }
+
+    @Test
+    public void testGrowth() {
+        List<IpAddress> added = Lists.newArrayList();
+
+        for (int index = 0; index < 1000; index++) {
+            IpAddress v4 = IpAddress.valueOf(String.format("10.%d.%d.1", index / 256, index % 256));
+            IpAddress v6 = IpAddress.valueOf(String.format("2001:db8::%x", index));
+
+            set.add(v4);
+            set.add(v6);
+            added.add(v4);
+            added.add(v6);
+        }
+        assertEquals(2000, set.size());
+
+        for (IpAddress address : added) {
+            assertTrue(address.toString(), set.contains(address));
+        }
+        assertFalse(set.contains(IpAddress.valueOf("10.200.0.1")));
+        assertFalse(set.contains(IpAddress.valueOf("2001:db8::ffff")));
+    }
+
+    @Test
+    public void testRemoveKeepsOthers() {
+        List<IpAddress> added = Lists.newArrayList();
+
+        for (int index = 0; index < 200; index++) {
+            added.add(IpAddress.valueOf(String.format("10.0.%d.1", index)));
+            added.add(IpAddress.valueOf(String.format("2001:db8::%x", index)));
+        }
+        added.forEach(set::add);
+
+        // Removed slots are left behind, the addresses probed past them must still be found
+
+        for (int index = 0; index < added.size(); index += 2) {
+            assertTrue(set.remove(added.get(index)));
+        }
+        for (int index = 0; index < added.size(); index++) {
+            assertEquals(added.get(index).toString(), (index % 2) != 0, set.contains(added.get(index)));
+        }
+        assertEquals(200, set.size());
+
+        for (int index = 0; index < added.size(); index += 2) {
+            assertTrue(set.add(added.get(index)));
+        }
+        for (IpAddress address : added) {
+            assertTrue(address.toString(), set.contains(address));
+        }
+    }
+
+    @Test
+    public void testAddRemoveCycles() {
+        IpAddress fixed   = IpAddress.valueOf("10.1.0.1");
+        IpAddress fixedV6 = IpAddress.valueOf("2001:db8::1");
+
+        set.add(fixed);
+        set.add(fixedV6);
+
+        // Each cycle leaves a removed slot, so the tables have to be rebuilt along the way
+
+        for (int index = 0; index < 1000; index++) {
+            IpAddress v4 = IpAddress.valueOf(String.format("10.2.%d.%d", index / 256, index % 256));
+            IpAddress v6 = IpAddress.valueOf(String.format("2001:db8:1::%x", index));
+
+            assertTrue(set.add(v4));
+            assertTrue(set.add(v6));
+            assertTrue(set.contains(v4));
+            assertTrue(set.contains(v6));
+            assertTrue(set.remove(v4));
+            assertTrue(set.remove(v6));
+            assertFalse(set.contains(v4));
+            assertFalse(set.contains(v6));
+        }
+        assertEquals(2, set.size());
+        assertTrue(set.contains(fixed));
+        assertTrue(set.contains(fixedV6));
+    }
+
+    @Test
+    public void testContainsAny() {
+        set.add(IpAddress.valueOf("10.1.0.1"));
+
+        IpAddress host    = IpAddress.valueOf("10.1.0.17");
+        IpAddress gateway = IpAddress.valueOf("10.1.0.1");
+
+        // Random access lists, other lists and sets take different paths
+
+        assertTrue(set.containsAny(ImmutableList.of(host, gateway)));
+        assertTrue(set.containsAny(new LinkedList<>(ImmutableList.of(host, gateway))));
+        assertTrue(set.containsAny(ImmutableSet.of(host, gateway)));
+
+        assertFalse(set.containsAny(ImmutableList.of(host)));
+        assertFalse(set.containsAny(new LinkedList<>(ImmutableList.of(host))));
+        assertFalse(set.containsAny(ImmutableSet.of(host)));
+    }
+}
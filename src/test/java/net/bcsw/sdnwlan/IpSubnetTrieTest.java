@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the subnet trie
+ */
+public class IpSubnetTrieTest {
+
+    private IpSubnetTrie<String> trie;
+
+    @Before
+    public void setUp() {
+        trie = new IpSubnetTrie<>();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("10.0.0.1")).isEmpty());
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("2001:db8::1")).isEmpty());
+    }
+
+    @Test
+    public void testLongestPrefixWins() {
+        trie.add(IpPrefix.valueOf("10.0.0.0/8"), "wide");
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "narrow");
+        trie.add(IpPrefix.valueOf("10.1.2.0/24"), "narrowest");
+
+        assertEquals(ImmutableSet.of("narrowest"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.2.3")));
+        assertEquals(ImmutableSet.of("narrow"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.3.3")));
+        assertEquals(ImmutableSet.of("wide"), trie.longestPrefixMatch(IpAddress.valueOf("10.2.0.1")));
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("192.168.1.1")).isEmpty());
+    }
+
+    @Test
+    public void testValuesOfSamePrefix() {
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "ap1");
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "ap2");
+
+        assertEquals(ImmutableSet.of("ap1", "ap2"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.9.9")));
+    }
+
+    @Test
+    public void testDefaultRoute() {
+        trie.add(IpPrefix.valueOf("0.0.0.0/0"), "default");
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "narrow");
+
+        assertEquals(ImmutableSet.of("default"), trie.longestPrefixMatch(IpAddress.valueOf("192.168.1.1")));
+        assertEquals(ImmutableSet.of("narrow"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")));
+
+        // The IPv4 default route does not cover IPv6
+
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("2001:db8::1")).isEmpty());
+    }
+
+    @Test
+    public void testHostPrefix() {
+        trie.add(IpPrefix.valueOf("10.1.2.3/32"), "host");
+
+        assertEquals(ImmutableSet.of("host"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.2.3")));
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("10.1.2.2")).isEmpty());
+    }
+
+    @Test
+    public void testIpv6() {
+        trie.add(IpPrefix.valueOf("2001:db8::/32"), "wide");
+        trie.add(IpPrefix.valueOf("2001:db8:1::/48"), "narrow");
+
+        assertEquals(ImmutableSet.of("narrow"), trie.longestPrefixMatch(IpAddress.valueOf("2001:db8:1::5")));
+        assertEquals(ImmutableSet.of("wide"), trie.longestPrefixMatch(IpAddress.valueOf("2001:db8:2::5")));
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("2001:db9::5")).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        trie.add(IpPrefix.valueOf("10.0.0.0/8"), "wide");
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "narrow");
+
+        assertTrue(trie.remove(IpPrefix.valueOf("10.1.0.0/16"), "narrow"));
+        assertEquals(ImmutableSet.of("wide"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")));
+
+        // Not present, or already removed
+
+        assertFalse(trie.remove(IpPrefix.valueOf("10.1.0.0/16"), "narrow"));
+        assertFalse(trie.remove(IpPrefix.valueOf("10.0.0.0/8"), "other"));
+        assertFalse(trie.remove(IpPrefix.valueOf("172.16.0.0/12"), "wide"));
+
+        assertTrue(trie.remove(IpPrefix.valueOf("10.0.0.0/8"), "wide"));
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")).isEmpty());
+    }
+
+    @Test
+    public void testRemoveKeepsLongerPrefix() {
+        trie.add(IpPrefix.valueOf("10.0.0.0/8"), "wide");
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "narrow");
+
+        // Pruning after removing the shorter prefix must not cut off the longer one
+
+        assertTrue(trie.remove(IpPrefix.valueOf("10.0.0.0/8"), "wide"));
+        assertEquals(ImmutableSet.of("narrow"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")));
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("10.2.0.1")).isEmpty());
+    }
+
+    @Test
+    public void testResultIsCopy() {
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "ap1");
+
+        assertEquals(ImmutableSet.of("ap1"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")));
+
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "ap2");
+        trie.remove(IpPrefix.valueOf("10.1.0.0/16"), "ap1");
+
+        assertEquals(ImmutableSet.of("ap2"), trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")));
+    }
+
+    @Test
+    public void testClear() {
+        trie.add(IpPrefix.valueOf("10.1.0.0/16"), "ap1");
+        trie.add(IpPrefix.valueOf("2001:db8::/32"), "ap1");
+        trie.clear();
+
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("10.1.0.1")).isEmpty());
+        assertTrue(trie.longestPrefixMatch(IpAddress.valueOf("2001:db8::1")).isEmpty());
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan;
+
+import net.bcsw.sdnwlan.config.SDNWLANConfig;
+import net.bcsw.sdnwlan.journal.JournalReader;
+import net.bcsw.sdnwlan.journal.JournalState;
+import net.bcsw.sdnwlan.storage.LocalSnapshot;
+import net.bcsw.sdnwlan.storage.MobileHostState;
+import net.bcsw.sdnwlan.storage.SDNWLANStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.CoreService;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.config.NetworkConfigRegistry;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flowobjective.FlowObjectiveService;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
+import org.onosproject.net.host.HostService;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Offline replay of an event journal through the APManager.  This is a development tool
+ * run from the test classpath and is not part of the bundle.
+ *
+ * The APManager is activated against stub ONOS services built with dynamic proxies and the
+ * journaled host and device events are fed to its listeners as fast as they are handled,
+ * so a busy period recorded in production can be re-run under a profiler.  The stubs
+ * accept every call; intent and flow objective operations are only counted, and the store
+ * keeps mobile host state in memory.
+ *
+ * The replay starts from the state at the head of the oldest segment: its host table backs
+ * the stub host service (and is kept up to date by the replayed host events) and its
+ * gateway locations and mobile host state are loaded as the local snapshot on activation.
+ *
+ * Purge timers run on the wall clock, so hosts removed during the replay are not purged as
+ * they were when the journal was recorded.
+ *
+ *   usage: JournalReplay journal-directory sdnwlan-config.json [repeat]
+ *
+ * The configuration file is either the sdnwlan application configuration itself or a full
+ * network configuration containing it.
+ */
+public final class JournalReplay {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalReplay.class);
+
+    private final File     journalDirectory;
+    private final JsonNode configNode;
+
+    private final List<HostListener>   hostListeners   = Lists.newCopyOnWriteArrayList();
+    private final List<DeviceListener> deviceListeners = Lists.newCopyOnWriteArrayList();
+
+    // Host table of the stub host service
+    private final Map<HostId, Host> hostTable = Maps.newConcurrentMap();
+
+    private final AtomicLong events          = new AtomicLong();
+    private final AtomicLong intentSubmits   = new AtomicLong();
+    private final AtomicLong intentWithdraws = new AtomicLong();
+    private final AtomicLong objectives      = new AtomicLong();
+
+    /**
+     * Create a replay
+     *
+     * @param journalDirectory Directory of the journal segments
+     * @param configNode       sdnwlan application configuration
+     */
+    public JournalReplay(File journalDirectory, JsonNode configNode) {
+        this.journalDirectory = journalDirectory;
+        this.configNode       = configNode.deepCopy();
+
+        // Do not journal or checkpoint the replay itself
+
+        ((ObjectNode) this.configNode).put("eventJournal", false);
+        ((ObjectNode) this.configNode).put("snapshotInterval", 0);
+    }
+
+    public long getEvents()          { return events.get(); }
+    public long getIntentSubmits()   { return intentSubmits.get(); }
+    public long getIntentWithdraws() { return intentWithdraws.get(); }
+    public long getObjectives()      { return objectives.get(); }
+
+    /**
+     * Activate an APManager on the stubs, replay the journal into it and deactivate it
+     *
+     * @param repeat Number of times to replay the journal
+     * @return Time taken by the replay itself, in nanoseconds
+     * @throws IOException on error reading the journal
+     */
+    public long run(int repeat) throws IOException {
+        JournalReader reader = new JournalReader(journalDirectory);
+        JournalState  state  = reader.readState();
+
+        if (state != null) {
+            seed(state);
+        } else {
+            log.warn("run: the journal has no starting state, gateways and hosts are only learned from its events");
+        }
+        APManager manager = createManager();
+
+        // Intents take their IDs from the generator the intent manager binds in ONOS
+
+        AtomicLong  ids         = new AtomicLong();
+        IdGenerator idGenerator = ids::incrementAndGet;
+
+        Intent.bindIdGenerator(idGenerator);
+        try {
+            manager.activate();
+
+            long start = System.nanoTime();
+
+            for (int pass = 0; pass < repeat; pass++) {
+                events.addAndGet(reader.read(this::dispatch, this::dispatch));
+            }
+            long elapsed = System.nanoTime() - start;
+
+            manager.deactivate();
+            return elapsed;
+
+        } finally {
+            Intent.unbindIdGenerator(idGenerator);
+        }
+    }
+
+    /**
+     * Load the host table and write the snapshot that the APManager loads on activation
+     *
+     * @param state Journal state
+     */
+    private void seed(JournalState state) {
+        state.getHosts().forEach(host -> hostTable.put(host.id(), host));
+
+        // Stopping writes a final checkpoint of the supplied state
+
+        new LocalSnapshot(LocalSnapshot.defaultFile(), state::getSnapshot).stop();
+
+        log.info("seed: {} hosts, {} gateway locations, {} mobile hosts as of {}", state.getHosts().size(),
+                 state.getSnapshot().getGateways().size(), state.getSnapshot().getHosts().size(),
+                 new Date(state.getSnapshot().getTime()));
+    }
+
+    private void dispatch(HostEvent event) {
+        // The host store is updated before the event is delivered
+
+        if (event.type() == HostEvent.Type.HOST_REMOVED) {
+            hostTable.remove(event.subject().id());
+        } else {
+            hostTable.put(event.subject().id(), event.subject());
+        }
+        hostListeners.stream().filter(l -> l.isRelevant(event)).forEach(l -> l.event(event));
+    }
+
+    private void dispatch(DeviceEvent event) {
+        deviceListeners.stream().filter(l -> l.isRelevant(event)).forEach(l -> l.event(event));
+    }
+
+    /**
+     * Build an APManager wired to the stub services
+     *
+     * @return APManager ready to be activated
+     */
+    private APManager createManager() {
+        APManager      manager = new APManager();
+        ControllerNode node    = new DefaultControllerNode(new NodeId("replay"), IpAddress.valueOf("127.0.0.1"));
+
+        Map<String, Function<Object[], Object>> core = Maps.newHashMap();
+        core.put("registerApplication", args -> new DefaultApplicationId(1, (String) args[0]));
+        core.put("getAppId", args -> new DefaultApplicationId(1, APManager.APP_NAME));
+        manager.coreService = stub(CoreService.class, core);
+
+        Map<String, Function<Object[], Object>> cluster = Maps.newHashMap();
+        cluster.put("getLocalNode", args -> node);
+        cluster.put("getNodes", args -> ImmutableSet.of(node));
+        cluster.put("getState", args -> ControllerNode.State.ACTIVE);
+        manager.clusterService = stub(ClusterService.class, cluster);
+
+        Map<String, Function<Object[], Object>> hosts = Maps.newHashMap();
+        hosts.put("addListener", args -> hostListeners.add((HostListener) args[0]));
+        hosts.put("removeListener", args -> hostListeners.remove(args[0]));
+        hosts.put("getHosts", args -> ImmutableList.copyOf(hostTable.values()));
+        hosts.put("getHostCount", args -> hostTable.size());
+        hosts.put("getHost", args -> hostTable.get(args[0]));
+        hosts.put("getHostsByMac", args -> hostTable.values().stream()
+                .filter(host -> host.mac().equals(args[0]))
+                .collect(Collectors.toSet()));
+        hosts.put("getHostsByIp", args -> hostTable.values().stream()
+                .filter(host -> host.ipAddresses().contains(args[0]))
+                .collect(Collectors.toSet()));
+        manager.hostService = stub(HostService.class, hosts);
+
+        Map<String, Function<Object[], Object>> devices = Maps.newHashMap();
+        devices.put("addListener", args -> deviceListeners.add((DeviceListener) args[0]));
+        devices.put("removeListener", args -> deviceListeners.remove(args[0]));
+        devices.put("isAvailable", args -> true);
+        manager.deviceService = stub(DeviceService.class, devices);
+
+        Map<String, Function<Object[], Object>> intents = Maps.newHashMap();
+        intents.put("submit", args -> intentSubmits.incrementAndGet());
+        intents.put("withdraw", args -> intentWithdraws.incrementAndGet());
+        manager.intentService = stub(IntentService.class, intents);
+
+        Map<String, Function<Object[], Object>> flows = Maps.newHashMap();
+        flows.put("forward", args -> objectives.incrementAndGet());
+        manager.flowObjectiveService = stub(FlowObjectiveService.class, flows);
+
+        Map<MacAddress, MobileHostState>        saved = Maps.newConcurrentMap();
+        Map<String, Function<Object[], Object>> store = Maps.newHashMap();
+        store.put("putMobileHost", args -> saved.put(((MobileHostState) args[0]).getMacAddress(),
+                                                     (MobileHostState) args[0]));
+        store.put("putMobileHosts", args -> {
+            saved.putAll((Map<MacAddress, MobileHostState>) args[0]);
+            return null;
+        });
+        store.put("removeMobileHost", args -> saved.remove(args[0]));
+        store.put("getMobileHost", args -> saved.get(args[0]));
+        store.put("getMobileHosts", args -> Collections.unmodifiableMap(saved));
+        manager.store = stub(SDNWLANStore.class, store);
+
+        Map<String, Function<Object[], Object>> cfg = Maps.newHashMap();
+        cfg.put("getConfig", args -> {
+            SDNWLANConfig config = new SDNWLANConfig();
+
+            config.init(APManager.appId, "sdnwlan", configNode, new ObjectMapper(), c -> { });
+            return config;
+        });
+        manager.cfgService = stub(NetworkConfigRegistry.class, cfg);
+
+        return manager;
+    }
+
+    /**
+     * Create a stub of a service interface.  Methods without an answer do nothing and
+     * return false, zero, an empty collection or null.
+     *
+     * @param type    Service interface
+     * @param answers Results of particular methods by name
+     * @param <T>     Service type
+     * @return Stub service
+     */
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return "stub " + type.getSimpleName();
+                        }
+                    }
+                    Function<Object[], Object> answer = answers.get(method.getName());
+
+                    if (answer != null) {
+                        Object result = answer.apply(args);
+
+                        return (method.getReturnType() == void.class) ? null : result;
+                    }
+                    return defaultValue(method.getReturnType());
+                }));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0.0f;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (Set.class.isAssignableFrom(type)) {
+            return Collections.emptySet();
+        } else if (Map.class.isAssignableFrom(type)) {
+            return Collections.emptyMap();
+        } else if ((type == Iterable.class) || Collection.class.isAssignableFrom(type)) {
+            return Collections.emptyList();
+        } else if (type == Optional.class) {
+            return Optional.empty();
+        }
+        return null;
+    }
+
+    /**
+     * Replay a journal from the command line and log the results
+     *
+     * @param args journal directory, configuration file and optional repeat count
+     * @throws IOException on error reading the journal or configuration
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            log.error("usage: JournalReplay journal-directory sdnwlan-config.json [repeat]");
+            return;
+        }
+        // Keep the snapshot seeded from the journal (and the final one written on deactivate)
+        // away from a real installation
+
+        if (System.getProperty("karaf.data") == null) {
+            System.setProperty("karaf.data", Files.createTempDirectory("sdnwlan-replay").toString());
+        }
+        JsonNode root   = new ObjectMapper().readTree(new File(args[1]));
+        JsonNode app    = root.path("apps").path(APManager.APP_NAME).path("sdnwlan");
+        int      repeat = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+
+        JournalReplay replay  = new JournalReplay(new File(args[0]), app.isMissingNode() ? root : app);
+        long          elapsed = replay.run(repeat);
+
+        long msec = Math.max(elapsed / 1000000, 1);
+
+        log.info("Replayed {} events in {} mS ({}/sec), intents submitted: {}, withdrawn: {}, flow objectives: {}",
+                 replay.getEvents(), msec, replay.getEvents() * 1000 / msec, replay.getIntentSubmits(),
+                 replay.getIntentWithdraws(), replay.getObjectives());
+    }
+}
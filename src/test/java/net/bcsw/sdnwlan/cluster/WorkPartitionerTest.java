@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.cluster;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onosproject.cluster.ClusterEvent;
+import org.onosproject.cluster.ClusterEventListener;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the consistent hash work partitioner
+ */
+public class WorkPartitionerTest {
+
+    private static final int MACS = 10000;
+
+    private static final ControllerNode NODE1 = new DefaultControllerNode(new NodeId("node1"),
+                                                                          IpAddress.valueOf("10.0.0.1"));
+    private static final ControllerNode NODE2 = new DefaultControllerNode(new NodeId("node2"),
+                                                                          IpAddress.valueOf("10.0.0.2"));
+    private static final ControllerNode NODE3 = new DefaultControllerNode(new NodeId("node3"),
+                                                                          IpAddress.valueOf("10.0.0.3"));
+
+    /**
+     * Cluster of the local node (NODE1) and any others added with their state
+     */
+    private static final class TestClusterService extends ClusterServiceAdapter {
+
+        private final Map<ControllerNode, ControllerNode.State> nodes = Maps.newLinkedHashMap();
+
+        private ClusterEventListener listener;
+
+        private TestClusterService() {
+            nodes.put(NODE1, ControllerNode.State.ACTIVE);
+        }
+
+        private void setState(ControllerNode node, ControllerNode.State state) {
+            nodes.put(node, state);
+            listener.event(new ClusterEvent(ClusterEvent.Type.INSTANCE_ADDED, node));
+        }
+
+        @Override
+        public ControllerNode getLocalNode() {
+            return NODE1;
+        }
+
+        @Override
+        public Set<ControllerNode> getNodes() {
+            return ImmutableSet.copyOf(nodes.keySet());
+        }
+
+        @Override
+        public ControllerNode.State getState(NodeId nodeId) {
+            return nodes.entrySet().stream()
+                    .filter(entry -> entry.getKey().id().equals(nodeId))
+                    .map(Map.Entry::getValue)
+                    .findFirst().orElse(null);
+        }
+
+        @Override
+        public void addListener(ClusterEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void removeListener(ClusterEventListener listener) {
+            this.listener = null;
+        }
+    }
+
+    private TestClusterService clusterService;
+    private WorkPartitioner    partitioner;
+    private AtomicInteger      rebalances;
+
+    private static MacAddress mac(int index) {
+        return MacAddress.valueOf(0x020000000000L + index);
+    }
+
+    private Map<MacAddress, NodeId> owners() {
+        Map<MacAddress, NodeId> owners = Maps.newHashMap();
+
+        for (int index = 0; index < MACS; index++) {
+            owners.put(mac(index), partitioner.getOwner(mac(index)));
+        }
+        return owners;
+    }
+
+    @Before
+    public void setUp() {
+        clusterService = new TestClusterService();
+        rebalances     = new AtomicInteger();
+        partitioner    = new WorkPartitioner(clusterService, rebalances::incrementAndGet);
+    }
+
+    @Test
+    public void testNoRingYet() {
+        assertNull(partitioner.getOwner(mac(1)));
+        assertTrue(partitioner.isMine(mac(1)));
+    }
+
+    @Test
+    public void testSingleNode() {
+        partitioner.start();
+
+        assertEquals(ImmutableSortedSet.of(NODE1.id()), partitioner.getNodes());
+
+        for (int index = 0; index < MACS; index++) {
+            assertTrue(partitioner.isMine(mac(index)));
+        }
+    }
+
+    @Test
+    public void testInactiveNodeExcluded() {
+        partitioner.start();
+        clusterService.setState(NODE2, ControllerNode.State.INACTIVE);
+
+        assertEquals(ImmutableSortedSet.of(NODE1.id()), partitioner.getNodes());
+        assertEquals(0, rebalances.get());
+    }
+
+    @Test
+    public void testSplit() {
+        partitioner.start();
+        clusterService.setState(NODE2, ControllerNode.State.ACTIVE);
+
+        assertEquals(1, rebalances.get());
+        assertEquals(ImmutableSortedSet.of(NODE1.id(), NODE2.id()), partitioner.getNodes());
+
+        long mine = owners().values().stream().filter(NODE1.id()::equals).count();
+
+        // Roughly even, well inside what the virtual nodes should give
+
+        assertTrue("local share " + mine, (mine > MACS * 0.3) && (mine < MACS * 0.7));
+    }
+
+    @Test
+    public void testJoinMovesOnlyToNewNode() {
+        partitioner.start();
+        clusterService.setState(NODE2, ControllerNode.State.ACTIVE);
+
+        Map<MacAddress, NodeId> before = owners();
+
+        clusterService.setState(NODE3, ControllerNode.State.ACTIVE);
+
+        Map<MacAddress, NodeId> after = owners();
+
+        assertEquals(2, rebalances.get());
+
+        before.forEach((mac, owner) -> {
+            NodeId now = after.get(mac);
+
+            assertTrue(mac.toString(), now.equals(owner) || now.equals(NODE3.id()));
+        });
+    }
+
+    @Test
+    public void testLeaveReturnsWork() {
+        partitioner.start();
+
+        Map<MacAddress, NodeId> alone = owners();
+
+        clusterService.setState(NODE2, ControllerNode.State.ACTIVE);
+        clusterService.setState(NODE2, ControllerNode.State.INACTIVE);
+
+        assertEquals(2, rebalances.get());
+        assertEquals(alone, owners());
+    }
+
+    @Test
+    public void testNoChangeNoRebalance() {
+        partitioner.start();
+        clusterService.setState(NODE2, ControllerNode.State.ACTIVE);
+        clusterService.setState(NODE2, ControllerNode.State.ACTIVE);
+
+        assertEquals(1, rebalances.get());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the range checks of the application configuration
+ */
+public class SDNWLANConfigTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "net.bcsw.sdnwlan");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private SDNWLANConfig config(ObjectNode node) {
+        SDNWLANConfig config = new SDNWLANConfig();
+
+        config.init(APP_ID, "sdnwlan", node, mapper, cfg -> { });
+        return config;
+    }
+
+    private SDNWLANConfig config(String key, Object value) {
+        ObjectNode node = mapper.createObjectNode();
+
+        node.set(key, mapper.valueToTree(value));
+        return config(node);
+    }
+
+    /**
+     * Out of range values are reported either way depending on the ONOS release
+     */
+    private static boolean isValid(SDNWLANConfig config) {
+        try {
+            return config.isValid();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testDefaults() {
+        SDNWLANConfig config = config(mapper.createObjectNode());
+
+        assertTrue(isValid(config));
+        assertEquals(SDNWLANConfig.DEFAULT_INTENT_BATCH_SIZE, config.getIntentBatchSize());
+        assertEquals(SDNWLANConfig.DEFAULT_JOURNAL_SEGMENTS, config.getJournalSegments());
+    }
+
+    @Test
+    public void testInRange() {
+        assertTrue(isValid(config("defGwFlowPriority", 65535)));
+        assertTrue(isValid(config("intentRate", 0)));
+        assertTrue(isValid(config("journalSegmentSize", 1)));
+        assertTrue(isValid(config("hostStateFlushInterval", 0)));
+        assertTrue(isValid(config("warmRestart", true)));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        assertFalse(isValid(config("defGwFlowPriority", 0)));
+        assertFalse(isValid(config("roamingUnicastPriority", 65536)));
+        assertFalse(isValid(config("intentBatchSize", 0)));
+        assertFalse(isValid(config("intentBatchWindow", -1)));
+        assertFalse(isValid(config("intentBurst", 0)));
+        assertFalse(isValid(config("journalSegmentSize", 0)));
+        assertFalse(isValid(config("journalSegments", 0)));
+        assertFalse(isValid(config("removedHostTimeout", -5)));
+    }
+
+    @Test
+    public void testWrongType() {
+        assertFalse(isValid(config("intentRate", "fast")));
+        assertFalse(isValid(config("intentBatchSize", 1.5)));
+        assertFalse(isValid(config("makeBeforeBreak", "yes")));
+    }
+}
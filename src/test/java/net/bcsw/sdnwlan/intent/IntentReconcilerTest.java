@@ -0,0 +1,329 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentServiceAdapter;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.PointToPointIntent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the intent reconciler
+ */
+public class IntentReconcilerTest {
+
+    private static final ApplicationId APP_ID   = new DefaultApplicationId(1, "net.bcsw.sdnwlan");
+    private static final ApplicationId OTHER_ID = new DefaultApplicationId(2, "org.onosproject.other");
+
+    /**
+     * Intent service holding a fixed set of intents and their states
+     */
+    private static final class TestIntentService extends IntentServiceAdapter {
+
+        private final Map<Key, Intent>      intents = Maps.newConcurrentMap();
+        private final Map<Key, IntentState> states  = Maps.newConcurrentMap();
+
+        private void add(Intent intent, IntentState state) {
+            intents.put(intent.key(), intent);
+            states.put(intent.key(), state);
+        }
+
+        @Override
+        public Iterable<Intent> getIntents() {
+            return ImmutableList.copyOf(intents.values());
+        }
+
+        @Override
+        public Intent getIntent(Key key) {
+            return intents.get(key);
+        }
+
+        @Override
+        public IntentState getIntentState(Key key) {
+            return states.get(key);
+        }
+    }
+
+    /**
+     * Pipeline that records what it is asked to do instead of sending it
+     */
+    private static final class TestPipeline extends IntentPipeline {
+
+        private final List<Key> submitted = Lists.newArrayList();
+        private final List<Key> withdrawn = Lists.newArrayList();
+
+        private boolean adoptionEnded;
+
+        private TestPipeline(TestIntentService intentService) {
+            super(intentService);
+        }
+
+        @Override
+        public void submit(Intent intent, Lane lane) {
+            submitted.add(intent.key());
+        }
+
+        @Override
+        public void withdraw(Intent intent) {
+            withdrawn.add(intent.key());
+        }
+
+        @Override
+        public void endAdoption() {
+            adoptionEnded = true;
+        }
+    }
+
+    /**
+     * Owner wanting a settable set of southbound intents
+     */
+    private static final class TestOwner implements IntentOwner {
+
+        private Map<Key, Intent> intents = ImmutableMap.of();
+
+        private void want(Intent... wanted) {
+            ImmutableMap.Builder<Key, Intent> builder = ImmutableMap.builder();
+
+            for (Intent intent : wanted) {
+                builder.put(intent.key(), intent);
+            }
+            intents = builder.build();
+        }
+
+        @Override
+        public Map<Key, Intent> getSouthboundIntents() {
+            return intents;
+        }
+
+        @Override
+        public Map<Key, Intent> getNorthboundIntents() {
+            return ImmutableMap.of();
+        }
+    }
+
+    private TestIntentService intentService;
+    private TestPipeline      pipeline;
+    private List<IntentOwner> owners;
+    private IntentReconciler  reconciler;
+
+    private static Intent intent(ApplicationId appId, String key) {
+        return PointToPointIntent.builder()
+                .appId(appId)
+                .key(Key.of(key, appId))
+                .selector(DefaultTrafficSelector.emptySelector())
+                .treatment(DefaultTrafficTreatment.emptyTreatment())
+                .ingressPoint(ConnectPoint.deviceConnectPoint("of:0000000000000001/1"))
+                .egressPoint(ConnectPoint.deviceConnectPoint("of:0000000000000001/2"))
+                .build();
+    }
+
+    /**
+     * Mark an owner dirty and run the reconciler
+     */
+    private void reconcile(TestOwner owner) {
+        reconciler.markDirty(owner);
+        reconciler.run();
+    }
+
+    @Before
+    public void setUp() {
+        MockIdGenerator.bindNewGenerator();
+
+        intentService = new TestIntentService();
+        pipeline      = new TestPipeline(intentService);
+        owners        = Lists.newArrayList();
+        reconciler    = new IntentReconciler(APP_ID, intentService, pipeline, () -> owners);
+    }
+
+    @After
+    public void tearDown() {
+        reconciler.stop();
+        pipeline.stop();
+    }
+
+    /**
+     * Run the first full sweep
+     */
+    private void start() {
+        reconciler.setGracePeriod(0);
+        reconciler.run();
+
+        assertTrue(pipeline.adoptionEnded);
+    }
+
+    @Test
+    public void testFullSweep() {
+        Intent installed = intent(APP_ID, "installed");
+        Intent failed    = intent(APP_ID, "failed");
+        Intent missing   = intent(APP_ID, "missing");
+        Intent orphan    = intent(APP_ID, "orphan");
+        Intent other     = intent(OTHER_ID, "other");
+        Intent gone      = intent(APP_ID, "gone");
+
+        intentService.add(installed, IntentState.INSTALLED);
+        intentService.add(failed, IntentState.FAILED);
+        intentService.add(orphan, IntentState.INSTALLED);
+        intentService.add(other, IntentState.INSTALLED);
+        intentService.add(gone, IntentState.WITHDRAWN);
+
+        TestOwner owner = new TestOwner();
+
+        owner.want(installed, failed, missing);
+        owners.add(owner);
+
+        start();
+
+        // Only what is not installed is re-submitted, and only our own orphans withdrawn
+
+        assertEquals(ImmutableList.of(failed.key(), missing.key()),
+                     Ordering.usingToString().sortedCopy(pipeline.submitted));
+        assertEquals(ImmutableList.of(orphan.key()), pipeline.withdrawn);
+    }
+
+    @Test
+    public void testGracePeriod() {
+        intentService.add(intent(APP_ID, "orphan"), IntentState.INSTALLED);
+
+        reconciler.setGracePeriod(60);
+
+        // A dirty owner is still reconciled, but nothing is swept
+
+        TestOwner owner = new TestOwner();
+
+        reconcile(owner);
+
+        assertTrue(pipeline.withdrawn.isEmpty());
+        assertFalse(pipeline.adoptionEnded);
+    }
+
+    @Test
+    public void testWithdrawUnwanted() {
+        Intent first  = intent(APP_ID, "first");
+        Intent second = intent(APP_ID, "second");
+
+        intentService.add(first, IntentState.INSTALLED);
+        intentService.add(second, IntentState.INSTALLED);
+
+        TestOwner owner = new TestOwner();
+
+        owner.want(first, second);
+        owners.add(owner);
+        start();
+
+        assertTrue(pipeline.withdrawn.isEmpty());
+
+        owner.want(first);
+        reconcile(owner);
+
+        assertEquals(ImmutableList.of(second.key()), pipeline.withdrawn);
+
+        // Nothing wanted at all
+
+        owner.want();
+        reconcile(owner);
+
+        assertEquals(ImmutableList.of(second.key(), first.key()), pipeline.withdrawn);
+    }
+
+    @Test
+    public void testKeyClaimedByOtherOwner() {
+        Intent shared = intent(APP_ID, "shared");
+
+        intentService.add(shared, IntentState.INSTALLED);
+
+        TestOwner first  = new TestOwner();
+        TestOwner second = new TestOwner();
+
+        first.want(shared);
+        owners.add(first);
+        owners.add(second);
+        start();
+
+        // The key moves to the second owner before the first lets go of it
+
+        second.want(shared);
+        reconcile(second);
+
+        first.want();
+        reconcile(first);
+
+        assertTrue(pipeline.withdrawn.isEmpty());
+    }
+
+    @Test
+    public void testRelease() {
+        Intent intent = intent(APP_ID, "released");
+
+        intentService.add(intent, IntentState.INSTALLED);
+
+        TestOwner owner = new TestOwner();
+
+        owner.want(intent);
+        owners.add(owner);
+        start();
+
+        // A released owner is forgotten, its intents are left alone
+
+        reconciler.release(owner);
+        owners.remove(owner);
+
+        TestOwner other = new TestOwner();
+
+        reconcile(other);
+
+        assertTrue(pipeline.withdrawn.isEmpty());
+        assertTrue(pipeline.submitted.isEmpty());
+    }
+
+    @Test
+    public void testNothingSubmittedWhenInstalled() {
+        Collection<Intent> intents = Lists.newArrayList(intent(APP_ID, "a"), intent(APP_ID, "b"));
+        TestOwner          owner   = new TestOwner();
+
+        intents.forEach(intent -> intentService.add(intent, IntentState.INSTALLED));
+        owner.want(intents.toArray(new Intent[intents.size()]));
+        owners.add(owner);
+        start();
+
+        reconcile(owner);
+
+        assertTrue(pipeline.submitted.isEmpty());
+        assertTrue(pipeline.withdrawn.isEmpty());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.intent;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import net.bcsw.sdnwlan.AccessPoint;
+import net.bcsw.sdnwlan.IngressVlans;
+import net.bcsw.sdnwlan.SDNWLANConnectPoint;
+import net.bcsw.sdnwlan.config.AccessPointConfig;
+import net.bcsw.sdnwlan.flows.Flow;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentServiceAdapter;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.net.intent.PointToPointIntent;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the intent tracker
+ */
+public class IntentTrackerTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "net.bcsw.sdnwlan");
+
+    /**
+     * Intent service with settable intent states
+     */
+    private static final class TestIntentService extends IntentServiceAdapter {
+
+        private final Map<Key, IntentState> states = Maps.newConcurrentMap();
+
+        @Override
+        public IntentState getIntentState(Key key) {
+            return states.get(key);
+        }
+    }
+
+    /**
+     * Flow with nothing but the statistics of the base class
+     */
+    private static final class TestFlow extends Flow {
+
+        private TestFlow(SDNWLANConnectPoint point) {
+            super(APP_ID, point, point);
+        }
+
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public String description() {
+            return "Test flow";
+        }
+
+        @Override
+        public Intent getIntent(Key key, int flowPriority) {
+            return null;
+        }
+    }
+
+    private TestIntentService   intentService;
+    private IntentTracker       tracker;
+    private SDNWLANConnectPoint point;
+
+    private static Intent intent(String key) {
+        return PointToPointIntent.builder()
+                .appId(APP_ID)
+                .key(Key.of(key, APP_ID))
+                .selector(DefaultTrafficSelector.emptySelector())
+                .treatment(DefaultTrafficTreatment.emptyTreatment())
+                .ingressPoint(ConnectPoint.deviceConnectPoint("of:0000000000000001/1"))
+                .egressPoint(ConnectPoint.deviceConnectPoint("of:0000000000000001/2"))
+                .build();
+    }
+
+    @Before
+    public void setUp() {
+        MockIdGenerator.bindNewGenerator();
+
+        AccessPointConfig config = new AccessPointConfig("ap", MacAddress.valueOf("00:00:00:00:00:01"),
+                                                         IngressVlans.of(VlanId.NONE), ImmutableList.of(),
+                                                         0.0, 0.0, 0.0, ImmutableMap.of(),
+                                                         ImmutableList.of(ConnectPoint.deviceConnectPoint(
+                                                                 "of:0000000000000001/1")));
+        intentService = new TestIntentService();
+        tracker       = new IntentTracker(APP_ID, intentService);
+        point         = new SDNWLANConnectPoint(new AccessPoint(config));
+    }
+
+    @After
+    public void tearDown() {
+        tracker.stop();
+    }
+
+    @Test
+    public void testInstalled() {
+        Flow   flow   = new TestFlow(point);
+        Intent intent = intent("installed");
+
+        CompletableFuture<Boolean> future = tracker.track(flow, intent);
+
+        assertFalse(future.isDone());
+        assertSame(future, tracker.getFuture(intent.key()));
+        assertEquals(Flow.State.SUBMITTED, flow.getState());
+
+        tracker.event(new IntentEvent(IntentEvent.Type.INSTALLED, intent));
+
+        assertTrue(future.join());
+        assertEquals(Flow.State.INSTALLED, flow.getState());
+        assertEquals(1, tracker.getInstalledCount());
+
+        // Asked for after the fact
+
+        assertTrue(tracker.getFuture(intent.key()).join());
+    }
+
+    @Test
+    public void testFailed() {
+        Flow   flow   = new TestFlow(point);
+        Intent intent = intent("failed");
+
+        CompletableFuture<Boolean> future = tracker.track(flow, intent);
+
+        tracker.event(new IntentEvent(IntentEvent.Type.FAILED, intent));
+
+        assertFalse(future.join());
+        assertEquals(1, flow.getFailureCount());
+        assertEquals(1, tracker.getFailedCount());
+        assertFalse(tracker.getFuture(intent.key()).join());
+    }
+
+    @Test
+    public void testNotTracked() {
+        assertNull(tracker.getFuture(Key.of("unknown", APP_ID)));
+    }
+
+    @Test
+    public void testWaitTimeoutKeepsFlowFuture() {
+        Flow   flow   = new TestFlow(point);
+        Intent intent = intent("slow");
+
+        CompletableFuture<Boolean> future = tracker.track(flow, intent);
+
+        assertFalse(tracker.whenInstalled(ImmutableList.of(intent.key()), 1).join());
+        assertFalse(future.isDone());
+
+        tracker.event(new IntentEvent(IntentEvent.Type.INSTALLED, intent));
+
+        assertTrue(future.join());
+    }
+
+    @Test
+    public void testStop() {
+        CompletableFuture<Boolean> future = tracker.track(new TestFlow(point), intent("stopped"));
+
+        CompletableFuture<Boolean> waiting = tracker.whenInstalled(ImmutableList.of(Key.of("stopped", APP_ID)),
+                                                                   60000);
+        tracker.stop();
+
+        assertTrue(future.isCancelled());
+        assertTrue(waiting.isCancelled());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.journal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import net.bcsw.sdnwlan.storage.Snapshot;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.provider.ProviderId;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of writing a journal and reading it back
+ */
+public class EventJournalTest {
+
+    private static final int EVENTS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Host host(int index) {
+        MacAddress mac = MacAddress.valueOf(0x020000000000L + index);
+
+        return new DefaultHost(ProviderId.NONE, HostId.hostId(mac, VlanId.NONE), mac, VlanId.NONE,
+                               new HostLocation(DeviceId.deviceId("of:0000000000000001"),
+                                                PortNumber.portNumber(1), 0L),
+                               ImmutableSet.of());
+    }
+
+    @Test
+    public void testRotationKeepsState() throws IOException {
+        File       directory = folder.newFolder("journal");
+        AtomicLong segments  = new AtomicLong();
+
+        // The state of each segment records which segment it is
+
+        EventJournal journal = new EventJournal(directory, JournalCodec.MAX_RECORD_SIZE * 2, 3, () ->
+                new JournalState(new Snapshot(segments.incrementAndGet(), ImmutableList.of(), ImmutableList.of()),
+                                 ImmutableList.of(host(-1))));
+
+        for (int index = 0; index < EVENTS; index++) {
+            journal.append(new HostEvent(HostEvent.Type.HOST_ADDED, host(index), index));
+        }
+        journal.close();
+
+        assertEquals(0, journal.getDroppedCount());
+
+        List<File> files = EventJournal.segments(directory);
+
+        assertEquals(3, files.size());
+        assertTrue("segments " + segments.get(), segments.get() > 3);
+
+        // The state read is that of the oldest segment left
+
+        JournalState state = new JournalReader(directory).readState();
+
+        assertNotNull(state);
+        assertEquals(segments.get() - 2, state.getSnapshot().getTime());
+        assertEquals(ImmutableList.of(host(-1).id()),
+                     Lists.transform(state.getHosts(), Host::id));
+
+        // The events read are the newest ones, in order, and the states are not events
+
+        JournalReader   reader = new JournalReader(directory);
+        List<HostEvent> events = Lists.newArrayList();
+
+        long count = reader.read(events::add, event -> { });
+
+        assertEquals(events.size(), count);
+        assertEquals(0, reader.getSkippedCount());
+        assertTrue(count > 0 && count < EVENTS);
+
+        for (int index = 0; index < events.size(); index++) {
+            assertEquals(EVENTS - count + index, events.get(index).time());
+        }
+    }
+
+    @Test
+    public void testEmptyJournal() throws IOException {
+        assertNull(new JournalReader(folder.newFolder("empty")).readState());
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.journal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.bcsw.sdnwlan.IpGatewayAndMask;
+import net.bcsw.sdnwlan.storage.MobileHostState;
+import net.bcsw.sdnwlan.storage.Snapshot;
+import org.junit.Test;
+import org.onlab.packet.ChassisId;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.provider.ProviderId;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the journal record encoding
+ */
+public class JournalCodecTest {
+
+    private static final ProviderId PID    = new ProviderId("of", "net.bcsw.sdnwlan.test");
+    private static final DeviceId   DEVICE = DeviceId.deviceId("of:0000000000000001");
+    private static final MacAddress MAC    = MacAddress.valueOf("00:11:22:33:44:55");
+    private static final VlanId     VLAN   = VlanId.vlanId((short) 100);
+    private static final MacAddress AP     = MacAddress.valueOf("00:00:00:00:01:01");
+    private static final MacAddress GW_MAC = MacAddress.valueOf("00:00:00:00:02:01");
+
+    private static Host host(long port, long time, Set<IpAddress> ips) {
+        return new DefaultHost(PID, HostId.hostId(MAC, VLAN), MAC, VLAN,
+                               new HostLocation(DEVICE, PortNumber.portNumber(port), time), ips);
+    }
+
+    /**
+     * Encode an event and decode it again the way the journal reader does
+     */
+    private static Object roundTrip(ByteBuffer record) {
+        int length = record.getInt();
+
+        assertEquals(record.remaining(), length);
+        assertTrue(length <= JournalCodec.MAX_RECORD_SIZE);
+
+        Object event = JournalCodec.decode(record);
+
+        assertFalse(record.hasRemaining());
+        return event;
+    }
+
+    private static void assertHost(Host expected, Host actual) {
+        assertEquals(expected.mac(), actual.mac());
+        assertEquals(expected.vlan(), actual.vlan());
+        assertEquals(expected.id(), actual.id());
+        assertEquals(expected.location().deviceId(), actual.location().deviceId());
+        assertEquals(expected.location().port(), actual.location().port());
+        assertEquals(expected.location().time(), actual.location().time());
+        assertEquals(expected.ipAddresses(), actual.ipAddresses());
+    }
+
+    @Test
+    public void testHostEvent() {
+        Host      host  = host(3, 1000L, ImmutableSet.of(IpAddress.valueOf("10.1.0.17"),
+                                                         IpAddress.valueOf("2001:db8::17")));
+        HostEvent event = new HostEvent(HostEvent.Type.HOST_ADDED, host, 12345L);
+
+        HostEvent decoded = (HostEvent) roundTrip(JournalCodec.encode(event));
+
+        assertEquals(HostEvent.Type.HOST_ADDED, decoded.type());
+        assertEquals(12345L, decoded.time());
+        assertHost(host, decoded.subject());
+        assertNull(decoded.prevSubject());
+    }
+
+    @Test
+    public void testHostMoved() {
+        Host      prev  = host(3, 1000L, ImmutableSet.of(IpAddress.valueOf("10.1.0.17")));
+        Host      host  = host(7, 2000L, ImmutableSet.of());
+        HostEvent event = new HostEvent(HostEvent.Type.HOST_MOVED, host, prev);
+
+        ByteBuffer record = JournalCodec.encode(event);
+
+        // Record an earlier time (after the length, kind and type) so the decoded time can
+        // not come from the clock
+
+        record.putLong(6, 12345L);
+
+        HostEvent decoded = (HostEvent) roundTrip(record);
+
+        assertEquals(HostEvent.Type.HOST_MOVED, decoded.type());
+        assertEquals(12345L, decoded.time());
+        assertHost(host, decoded.subject());
+        assertHost(prev, decoded.prevSubject());
+    }
+
+    @Test
+    public void testDeviceEvent() {
+        Device device = new DefaultDevice(PID, DEVICE, Device.Type.SWITCH, "", "", "", "", new ChassisId());
+
+        DeviceEvent event   = new DeviceEvent(DeviceEvent.Type.DEVICE_ADDED, device, null, 555L);
+        DeviceEvent decoded = (DeviceEvent) roundTrip(JournalCodec.encode(event));
+
+        assertEquals(DeviceEvent.Type.DEVICE_ADDED, decoded.type());
+        assertEquals(555L, decoded.time());
+        assertEquals(DEVICE, decoded.subject().id());
+        assertEquals(Device.Type.SWITCH, decoded.subject().type());
+        assertNull(decoded.port());
+    }
+
+    @Test
+    public void testPortEvent() {
+        Device device = new DefaultDevice(PID, DEVICE, Device.Type.SWITCH, "", "", "", "", new ChassisId());
+
+        DeviceEvent event = new DeviceEvent(DeviceEvent.Type.PORT_UPDATED, device,
+                                            new DefaultPort(device, PortNumber.portNumber(9), false), 777L);
+        DeviceEvent decoded = (DeviceEvent) roundTrip(JournalCodec.encode(event));
+
+        assertEquals(DeviceEvent.Type.PORT_UPDATED, decoded.type());
+        assertEquals(PortNumber.portNumber(9), decoded.port().number());
+        assertFalse(decoded.port().isEnabled());
+    }
+
+    @Test
+    public void testEncodeReturnsCopy() {
+        HostEvent first  = new HostEvent(HostEvent.Type.HOST_ADDED, host(1, 0L, ImmutableSet.of()), 1L);
+        HostEvent second = new HostEvent(HostEvent.Type.HOST_REMOVED, host(2, 0L, ImmutableSet.of()), 2L);
+
+        // The scratch buffer is reused, the returned record must not be
+
+        ByteBuffer record = JournalCodec.encode(first);
+        JournalCodec.encode(second);
+
+        assertEquals(HostEvent.Type.HOST_ADDED, ((HostEvent) roundTrip(record)).type());
+    }
+
+    @Test
+    public void testState() throws IOException {
+        MobileHostState mobile = new MobileHostState(MAC, ImmutableSet.of(AP), AP, 1L, 2L, 0L, 3,
+                                                     ImmutableSet.of("key"));
+        Snapshot.GatewayLocation gateway =
+                new Snapshot.GatewayLocation(IpGatewayAndMask.valueOf("10.1.0.1/24"), GW_MAC, VLAN,
+                                             ConnectPoint.deviceConnectPoint("of:0000000000000001/1"));
+
+        // More hosts than fit in an event record
+
+        List<Host> hosts = Lists.newArrayList();
+
+        for (int index = 0; index < 200; index++) {
+            hosts.add(host(index, 1000L, ImmutableSet.of(IpAddress.valueOf(String.format("10.1.%d.%d",
+                                                                                         index / 256,
+                                                                                         index % 256)))));
+        }
+        JournalState state  = new JournalState(new Snapshot(4242L, ImmutableList.of(gateway),
+                                                            ImmutableList.of(mobile)), hosts);
+        ByteBuffer   record = JournalCodec.encode(state);
+        int          length = record.getInt();
+
+        assertEquals(record.remaining(), length);
+        assertTrue(length > JournalCodec.MAX_RECORD_SIZE);
+        assertTrue(JournalCodec.isState(record));
+
+        JournalState decoded = JournalCodec.decodeState(record);
+
+        assertFalse(record.hasRemaining());
+        assertEquals(4242L, decoded.getSnapshot().getTime());
+        assertEquals(ImmutableList.of(mobile), decoded.getSnapshot().getHosts());
+        assertEquals(1, decoded.getSnapshot().getGateways().size());
+        assertEquals(gateway.getGateway(), decoded.getSnapshot().getGateways().get(0).getGateway());
+        assertEquals(gateway.getLocation(), decoded.getSnapshot().getGateways().get(0).getLocation());
+        assertEquals(hosts.size(), decoded.getHosts().size());
+
+        for (int index = 0; index < hosts.size(); index++) {
+            assertHost(hosts.get(index), decoded.getHosts().get(index));
+        }
+    }
+
+    @Test
+    public void testEventIsNotState() {
+        ByteBuffer record = JournalCodec.encode(new HostEvent(HostEvent.Type.HOST_ADDED,
+                                                              host(1, 0L, ImmutableSet.of()), 1L));
+        record.getInt();
+
+        assertFalse(JournalCodec.isState(record));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testRecordTooLarge() {
+        Set<IpAddress> ips = Sets.newHashSet();
+
+        for (int index = 0; index < 300; index++) {
+            ips.add(IpAddress.valueOf(String.format("2001:db8::%x", index)));
+        }
+        JournalCodec.encode(new HostEvent(HostEvent.Type.HOST_ADDED, host(1, 0L, ips), 1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownKind() {
+        ByteBuffer record = ByteBuffer.allocate(10);
+
+        record.put((byte) 9).put((byte) 0).putLong(0L).flip();
+        JournalCodec.decode(record);
+    }
+}
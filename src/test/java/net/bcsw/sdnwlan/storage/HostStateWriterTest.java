@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.bcsw.sdnwlan.config.AccessPointConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.store.AbstractStore;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the host state write-behind layer
+ */
+public class HostStateWriterTest {
+
+    private static final MacAddress HOST1 = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress HOST2 = MacAddress.valueOf("00:00:00:00:00:02");
+    private static final MacAddress AP1   = MacAddress.valueOf("00:00:00:00:01:01");
+    private static final MacAddress AP2   = MacAddress.valueOf("00:00:00:00:01:02");
+
+    // Long enough that the timer never fires during a test
+    private static final int INTERVAL = 60000;
+
+    /**
+     * Store that keeps the mobile hosts in a map and counts the writes
+     */
+    private static final class TestStore extends AbstractStore<SDNWLANStoreEvent, SDNWLANStoreDelegate>
+            implements SDNWLANStore {
+
+        private final Map<MacAddress, MobileHostState> hosts = Maps.newConcurrentMap();
+
+        private int singleWrites;
+        private int batchWrites;
+        private int removes;
+
+        @Override
+        public void putAccessPoint(AccessPointConfig accessPoint) {
+        }
+
+        @Override
+        public void removeAccessPoint(AccessPointConfig accessPoint) {
+        }
+
+        @Override
+        public List<AccessPointConfig> getAccessPoints() {
+            return Lists.newArrayList();
+        }
+
+        @Override
+        public synchronized void putMobileHost(MobileHostState host) {
+            singleWrites++;
+            hosts.put(host.getMacAddress(), host);
+        }
+
+        @Override
+        public synchronized void putMobileHosts(Map<MacAddress, MobileHostState> batch) {
+            batchWrites++;
+            hosts.putAll(batch);
+        }
+
+        @Override
+        public synchronized void removeMobileHost(MacAddress mac) {
+            removes++;
+            hosts.remove(mac);
+        }
+
+        @Override
+        public MobileHostState getMobileHost(MacAddress mac) {
+            return hosts.get(mac);
+        }
+
+        @Override
+        public Map<MacAddress, MobileHostState> getMobileHosts() {
+            return ImmutableMap.copyOf(hosts);
+        }
+    }
+
+    private TestStore       store;
+    private HostStateWriter writer;
+
+    private static MobileHostState host(MacAddress mac, MacAddress ap, int timesMoved) {
+        return new MobileHostState(mac, ImmutableSet.of(AP1), ap, 0L, 0L, 0L, timesMoved, ImmutableSet.of());
+    }
+
+    @Before
+    public void setUp() {
+        store  = new TestStore();
+        writer = new HostStateWriter(store);
+    }
+
+    @After
+    public void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    public void testWriteThrough() {
+        writer.put(host(HOST1, AP1, 0));
+
+        assertEquals(1, store.singleWrites);
+        assertEquals(AP1, store.getMobileHost(HOST1).getCurrentAccessPoint());
+
+        writer.remove(HOST1);
+
+        assertEquals(1, store.removes);
+        assertNull(store.getMobileHost(HOST1));
+        assertNull(writer.get(HOST1));
+        assertEquals(2, writer.getUpdateCount());
+        assertEquals(2, writer.getWriteCount());
+    }
+
+    @Test
+    public void testWriteBehind() {
+        writer.configure(INTERVAL);
+
+        writer.put(host(HOST1, AP1, 0));
+        writer.put(host(HOST1, AP2, 1));
+        writer.put(host(HOST2, AP1, 0));
+
+        // Nothing written yet, but the writer sees its own changes
+
+        assertTrue(store.getMobileHosts().isEmpty());
+        assertEquals(AP2, writer.get(HOST1).getCurrentAccessPoint());
+        assertEquals(AP1, writer.get(HOST2).getCurrentAccessPoint());
+
+        writer.flush();
+
+        // Only the latest change of each host is written, in a single batch
+
+        assertEquals(1, store.batchWrites);
+        assertEquals(0, store.singleWrites);
+        assertEquals(AP2, store.getMobileHost(HOST1).getCurrentAccessPoint());
+        assertEquals(1, store.getMobileHost(HOST1).getTimesMoved());
+        assertEquals(2, store.getMobileHosts().size());
+
+        assertEquals(3, writer.getUpdateCount());
+        assertEquals(2, writer.getWriteCount());
+        assertEquals(1, writer.getFlushCount());
+    }
+
+    @Test
+    public void testPendingRemove() {
+        store.putMobileHost(host(HOST1, AP1, 0));
+        writer.configure(INTERVAL);
+
+        writer.remove(HOST1);
+
+        // The pending removal hides the stored state until it is written
+
+        assertNull(writer.get(HOST1));
+        assertEquals(AP1, store.getMobileHost(HOST1).getCurrentAccessPoint());
+
+        writer.flush();
+
+        assertNull(store.getMobileHost(HOST1));
+        assertEquals(1, store.removes);
+    }
+
+    @Test
+    public void testEmptyFlush() {
+        writer.configure(INTERVAL);
+        writer.flush();
+
+        assertEquals(0, writer.getFlushCount());
+        assertEquals(0, store.batchWrites);
+    }
+
+    @Test
+    public void testSwitchToWriteThrough() {
+        writer.configure(INTERVAL);
+        writer.put(host(HOST1, AP1, 0));
+
+        // Switching to write through writes what is pending before returning
+
+        writer.configure(0);
+
+        assertEquals(AP1, store.getMobileHost(HOST1).getCurrentAccessPoint());
+
+        writer.put(host(HOST1, AP2, 1));
+
+        assertEquals(AP2, store.getMobileHost(HOST1).getCurrentAccessPoint());
+        assertEquals(1, store.singleWrites);
+    }
+
+    @Test
+    public void testStopFlushes() {
+        writer.configure(INTERVAL);
+        writer.put(host(HOST1, AP1, 0));
+        writer.stop();
+
+        assertEquals(AP1, store.getMobileHost(HOST1).getCurrentAccessPoint());
+
+        // Once stopped, changes are written straight through
+
+        writer.put(host(HOST1, AP2, 1));
+
+        assertEquals(AP2, store.getMobileHost(HOST1).getCurrentAccessPoint());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015-2016 Boling Consulting Solutions, bcsw.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bcsw.sdnwlan.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.store.service.Versioned;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests of the near cache
+ */
+public class NearCacheTest {
+
+    private final Map<String, Versioned<String>> map = Maps.newHashMap();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Supplier<Map<String, Versioned<String>>> loader = () -> {
+        loads.incrementAndGet();
+        return ImmutableMap.copyOf(map);
+    };
+
+    private NearCache<String, String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new NearCache<>(0);
+
+        map.put("a", new Versioned<>("a1", 1));
+        map.put("b", new Versioned<>("b1", 2));
+    }
+
+    @Test
+    public void testLoadsOnce() {
+        assertEquals(ImmutableSet.of("a1", "b1"), ImmutableSet.copyOf(cache.values(loader)));
+        assertEquals(ImmutableSet.of("a1", "b1"), ImmutableSet.copyOf(cache.values(loader)));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testUpdateKeepsNewest() {
+        cache.values(loader);
+
+        cache.update("a", new Versioned<>("a3", 3));
+        cache.update("a", new Versioned<>("a2", 2));        // Late, older version
+        cache.update("c", new Versioned<>("c1", 4));
+
+        assertEquals(ImmutableSet.of("a3", "b1", "c1"), ImmutableSet.copyOf(cache.values(loader)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testRemove() {
+        cache.values(loader);
+
+        cache.remove("a", new Versioned<>("a0", 0));         // Older than the cached entry
+        assertEquals(ImmutableSet.of("a1", "b1"), ImmutableSet.copyOf(cache.values(loader)));
+
+        cache.remove("a", new Versioned<>("a1", 1));
+        assertEquals(ImmutableSet.of("b1"), ImmutableSet.copyOf(cache.values(loader)));
+
+        // Outside a load a removal leaves no tombstone, so a re-add with any version is kept
+
+        cache.update("a", new Versioned<>("a1", 1));
+        assertEquals(ImmutableSet.of("a1", "b1"), ImmutableSet.copyOf(cache.values(loader)));
+    }
+
+    @Test
+    public void testRemoveDuringLoad() {
+        // The entry is removed (by a map event) while the map is being read and the read
+        // returns the value from before the removal
+
+        Supplier<Map<String, Versioned<String>>> slowLoader = () -> {
+            Map<String, Versioned<String>> snapshot = ImmutableMap.copyOf(map);
+
+            cache.remove("b", new Versioned<>("b1", 2));
+            return snapshot;
+        };
+        assertEquals(ImmutableSet.of("a1"), ImmutableSet.copyOf(cache.values(slowLoader)));
+
+        // The tombstone is gone once the load is over
+
+        cache.update("b", new Versioned<>("b1", 2));
+        assertEquals(ImmutableSet.of("a1", "b1"), ImmutableSet.copyOf(cache.values(loader)));
+    }
+
+    @Test
+    public void testUpdateDuringLoad() {
+        Supplier<Map<String, Versioned<String>>> slowLoader = () -> {
+            Map<String, Versioned<String>> snapshot = ImmutableMap.copyOf(map);
+
+            cache.update("a", new Versioned<>("a5", 5));
+            return snapshot;
+        };
+        assertEquals(ImmutableSet.of("a5", "b1"), ImmutableSet.copyOf(cache.values(slowLoader)));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        cache = new NearCache<>(1);
+
+        cache.values(loader);
+        map.put("c", new Versioned<>("c1", 3));
+        Thread.sleep(10);
+
+        assertEquals(ImmutableSet.of("a1", "b1", "c1"), ImmutableSet.copyOf(cache.values(loader)));
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testClear() {
+        cache.values(loader);
+        cache.clear();
+
+        assertEquals(ImmutableSet.of("a1", "b1"), ImmutableSet.copyOf(cache.values(loader)));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getHitCount());
+    }
+}